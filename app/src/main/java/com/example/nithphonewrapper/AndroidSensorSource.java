@@ -0,0 +1,118 @@
+package com.example.nithphonewrapper;
+
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import android.hardware.SensorEventListener;
+import android.hardware.SensorManager;
+import android.os.Handler;
+import android.util.Log;
+
+/**
+ * Rotation vector and gyroscope (plus accelerometer and magnetometer for yaw fusion, if enabled)
+ * from {@link SensorManager}, delivered on a dedicated high-priority {@link SensorThread} rather
+ * than the UI thread.
+ */
+public class AndroidSensorSource implements SensorSource, SensorEventListener {
+
+    private static final String TAG = "AndroidSensorSource";
+
+    private final SensorManager sensorManager;
+    private final Sensor rotationVectorSensor;
+    private final Sensor gyroscopeSensor;
+    private Sensor accelerometerSensor;
+    private Sensor magneticFieldSensor;
+    private final SensorThread sensorThread = new SensorThread();
+
+    // Registration parameters, applied on the next start()
+    private int gyroscopePeriodUs = SensorManager.SENSOR_DELAY_GAME;
+    private int maxReportLatencyUs = 0;
+
+    private volatile Listener listener;
+    private volatile SensorTraceRecorder recorder;
+
+    public AndroidSensorSource(SensorManager sensorManager, Sensor rotationVectorSensor, Sensor gyroscopeSensor) {
+        this.sensorManager = sensorManager;
+        this.rotationVectorSensor = rotationVectorSensor;
+        this.gyroscopeSensor = gyroscopeSensor;
+    }
+
+    /**
+     * Hardware batching: the gyroscope runs at gyroRateHz (0 = as fast as possible) and both sensors
+     * may hold events in the hardware FIFO for up to maxReportLatencyUs, waking the application
+     * processor less often. Takes effect on the next start().
+     */
+    public void setBatching(int gyroRateHz, int maxReportLatencyUs) {
+        this.gyroscopePeriodUs = gyroRateHz > 0 ? 1_000_000 / gyroRateHz : SensorManager.SENSOR_DELAY_FASTEST;
+        this.maxReportLatencyUs = maxReportLatencyUs;
+    }
+
+    /**
+     * Also delivers accelerometer (at the gyroscope rate) and magnetometer events, for
+     * {@link HeadTrackingPipeline#setYawFusion}. Null sensors are skipped; takes effect on the next start().
+     */
+    public void setFusionSensors(Sensor accelerometer, Sensor magneticField) {
+        accelerometerSensor = accelerometer;
+        magneticFieldSensor = magneticField;
+    }
+
+    /** Back to SENSOR_DELAY_GAME without batching. */
+    public void clearBatching() {
+        gyroscopePeriodUs = SensorManager.SENSOR_DELAY_GAME;
+        maxReportLatencyUs = 0;
+    }
+
+    /**
+     * Records every raw event to the given trace before it reaches the listener (null to stop).
+     * Close the recorder after {@link #stop()}, which waits for the last event to be recorded.
+     */
+    public void setRecorder(SensorTraceRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    @Override
+    public synchronized void start(Listener listener) {
+        this.listener = listener;
+        Handler sensorHandler = sensorThread.start();
+        register(rotationVectorSensor, SensorManager.SENSOR_DELAY_GAME, sensorHandler);
+        register(gyroscopeSensor, gyroscopePeriodUs, sensorHandler);
+        register(accelerometerSensor, gyroscopePeriodUs, sensorHandler);
+        register(magneticFieldSensor, SensorManager.SENSOR_DELAY_GAME, sensorHandler);
+        if (maxReportLatencyUs > 0 && gyroscopeSensor != null) {
+            // Without a FIFO the latency hint is ignored and events arrive one by one
+            Log.d(TAG, "Gyroscope FIFO: reserved=" + gyroscopeSensor.getFifoReservedEventCount()
+                    + ", max=" + gyroscopeSensor.getFifoMaxEventCount());
+        }
+    }
+
+    private void register(Sensor sensor, int periodUs, Handler handler) {
+        if (sensor == null) return;
+        if (maxReportLatencyUs > 0) {
+            sensorManager.registerListener(this, sensor, periodUs, maxReportLatencyUs, handler);
+        } else {
+            sensorManager.registerListener(this, sensor, periodUs, handler);
+        }
+    }
+
+    @Override
+    public synchronized void stop() {
+        sensorManager.unregisterListener(this);
+        sensorThread.quit();
+        listener = null;
+    }
+
+    @Override
+    public void onSensorChanged(SensorEvent event) {
+        Listener l = listener;
+        if (l == null || event == null) return;
+        SensorTraceRecorder r = recorder;
+        if (r != null) {
+            r.onSensorEvent(event.sensor.getType(), event.timestamp, event.values, event.values.length, event.accuracy);
+        }
+        l.onSensorEvent(event.sensor.getType(), event.timestamp, event.values, event.values.length, event.accuracy);
+    }
+
+    @Override
+    public void onAccuracyChanged(Sensor sensor, int accuracy) {
+        // Accuracy is reported with every event
+    }
+}
@@ -5,11 +5,11 @@ import androidx.appcompat.app.AppCompatActivity;
 import android.content.Context;
 import android.graphics.Color;
 import android.hardware.Sensor;
-import android.hardware.SensorEvent;
-import android.hardware.SensorEventListener;
 import android.hardware.SensorManager;
+import android.net.wifi.WifiManager;
 import android.os.Build;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.os.VibrationEffect;
 import android.os.Vibrator;
 import android.util.Log;
@@ -19,16 +19,27 @@ import android.widget.Button;
 import android.widget.Toast;
 
 import java.io.IOException;
-import java.net.DatagramPacket;
-import java.net.DatagramSocket;
 import java.net.InetAddress;
-import java.net.SocketException;
+import java.net.InetSocketAddress;
 import java.net.UnknownHostException;
-import java.util.Locale;
+import java.util.concurrent.TimeUnit;
 
-public class ButtonActivity extends AppCompatActivity implements SensorEventListener {
+public class ButtonActivity extends AppCompatActivity {
 
     private static final String TAG = "ButtonActivity";
+
+    // Errors are reported on the change to failing and then periodically (see SampleSender.Listener)
+    private final SampleSender.Listener sendListener = new SampleSender.Listener() {
+        @Override
+        public void onSendError(IOException e) {
+            Log.e(TAG, "Send error", e);
+        }
+
+        @Override
+        public void onSendRecovered(long failedSends) {
+            Log.i(TAG, "Sending again after " + failedSends + " failed sends");
+        }
+    };
     
     // UI Elements
     private Button button1, button2;
@@ -41,39 +52,45 @@ public class ButtonActivity extends AppCompatActivity implements SensorEventList
     private SensorManager sensorManager;
     private Sensor rotationVectorSensor;
     private Sensor gyroscopeSensor;
-    private final float[] rotationVectorReading = new float[5];
-    private final float[] orientationAngles = new float[3];
-    private final float[] gyroscopeReading = new float[3];
-    
-    // Orientation data (from rotation vector)
-    private float currentPitch = 0f;
-    private float currentRoll = 0f;
-    
-    // Angular velocity (from gyroscope - rad/s)
-    private float angularVelYaw = 0f;
-    private float angularVelPitch = 0f;
-    private float angularVelRoll = 0f;
-    
+    private AndroidSensorSource sensorSource;
+
     // Settings from MainActivity
     private boolean invertPitch = false;
     private boolean invertYaw = false;
     private boolean vibrateOnPress = false;
+    private boolean yawFusion = false;
     
     // Networking Variables
     private String targetIp;
     private int targetPort;
-    private InetAddress targetInetAddress;
-    private DatagramSocket sendSocket;
+    private UdpChannelTransport udpTransport;
+    // Multicast mode (group from MainActivity, null = unicast); the lock is held while streaming
+    private String multicastGroup;
+    private int multicastTtl;
+    private WifiManager.MulticastLock multicastLock;
+    // TCP mode (e.g. USB via adb reverse): length-prefixed frames to the target, reconnecting on failure
+    private static final long TCP_RECONNECT_INTERVAL_MS = 1000;
+    private boolean tcp;
+    private TcpFrameTransport tcpTransport;
     private String deviceInfo;
     private String phoneIp;
+    private FrameFormat frameFormat = FrameFormat.TEXT;
+    private DeadBandFilter deadBand;
+    private static final int SEND_QUEUE_CAPACITY = 16;
+    private volatile SampleSender sampleSender;
+    // Sensor events -> pipeline; the output clock takes interpolated samples (with button states) from it
+    private HeadTrackingPipeline pipeline;
     
     // Vibration
     private Vibrator vibrator;
     private final int defaultVibrationAmplitude = VibrationEffect.DEFAULT_AMPLITUDE;
     
-    // Thread for continuous UDP sending
-    private Thread udpSenderThread;
-    private volatile boolean isRunning = false;
+    // Fixed-rate clock for continuous UDP sending (feeds the sender)
+    private static final int DEFAULT_OUTPUT_RATE_HZ = 20;
+    // Interpolate this far behind the clock, so two sensor readings bracket each tick
+    private static final long INTERPOLATION_DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(20);
+    private int outputRateHz;
+    private OutputClock outputClock;
     
     // Colors
     private static final int COLOR_NORMAL = Color.parseColor("#808080");
@@ -94,10 +111,22 @@ public class ButtonActivity extends AppCompatActivity implements SensorEventList
         invertPitch = getIntent().getBooleanExtra("INVERT_PITCH", false);
         invertYaw = getIntent().getBooleanExtra("INVERT_YAW", false);
         vibrateOnPress = getIntent().getBooleanExtra("VIBRATE_ON_PRESS", false);
+        yawFusion = getIntent().getBooleanExtra("YAW_FUSION", false);
+        frameFormat = parseFrameFormat(getIntent().getStringExtra("FRAME_FORMAT"));
+        outputRateHz = getIntent().getIntExtra("OUTPUT_RATE_HZ", DEFAULT_OUTPUT_RATE_HZ);
+        if (outputRateHz <= 0) {
+            // Event-driven mode is MainActivity-only: button states still need a steady stream
+            outputRateHz = DEFAULT_OUTPUT_RATE_HZ;
+        }
+        deadBand = DeadBandFilter.createOrNull(
+                getIntent().getFloatExtra("DEADBAND_DEG", 0f), getIntent().getFloatExtra("DEADBAND_RAD_S", 0f));
         deviceInfo = getIntent().getStringExtra("DEVICE_INFO");
         phoneIp = getIntent().getStringExtra("PHONE_IP");
+        multicastGroup = getIntent().getStringExtra("MULTICAST_GROUP");
+        multicastTtl = getIntent().getIntExtra("MULTICAST_TTL", 1);
+        tcp = getIntent().getBooleanExtra("TCP", false);
 
-        if (targetIp == null || targetIp.isEmpty()) {
+        if ((targetIp == null || targetIp.isEmpty()) && multicastGroup == null) {
             Toast.makeText(this, "No target IP set. Cannot send button data.", Toast.LENGTH_LONG).show();
             finish();
             return;
@@ -111,30 +140,90 @@ public class ButtonActivity extends AppCompatActivity implements SensorEventList
         sensorManager = (SensorManager) getSystemService(Context.SENSOR_SERVICE);
         rotationVectorSensor = sensorManager.getDefaultSensor(Sensor.TYPE_ROTATION_VECTOR);
         gyroscopeSensor = sensorManager.getDefaultSensor(Sensor.TYPE_GYROSCOPE);
-
-        if (rotationVectorSensor != null) {
-            sensorManager.registerListener(this, rotationVectorSensor, SensorManager.SENSOR_DELAY_GAME);
-        }
-        if (gyroscopeSensor != null) {
-            sensorManager.registerListener(this, gyroscopeSensor, SensorManager.SENSOR_DELAY_GAME);
+        sensorSource = new AndroidSensorSource(sensorManager, rotationVectorSensor, gyroscopeSensor);
+        if (yawFusion) {
+            sensorSource.setFusionSensors(sensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER),
+                    sensorManager.getDefaultSensor(Sensor.TYPE_MAGNETIC_FIELD));
         }
 
         // Initialize Vibrator
         vibrator = (Vibrator) getSystemService(Context.VIBRATOR_SERVICE);
 
         // Setup networking
+        boolean checkingGroup = false; // true while the multicast transport validates the group
         try {
-            targetInetAddress = InetAddress.getByName(targetIp);
-            sendSocket = new DatagramSocket();
-            Log.d(TAG, "UDP socket initialized for " + targetIp + ":" + targetPort);
+            FrameTransport transport;
+            if (tcp) {
+                tcpTransport = new TcpFrameTransport(
+                        new InetSocketAddress(InetAddress.getByName(targetIp), targetPort),
+                        TCP_RECONNECT_INTERVAL_MS, SystemClock::elapsedRealtimeNanos);
+                transport = tcpTransport;
+                Log.d(TAG, "TCP transport initialized for " + targetIp + ":" + targetPort);
+            } else if (multicastGroup != null) {
+                InetSocketAddress groupAddress = new InetSocketAddress(InetAddress.getByName(multicastGroup), targetPort);
+                checkingGroup = true;
+                udpTransport = new UdpChannelTransport(groupAddress, multicastTtl, null);
+                checkingGroup = false;
+                WifiManager wifiManager = (WifiManager) getApplicationContext().getSystemService(Context.WIFI_SERVICE);
+                if (wifiManager != null) {
+                    multicastLock = wifiManager.createMulticastLock(TAG);
+                    multicastLock.setReferenceCounted(false);
+                    multicastLock.acquire();
+                }
+                Log.d(TAG, "UDP channel initialized for group " + multicastGroup + ":" + targetPort
+                        + ", TTL " + multicastTtl);
+                transport = udpTransport;
+            } else {
+                udpTransport = new UdpChannelTransport(new InetSocketAddress(InetAddress.getByName(targetIp), targetPort));
+                Log.d(TAG, "UDP channel initialized for " + targetIp + ":" + targetPort);
+                transport = udpTransport;
+            }
+
+            sampleSender = new SampleSender(
+                    new SampleRingBuffer(SEND_QUEUE_CAPACITY, SampleRingBuffer.OverflowPolicy.KEEP_LATEST),
+                    transport,
+                    sendListener);
+            sampleSender.setExtra(deviceInfo, phoneIp);
+            sampleSender.setFrameFormat(frameFormat);
+            sampleSender.setTimeSource(SystemClock::elapsedRealtimeNanos);
+            sampleSender.setFrameMetadata(getIntent().getBooleanExtra("FRAME_METADATA", false));
+            sampleSender.setDeadBand(deadBand); // button changes always pass
+            sampleSender.start();
+
+            pipeline = new HeadTrackingPipeline(sampleSender, HeadTrackingPipeline.Mode.CLOCK,
+                    INTERPOLATION_DELAY_NANOS, SystemClock::elapsedRealtimeNanos);
+            pipeline.setInvertPitch(invertPitch);
+            pipeline.setInvertYaw(invertYaw);
+            pipeline.setButtons(false, false);
+            pipeline.setSendQuaternion(getIntent().getBooleanExtra("QUATERNION", false));
+            pipeline.setSmoother(SampleSmoother.createOrNull(
+                    getIntent().getFloatExtra("SMOOTH_ANGLE_HZ", 0f),
+                    getIntent().getFloatExtra("SMOOTH_ANGLE_BETA", 0f),
+                    getIntent().getFloatExtra("SMOOTH_VELOCITY_HZ", 0f),
+                    getIntent().getFloatExtra("SMOOTH_VELOCITY_BETA", 0f)));
+            pipeline.setPredictor(MotionPredictor.createOrNull(
+                    getIntent().getFloatExtra("PREDICTION_MS", 0f)));
+            if (yawFusion) {
+                pipeline.setYawFusion(new MadgwickFilter());
+            }
         } catch (UnknownHostException e) {
             Toast.makeText(this, "Invalid target IP", Toast.LENGTH_SHORT).show();
             Log.e(TAG, "Invalid target IP", e);
+            // Stops the sender if it already started, closes the transport, releases the lock
+            cleanup();
+            finish();
+            return;
+        } catch (IllegalArgumentException e) {
+            String what = checkingGroup ? "Invalid multicast group" : "Invalid setting";
+            Toast.makeText(this, what + ": " + e.getMessage(), Toast.LENGTH_SHORT).show();
+            Log.e(TAG, what, e);
+            cleanup();
             finish();
             return;
-        } catch (SocketException e) {
+        } catch (IOException e) {
             Toast.makeText(this, "Socket error", Toast.LENGTH_SHORT).show();
             Log.e(TAG, "Socket error", e);
+            cleanup();
             finish();
             return;
         }
@@ -142,16 +231,28 @@ public class ButtonActivity extends AppCompatActivity implements SensorEventList
         // Setup button touch listeners
         setupButtonListeners();
 
-        // Start UDP sender thread
-        isRunning = true;
+        // Deliver sensor events on a dedicated high-priority thread, not the UI thread
+        sensorSource.start(pipeline);
+
+        // Start fixed-rate UDP sending
         startUdpSender();
     }
 
+    private static FrameFormat parseFrameFormat(String name) {
+        if (name == null) return FrameFormat.TEXT;
+        try {
+            return FrameFormat.valueOf(name);
+        } catch (IllegalArgumentException e) {
+            return FrameFormat.TEXT;
+        }
+    }
+
     private void setupButtonListeners() {
         button1.setOnTouchListener((v, event) -> {
             switch (event.getAction()) {
                 case MotionEvent.ACTION_DOWN:
                     button1Pressed = true;
+                    pipeline.setButtons(button1Pressed, button2Pressed);
                     button1.setBackgroundColor(COLOR_PRESSED);
                     if (vibrateOnPress) {
                         shouldVibrateButton1 = true;
@@ -162,6 +263,7 @@ public class ButtonActivity extends AppCompatActivity implements SensorEventList
                 case MotionEvent.ACTION_UP:
                 case MotionEvent.ACTION_CANCEL:
                     button1Pressed = false;
+                    pipeline.setButtons(button1Pressed, button2Pressed);
                     button1.setBackgroundColor(COLOR_NORMAL);
                     shouldVibrateButton1 = false;
                     stopVibrationIfNeeded();
@@ -175,6 +277,7 @@ public class ButtonActivity extends AppCompatActivity implements SensorEventList
             switch (event.getAction()) {
                 case MotionEvent.ACTION_DOWN:
                     button2Pressed = true;
+                    pipeline.setButtons(button1Pressed, button2Pressed);
                     button2.setBackgroundColor(COLOR_PRESSED);
                     if (vibrateOnPress) {
                         shouldVibrateButton2 = true;
@@ -185,6 +288,7 @@ public class ButtonActivity extends AppCompatActivity implements SensorEventList
                 case MotionEvent.ACTION_UP:
                 case MotionEvent.ACTION_CANCEL:
                     button2Pressed = false;
+                    pipeline.setButtons(button1Pressed, button2Pressed);
                     button2.setBackgroundColor(COLOR_NORMAL);
                     shouldVibrateButton2 = false;
                     stopVibrationIfNeeded();
@@ -220,76 +324,9 @@ public class ButtonActivity extends AppCompatActivity implements SensorEventList
     }
 
     private void startUdpSender() {
-        udpSenderThread = new Thread(() -> {
-            while (isRunning) {
-                sendUdpPacket();
-                try {
-                    Thread.sleep(50); // Send at ~20Hz
-                } catch (InterruptedException e) {
-                    Log.d(TAG, "UDP sender interrupted");
-                    break;
-                }
-            }
-        });
-        udpSenderThread.start();
-    }
-
-    private void sendUdpPacket() {
-        if (sendSocket == null || targetInetAddress == null || sendSocket.isClosed()) {
-            return;
-        }
-
-        // Apply inversion settings
-        float outputPitch = invertPitch ? -currentPitch : currentPitch;
-        float outputYaw = invertYaw ? -angularVelYaw : angularVelYaw;
-
-        // Build payload with button states in extra field
-        String payload = String.format(Locale.US,
-                "$NITHphoneWrapper-v0.2.0|OPR|head_pos_pitch=%.2f&head_pos_roll=%.2f&head_vel_yaw=%.4f&head_vel_pitch=%.4f&head_vel_roll=%.4f^dev=%s&phone_ip=%s&button1=%s&button2=%s",
-                outputPitch, currentRoll, outputYaw, angularVelPitch, angularVelRoll,
-                deviceInfo, phoneIp,
-                button1Pressed ? "true" : "false",
-                button2Pressed ? "true" : "false");
-
-        try {
-            byte[] buffer = payload.getBytes();
-            DatagramPacket packet = new DatagramPacket(
-                    buffer, buffer.length,
-                    targetInetAddress, targetPort);
-            sendSocket.send(packet);
-        } catch (IOException e) {
-            Log.e(TAG, "UDP send error", e);
-        }
-    }
-
-    @Override
-    public void onSensorChanged(SensorEvent event) {
-        if (event == null) return;
-
-        if (event.sensor.getType() == Sensor.TYPE_GYROSCOPE) {
-            // Gyroscope gives angular velocity in rad/s
-            angularVelYaw = event.values[2];   // Z axis (yaw rotation rate)
-            angularVelPitch = event.values[0]; // X axis (pitch rotation rate)
-            angularVelRoll = event.values[1];  // Y axis (roll rotation rate)
-            
-        } else if (event.sensor.getType() == Sensor.TYPE_ROTATION_VECTOR) {
-            System.arraycopy(event.values, 0, rotationVectorReading, 0, event.values.length);
-
-            float[] rotationMatrix = new float[9];
-            SensorManager.getRotationMatrixFromVector(rotationMatrix, rotationVectorReading);
-            
-            // Get orientation from rotation vector
-            SensorManager.getOrientation(rotationMatrix, orientationAngles);
-            
-            // Extract pitch and roll
-            currentPitch = (float) Math.toDegrees(orientationAngles[1]);
-            currentRoll = (float) Math.toDegrees(orientationAngles[2]);
-        }
-    }
-
-    @Override
-    public void onAccuracyChanged(Sensor sensor, int accuracy) {
-        // Not used
+        // Each tick takes the interpolated state plus button states from the pipeline
+        outputClock = new OutputClock(outputRateHz, SystemClock::elapsedRealtimeNanos, pipeline);
+        outputClock.start();
     }
 
     @Override
@@ -305,11 +342,9 @@ public class ButtonActivity extends AppCompatActivity implements SensorEventList
     }
 
     private void cleanup() {
-        isRunning = false;
-        
-        if (udpSenderThread != null) {
-            udpSenderThread.interrupt();
-            udpSenderThread = null;
+        if (outputClock != null) {
+            outputClock.stop();
+            outputClock = null;
         }
 
         // Stop any ongoing vibration
@@ -317,11 +352,31 @@ public class ButtonActivity extends AppCompatActivity implements SensorEventList
             vibrator.cancel();
         }
 
-        sensorManager.unregisterListener(this);
+        if (sensorSource != null) {
+            sensorSource.stop();
+        }
+
+        if (sampleSender != null) {
+            sampleSender.stop();
+            if (deadBand != null) {
+                Log.d(TAG, "Dead-band: passed=" + deadBand.getPassedCount()
+                        + ", suppressed=" + deadBand.getSuppressedCount());
+            }
+            sampleSender = null;
+        }
+
+        if (udpTransport != null) {
+            udpTransport.close();
+            udpTransport = null;
+        }
+
+        if (tcpTransport != null) {
+            tcpTransport.close();
+            tcpTransport = null;
+        }
 
-        if (sendSocket != null && !sendSocket.isClosed()) {
-            sendSocket.close();
-            sendSocket = null;
+        if (multicastLock != null && multicastLock.isHeld()) {
+            multicastLock.release();
         }
     }
 }
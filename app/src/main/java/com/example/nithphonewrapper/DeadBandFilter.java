@@ -0,0 +1,160 @@
+package com.example.nithphonewrapper;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Suppresses samples that did not move beyond a per-field dead-band since the last sample that
+ * was let through, so a resting head does not keep the link busy. A heartbeat still lets one
+ * sample through every heartbeatNanos, and button changes always pass.
+ * Values are compared with the last sample sent, not the previous one, so slow drifts still get out.
+ * Not thread-safe: call {@link #accept} from the sender thread only; the counters may be read anywhere.
+ */
+public class DeadBandFilter {
+
+    /** Heartbeat used by the activities: the receiver hears from an idle phone once per second. */
+    public static final long DEFAULT_HEARTBEAT_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final float pitchDeg;
+    private final float rollDeg;
+    private final float yawDeg;
+    private final float velYaw;
+    private final float velPitch;
+    private final float velRoll;
+    private final long heartbeatNanos;
+    // |dot| of two unit quaternions below this means they are more than min(pitchDeg, rollDeg) apart
+    private final float quaternionMinDot;
+
+    private final NithSample lastSent = new NithSample();
+    private boolean hasLastSent = false;
+    private long lastSentAtNanos;
+
+    private final AtomicLong passed = new AtomicLong();
+    private final AtomicLong suppressed = new AtomicLong();
+    private final AtomicLong heartbeats = new AtomicLong();
+
+    /**
+     * @param angleDeg dead-band for pitch, roll and yaw position (degrees)
+     * @param angularVelocity dead-band for the three angular velocities (rad/s)
+     */
+    public DeadBandFilter(float angleDeg, float angularVelocity, long heartbeatNanos) {
+        this(angleDeg, angleDeg, angleDeg, angularVelocity, angularVelocity, angularVelocity, heartbeatNanos);
+    }
+
+    /**
+     * Per-field dead-bands; a change must be strictly larger than the threshold to pass.
+     * yawDeg only applies to samples carrying a fused yaw position. Samples carrying a quaternion
+     * also pass once it rotated by more than the smaller of pitchDeg and rollDeg, in any direction.
+     */
+    public DeadBandFilter(float pitchDeg, float rollDeg, float yawDeg, float velYaw, float velPitch, float velRoll,
+                          long heartbeatNanos) {
+        if (heartbeatNanos <= 0) {
+            throw new IllegalArgumentException("Heartbeat interval must be positive: " + heartbeatNanos);
+        }
+        this.pitchDeg = pitchDeg;
+        this.rollDeg = rollDeg;
+        this.yawDeg = yawDeg;
+        this.velYaw = velYaw;
+        this.velPitch = velPitch;
+        this.velRoll = velRoll;
+        this.heartbeatNanos = heartbeatNanos;
+        this.quaternionMinDot = (float) Math.cos(Math.toRadians(Math.min(pitchDeg, rollDeg)) / 2);
+    }
+
+    /**
+     * Filter with the default heartbeat, or null when both dead-bands are 0 (suppression off).
+     */
+    public static DeadBandFilter createOrNull(float angleDeg, float angularVelocity) {
+        if (angleDeg <= 0f && angularVelocity <= 0f) return null;
+        return new DeadBandFilter(Math.max(0f, angleDeg), Math.max(0f, angularVelocity), DEFAULT_HEARTBEAT_NANOS);
+    }
+
+    /**
+     * @return true if the sample should be sent (it then becomes the new reference)
+     */
+    public boolean accept(NithSample sample, long nowNanos) {
+        boolean send;
+        if (!hasLastSent || buttonsChanged(sample) || changed(sample)) {
+            send = true;
+        } else if (nowNanos - lastSentAtNanos >= heartbeatNanos) {
+            send = true;
+            heartbeats.incrementAndGet();
+        } else {
+            send = false;
+        }
+
+        if (send) {
+            lastSent.set(sample);
+            hasLastSent = true;
+            lastSentAtNanos = nowNanos;
+            passed.incrementAndGet();
+        } else {
+            suppressed.incrementAndGet();
+        }
+        return send;
+    }
+
+    /** Forgets the reference sample, so the next one always passes. */
+    public void reset() {
+        hasLastSent = false;
+    }
+
+    private boolean buttonsChanged(NithSample s) {
+        return s.hasButtons != lastSent.hasButtons
+                || s.button1 != lastSent.button1
+                || s.button2 != lastSent.button2;
+    }
+
+    private boolean changed(NithSample s) {
+        return Math.abs(s.pitch - lastSent.pitch) > pitchDeg
+                || Math.abs(angleDelta(s.roll, lastSent.roll)) > rollDeg
+                || s.hasYaw != lastSent.hasYaw
+                || (s.hasYaw && Math.abs(angleDelta(s.yaw, lastSent.yaw)) > yawDeg)
+                || s.hasQuaternion != lastSent.hasQuaternion
+                || (s.hasQuaternion && quaternionMoved(s))
+                || Math.abs(s.velYaw - lastSent.velYaw) > velYaw
+                || Math.abs(s.velPitch - lastSent.velPitch) > velPitch
+                || Math.abs(s.velRoll - lastSent.velRoll) > velRoll;
+    }
+
+    // Roll and yaw wrap at +-180 degrees
+    private static float angleDelta(float a, float b) {
+        float d = a - b;
+        if (d > 180f) d -= 360f;
+        else if (d < -180f) d += 360f;
+        return d;
+    }
+
+    private boolean quaternionMoved(NithSample s) {
+        if (s.quatW == lastSent.quatW && s.quatX == lastSent.quatX
+                && s.quatY == lastSent.quatY && s.quatZ == lastSent.quatZ) {
+            return false; // the dot product of equal quaternions may round to just below 1
+        }
+        // q and -q are the same rotation, hence the absolute value
+        float dot = s.quatW * lastSent.quatW + s.quatX * lastSent.quatX
+                + s.quatY * lastSent.quatY + s.quatZ * lastSent.quatZ;
+        return Math.abs(dot) < quaternionMinDot;
+    }
+
+    // --- Counters ---
+
+    public long getPassedCount() {
+        return passed.get();
+    }
+
+    public long getSuppressedCount() {
+        return suppressed.get();
+    }
+
+    /** Samples that passed only because the heartbeat interval elapsed. */
+    public long getHeartbeatCount() {
+        return heartbeats.get();
+    }
+
+    /** Fraction of samples suppressed so far, 0 when nothing was filtered yet. */
+    public double getSuppressionRatio() {
+        long s = suppressed.get();
+        long total = s + passed.get();
+        return total == 0 ? 0 : (double) s / total;
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.nithphonewrapper;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Discovery response sent by a receiver:
+ * "NITHreceiver|receiver_ip=192.168.1.50&expected_port=20103[&binary_format=float|int16]
+ * [&multicast_group=239.255.20.103[&multicast_ttl=1]]"
+ */
+public final class DiscoveryReply {
+
+    public static final String PREFIX = "NITHreceiver|";
+    public static final String MULTICAST_GROUP_KEY = "multicast_group";
+    public static final String MULTICAST_TTL_KEY = "multicast_ttl";
+
+    public final String receiverIp;
+    public final int port;
+    /** Frame format the receiver supports; TEXT unless it advertises a binary one. */
+    public final FrameFormat frameFormat;
+    /** Multicast group the receiver listens on (on {@link #port}), or null if it did not advertise one. */
+    public final String multicastGroup;
+    /** Advertised multicast TTL, or -1 if absent or not a number in 0-255. */
+    public final int multicastTtl;
+    private final Map<String, String> params;
+
+    private DiscoveryReply(String receiverIp, int port, FrameFormat frameFormat, Map<String, String> params) {
+        this.receiverIp = receiverIp;
+        this.port = port;
+        this.frameFormat = frameFormat;
+        String group = params.get(MULTICAST_GROUP_KEY);
+        this.multicastGroup = group == null || group.isEmpty() ? null : group;
+        this.multicastTtl = parseTtl(params.get(MULTICAST_TTL_KEY));
+        this.params = params;
+    }
+
+    /** Any parameter of the reply (trimmed), or null if absent. */
+    public String get(String key) {
+        return params.get(key);
+    }
+
+    public Map<String, String> params() {
+        return Collections.unmodifiableMap(params);
+    }
+
+    private static int parseTtl(String value) {
+        if (value == null) return -1;
+        try {
+            int ttl = Integer.parseInt(value);
+            return ttl >= 0 && ttl <= UdpChannelTransport.MAX_MULTICAST_TTL ? ttl : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException if the prefix or a required field is missing, or the port is not a number
+     */
+    public static DiscoveryReply parse(String message) {
+        if (!message.startsWith(PREFIX)) {
+            throw new IllegalArgumentException("unexpected prefix");
+        }
+
+        // Parse key=value pairs
+        Map<String, String> params = new HashMap<>();
+        for (String param : message.substring(PREFIX.length()).split("&")) {
+            String[] parts = param.split("=", 2);
+            if (parts.length == 2) {
+                params.put(parts[0].trim(), parts[1].trim());
+            }
+        }
+
+        String receiverIp = params.get("receiver_ip");
+        String portStr = params.get("expected_port");
+        if (receiverIp == null || portStr == null) {
+            throw new IllegalArgumentException("missing required fields");
+        }
+        int port = Integer.parseInt(portStr.replaceAll("[^0-9]", ""));
+
+        return new DiscoveryReply(receiverIp, port,
+                FrameFormat.fromDiscoveryValue(params.get(FrameFormat.DISCOVERY_KEY)), params);
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.nithphonewrapper;
+
+/**
+ * Small least-recently-used cache of vibration effects keyed by duration and intensity, so a
+ * receiver that repeats the same few commands does not create a new effect object per command.
+ * Linear scan over a few entries, no key objects; not thread-safe (the UI thread owns it).
+ *
+ * @param <E> the effect type, VibrationEffect in the app
+ */
+public final class EffectCache<E> {
+
+    public interface Factory<E> {
+        E create(long durationMs, int intensity);
+    }
+
+    private final Factory<E> factory;
+    // Most recently used first
+    private final long[] durations;
+    private final int[] intensities;
+    private final Object[] effects;
+    private int size;
+    private long hits;
+    private long misses;
+
+    public EffectCache(int capacity, Factory<E> factory) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Cache capacity must be positive: " + capacity);
+        }
+        this.factory = factory;
+        this.durations = new long[capacity];
+        this.intensities = new int[capacity];
+        this.effects = new Object[capacity];
+    }
+
+    /** Returns the cached effect for this key, creating it (and evicting the oldest) on a miss. */
+    @SuppressWarnings("unchecked")
+    public E get(long durationMs, int intensity) {
+        int index = -1;
+        for (int i = 0; i < size; i++) {
+            if (durations[i] == durationMs && intensities[i] == intensity) {
+                index = i;
+                break;
+            }
+        }
+        E effect;
+        if (index >= 0) {
+            hits++;
+            effect = (E) effects[index];
+        } else {
+            misses++;
+            effect = factory.create(durationMs, intensity);
+            if (size < effects.length) size++;
+            index = size - 1; // the slot that is dropped when full
+        }
+        // Shift the more recent entries down and put this one in front
+        System.arraycopy(durations, 0, durations, 1, index);
+        System.arraycopy(intensities, 0, intensities, 1, index);
+        System.arraycopy(effects, 0, effects, 1, index);
+        durations[0] = durationMs;
+        intensities[0] = intensity;
+        effects[0] = effect;
+        return effect;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long getHitCount() {
+        return hits;
+    }
+
+    public long getMissCount() {
+        return misses;
+    }
+}
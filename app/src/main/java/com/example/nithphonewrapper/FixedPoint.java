@@ -0,0 +1,101 @@
+package com.example.nithphonewrapper;
+
+import java.util.Locale;
+
+/**
+ * Fixed-precision float formatting helpers shared by the frame encoder and the on-screen readout.
+ * Rounding matches java.util.Formatter's "%.Nf" (HALF_UP) without allocating.
+ */
+final class FixedPoint {
+
+    static final long[] POWERS_OF_TEN = {1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L};
+
+    // Above this magnitude the integer path could overflow; callers fall back to Formatter
+    static final float MAX_MAGNITUDE = 1e9f;
+
+    private FixedPoint() {
+    }
+
+    /** True if value can go through {@link #scaledHalfUp}; false for NaN, infinities and huge values. */
+    static boolean isSupported(float value) {
+        return !Float.isNaN(value) && Math.abs(value) < MAX_MAGNITUDE;
+    }
+
+    /** True if Formatter would print a leading '-' (negative values and -0.0). */
+    static boolean isNegative(float value) {
+        return Float.floatToRawIntBits(value) < 0;
+    }
+
+    /**
+     * Returns |value| * 10^decimals rounded half-up, computed exactly from mantissa and exponent.
+     * Only valid if {@link #isSupported} holds.
+     */
+    static long scaledHalfUp(float value, int decimals) {
+        int bits = Float.floatToRawIntBits(value);
+        int biasedExponent = (bits >>> 23) & 0xff;
+        long mantissa = bits & 0x7fffff;
+        int exponent;
+        if (biasedExponent == 0) {
+            exponent = -149; // subnormal
+        } else {
+            mantissa |= 0x800000;
+            exponent = biasedExponent - 150;
+        }
+
+        long scaled = mantissa * POWERS_OF_TEN[decimals];
+        if (exponent >= 0) {
+            return scaled << exponent;
+        }
+        int shift = -exponent;
+        if (shift > 62) {
+            return 0; // far below half a unit in the last place
+        }
+        long rounded = scaled >> shift;
+        long remainder = scaled & ((1L << shift) - 1);
+        if (remainder >= (1L << (shift - 1))) {
+            rounded++;
+        }
+        return rounded;
+    }
+
+    /** Number of decimal digits of a non-negative value, at least minDigits. */
+    static int digitCount(long value, int minDigits) {
+        int digits = 1;
+        for (long v = value / 10; v > 0; v /= 10) {
+            digits++;
+        }
+        return Math.max(digits, minDigits);
+    }
+
+    /**
+     * Writes value as "%.Nf" into a char array.
+     * @return the position after the last written char
+     */
+    static int format(float value, int decimals, char[] out, int pos) {
+        if (!isSupported(value)) {
+            String s = String.format(Locale.US, "%." + decimals + "f", value);
+            s.getChars(0, s.length(), out, pos);
+            return pos + s.length();
+        }
+        long rounded = scaledHalfUp(value, decimals);
+        if (isNegative(value)) {
+            out[pos++] = '-';
+        }
+        long divisor = POWERS_OF_TEN[decimals];
+        pos = putDigits(rounded / divisor, 1, out, pos);
+        if (decimals > 0) {
+            out[pos++] = '.';
+            pos = putDigits(rounded % divisor, decimals, out, pos);
+        }
+        return pos;
+    }
+
+    private static int putDigits(long value, int minDigits, char[] out, int pos) {
+        int digits = digitCount(value, minDigits);
+        for (int i = pos + digits - 1; i >= pos; i--) {
+            out[i] = (char) ('0' + (value % 10));
+            value /= 10;
+        }
+        return pos + digits;
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.nithphonewrapper;
+
+/**
+ * Wire format of outgoing frames. TEXT is the NITH v0.2.0 frame every receiver understands;
+ * the binary formats are only used when the receiver advertises them in its discovery reply
+ * (e.g. "NITHreceiver|receiver_ip=...&expected_port=20103&binary_format=int16").
+ */
+public enum FrameFormat {
+    TEXT,
+    /** Binary frame with raw float32 fields. */
+    BINARY_FLOAT,
+    /** Binary frame with int16 fields quantized to 0.01 deg / 0.001 rad/s. */
+    BINARY_INT16;
+
+    /** Discovery reply parameter carrying the receiver's binary support. */
+    public static final String DISCOVERY_KEY = "binary_format";
+
+    /**
+     * Maps the advertised value ("float" or "int16") to a format; anything else falls back to TEXT.
+     */
+    public static FrameFormat fromDiscoveryValue(String value) {
+        if (value == null) return TEXT;
+        String v = value.trim();
+        if ("float".equalsIgnoreCase(v)) return BINARY_FLOAT;
+        if ("int16".equalsIgnoreCase(v)) return BINARY_INT16;
+        return TEXT;
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.nithphonewrapper;
+
+import java.io.IOException;
+
+/**
+ * Destination for encoded frames. Called from the sender thread only.
+ */
+public interface FrameTransport {
+
+    /**
+     * Sends the first length bytes of buffer as one frame.
+     * The buffer is reused after the call returns.
+     */
+    void send(byte[] buffer, int length) throws IOException;
+}
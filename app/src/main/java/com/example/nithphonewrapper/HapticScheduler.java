@@ -0,0 +1,214 @@
+package com.example.nithphonewrapper;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rate-limits vibration commands before they reach the vibrator. Commands submitted within the
+ * coalescing window after the first pending one are merged into a single vibration, and plays are
+ * never closer together than 1 / maxRate, so a receiver sending a command per frame cannot keep the
+ * vibrator restarting (each new vibration cancels the running one).
+ *
+ * Merging: one-shots keep the longest duration and the strongest intensity; a waveform replaces
+ * whatever is pending, and so does a one-shot arriving after a waveform (the latest pattern wins).
+ *
+ * {@link #submit} may be called from any thread (the vibration listener); the {@link Player} runs
+ * on the thread of the {@link Timer}, the UI thread in the app.
+ */
+public class HapticScheduler {
+
+    /** Plays a vibration; called on the timer's thread. */
+    public interface Player {
+        void playOneShot(long durationMs, int intensity);
+
+        /** The arrays are reused after the call returns; only the first length entries are valid. */
+        void playWaveform(long[] timingsMs, int[] amplitudes, int length);
+    }
+
+    /** Runs a task after a delay, e.g. Handler::postDelayed. */
+    public interface Timer {
+        void schedule(Runnable task, long delayMs);
+    }
+
+    public static final String METRIC_PLAYED = "vibration.played";
+    public static final String METRIC_COALESCED = "vibration.coalesced";
+
+    private static final int NONE = 0;
+    private static final int ONE_SHOT = 1;
+    private static final int WAVEFORM = 2;
+
+    private final OutputClock.TimeSource timeSource;
+    private final Timer timer;
+    private final Player player;
+    private final Runnable flushTask = this::flush;
+
+    // Guarded by this
+    private long windowNanos;
+    private long minIntervalNanos;
+    private int pendingKind = NONE;
+    private long pendingSinceNanos;
+    private long pendingDurationMs;
+    private int pendingIntensity;
+    private final long[] pendingTimings = new long[VibrationCommandParser.MAX_WAVEFORM_STEPS];
+    private final int[] pendingAmplitudes = new int[VibrationCommandParser.MAX_WAVEFORM_STEPS];
+    private int pendingLength;
+    private boolean flushScheduled = false;
+    private boolean played = false;
+    private long lastPlayNanos;
+    private long submittedCount;
+    private long playedCount;
+    private long coalescedCount;
+
+    // Timer thread only: what flush() hands to the player, so it runs outside the lock
+    private final long[] playTimings = new long[VibrationCommandParser.MAX_WAVEFORM_STEPS];
+    private final int[] playAmplitudes = new int[VibrationCommandParser.MAX_WAVEFORM_STEPS];
+
+    /**
+     * @param windowMs how long a command waits for others to merge with; 0 plays it as soon as
+     *                 the rate allows
+     * @param maxRateHz maximum number of vibrations started per second
+     */
+    public HapticScheduler(int windowMs, int maxRateHz, OutputClock.TimeSource timeSource,
+                           Timer timer, Player player) {
+        setLimits(windowMs, maxRateHz);
+        this.timeSource = timeSource;
+        this.timer = timer;
+        this.player = player;
+    }
+
+    /**
+     * Changes the coalescing window and the maximum rate, validated as in the constructor. A
+     * pending command plays by the new limits.
+     */
+    public synchronized void setLimits(int windowMs, int maxRateHz) {
+        if (windowMs < 0) {
+            throw new IllegalArgumentException("Coalescing window must not be negative: " + windowMs);
+        }
+        if (maxRateHz <= 0) {
+            throw new IllegalArgumentException("Maximum vibration rate must be positive: " + maxRateHz);
+        }
+        windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMs);
+        minIntervalNanos = TimeUnit.SECONDS.toNanos(1) / maxRateHz;
+    }
+
+    /** Queues a one-shot vibration. */
+    public void submit(long durationMs, int intensity) {
+        long now = timeSource.nanoTime();
+        synchronized (this) {
+            if (pendingKind == ONE_SHOT) {
+                pendingDurationMs = Math.max(pendingDurationMs, durationMs);
+                pendingIntensity = Math.max(pendingIntensity, intensity);
+                coalescedCount++;
+            } else {
+                replacePending(now);
+                pendingKind = ONE_SHOT;
+                pendingDurationMs = durationMs;
+                pendingIntensity = intensity;
+            }
+            submittedCount++;
+            scheduleFlushLocked(now);
+        }
+    }
+
+    /** Queues a waveform; the arrays are copied, only the first length entries are read. */
+    public void submitWaveform(long[] timingsMs, int[] amplitudes, int length) {
+        if (length < 1 || length > pendingTimings.length) {
+            throw new IllegalArgumentException("Waveform must have 1-" + pendingTimings.length + " steps: " + length);
+        }
+        long now = timeSource.nanoTime();
+        synchronized (this) {
+            replacePending(now);
+            pendingKind = WAVEFORM;
+            System.arraycopy(timingsMs, 0, pendingTimings, 0, length);
+            System.arraycopy(amplitudes, 0, pendingAmplitudes, 0, length);
+            pendingLength = length;
+            submittedCount++;
+            scheduleFlushLocked(now);
+        }
+    }
+
+    /** Drops the pending command, if any; a flush already scheduled then finds nothing to play. */
+    public synchronized void clear() {
+        pendingKind = NONE;
+    }
+
+    public synchronized long getSubmittedCount() {
+        return submittedCount;
+    }
+
+    public synchronized long getPlayedCount() {
+        return playedCount;
+    }
+
+    /** Commands merged into another one or replaced before they were played. */
+    public synchronized long getCoalescedCount() {
+        return coalescedCount;
+    }
+
+    /** Exposes the played and coalesced counts as gauges. */
+    public void setMetrics(MetricsRegistry registry) {
+        registry.gauge(METRIC_PLAYED, this::getPlayedCount);
+        registry.gauge(METRIC_COALESCED, this::getCoalescedCount);
+    }
+
+    private void replacePending(long now) {
+        if (pendingKind != NONE) {
+            coalescedCount++;
+        } else {
+            pendingSinceNanos = now;
+        }
+    }
+
+    private void scheduleFlushLocked(long now) {
+        if (flushScheduled) return;
+        flushScheduled = true;
+        timer.schedule(flushTask, delayMs(dueNanos() - now));
+    }
+
+    // The pending command plays once its window is over and the rate allows it
+    private long dueNanos() {
+        long due = pendingSinceNanos + windowNanos;
+        if (played) due = Math.max(due, lastPlayNanos + minIntervalNanos);
+        return due;
+    }
+
+    private static long delayMs(long nanos) {
+        return nanos <= 0 ? 0 : (nanos + 999_999) / 1_000_000;
+    }
+
+    private void flush() {
+        int kind;
+        long durationMs = 0;
+        int intensity = 0;
+        int length = 0;
+        synchronized (this) {
+            flushScheduled = false;
+            if (pendingKind == NONE) return;
+            long now = timeSource.nanoTime();
+            long due = dueNanos();
+            if (now < due) {
+                // Timer fired early (ms rounding, or a command submitted after clear())
+                flushScheduled = true;
+                timer.schedule(flushTask, delayMs(due - now));
+                return;
+            }
+            kind = pendingKind;
+            if (kind == ONE_SHOT) {
+                durationMs = pendingDurationMs;
+                intensity = pendingIntensity;
+            } else {
+                length = pendingLength;
+                System.arraycopy(pendingTimings, 0, playTimings, 0, length);
+                System.arraycopy(pendingAmplitudes, 0, playAmplitudes, 0, length);
+            }
+            pendingKind = NONE;
+            played = true;
+            lastPlayNanos = now;
+            playedCount++;
+        }
+        if (kind == ONE_SHOT) {
+            player.playOneShot(durationMs, intensity);
+        } else {
+            player.playWaveform(playTimings, playAmplitudes, length);
+        }
+    }
+}
@@ -0,0 +1,342 @@
+package com.example.nithphonewrapper;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Turns raw sensor events into NITH samples and submits them to a {@link SampleSender}.
+ * Independent of Android: the activities feed it from {@link AndroidSensorSource}, tests and
+ * benchmarks from {@link ReplaySensorSource}.
+ *
+ * Depending on the {@link Mode}, samples are produced on the sensor thread (one per rotation-vector
+ * or gyroscope event) or on the output clock thread ({@link #onTick}), never both, so the sender's
+ * ring buffer always has a single producer.
+ */
+public class HeadTrackingPipeline implements SensorSource.Listener, OutputClock.TickListener {
+
+    public enum Mode {
+        /** One sample per rotation-vector event. */
+        EVENT_DRIVEN,
+        /** One sample per output clock tick, interpolated between sensor readings. */
+        CLOCK,
+        /** One sample per gyroscope event, with the latest orientation (high-rate batching). */
+        GYRO_DRIVEN
+    }
+
+    /** Live readout of the latest values, called on the sensor thread for every rotation-vector event. */
+    public interface Readout {
+        void publish(float pitch, float roll, float velYaw, float velPitch, float velRoll);
+    }
+
+    public static final String METRIC_ROTATION_VECTOR_EVENTS = "sensor.rotation_vector.events";
+    public static final String METRIC_GYROSCOPE_EVENTS = "sensor.gyroscope.events";
+    public static final String METRIC_SENSOR_DELIVERY = "latency.sensor_delivery";
+    public static final String METRIC_SMOOTHING = "latency.smoothing";
+    public static final String METRIC_INTERPOLATION_DELAY = "pipeline.interpolation_delay_ns";
+
+    // Gyroscope gaps longer than this (sensor restarts, suspend) are not integrated by the yaw fusion
+    private static final long MAX_FUSION_STEP_NANOS = 100_000_000L;
+
+    private final SampleSender sender;
+    private final Mode mode;
+    private final long interpolationDelayNanos;
+    private final OutputClock.TimeSource timeSource;
+    private final SampleInterpolator interpolator = new SampleInterpolator();
+
+    // Sensor thread state
+    private float currentPitch = 0f;
+    private float currentRoll = 0f;
+    private boolean hasQuaternion = false;
+    private float quatW, quatX, quatY, quatZ; // latest rotation vector
+    private float angularVelYaw = 0f;   // rotation rate around Z axis
+    private float angularVelPitch = 0f; // rotation rate around X axis
+    private float angularVelRoll = 0f;  // rotation rate around Y axis
+    private final NithSample eventSample = new NithSample();
+
+    // Yaw fusion (sensor thread): latest accelerometer and magnetometer readings
+    private volatile MadgwickFilter yawFusion;
+    private float accelX, accelY, accelZ;
+    private float magneticX, magneticY, magneticZ;
+    private boolean hasAccel = false;
+    private long lastGyroTimestamp = 0;
+    private boolean hasYaw = false;
+    private float currentYaw = 0f; // not inverted
+
+    private final NithSample tickSample = new NithSample(); // clock thread only
+
+    // Settings, changed from the UI thread while running
+    private volatile boolean invertPitch = false;
+    private volatile boolean invertYaw = false;
+    private volatile boolean reportButtons = false;
+    private volatile boolean sendQuaternion = false;
+    private volatile SampleSmoother smoother;
+    private volatile MotionPredictor predictor;
+    private volatile boolean button1 = false;
+    private volatile boolean button2 = false;
+    private volatile Readout readout;
+
+    // Optional metrics, null until setMetrics()
+    private volatile AtomicLong rotationVectorEvents;
+    private volatile AtomicLong gyroscopeEvents;
+    private volatile LatencyHistogram deliveryLatency;
+    private volatile LatencyHistogram smoothingLatency;
+
+    /**
+     * @param interpolationDelayNanos CLOCK mode: how far behind each tick the sensor state is sampled
+     * @param timeSource clock of the sensor timestamps, used for the delivery latency metric
+     */
+    public HeadTrackingPipeline(SampleSender sender, Mode mode, long interpolationDelayNanos,
+                                OutputClock.TimeSource timeSource) {
+        this.sender = sender;
+        this.mode = mode;
+        this.interpolationDelayNanos = interpolationDelayNanos;
+        this.timeSource = timeSource;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public void setInvertPitch(boolean invert) {
+        invertPitch = invert;
+    }
+
+    public void setInvertYaw(boolean invert) {
+        invertYaw = invert;
+    }
+
+    /**
+     * Adds button states to every sample from now on. In CLOCK mode samples are then sent even
+     * before the first orientation reading (with zero values), so button presses always get out.
+     */
+    public void setButtons(boolean pressed1, boolean pressed2) {
+        button1 = pressed1;
+        button2 = pressed2;
+        reportButtons = true;
+    }
+
+    /**
+     * Fuses gyroscope, accelerometer and (if delivered) magnetometer events into a yaw position,
+     * updated once per gyroscope event and sent as head_pos_yaw. Null turns it off.
+     * Set before the sensor source starts.
+     */
+    public void setYawFusion(MadgwickFilter filter) {
+        yawFusion = filter;
+    }
+
+    /**
+     * Adds the rotation-vector quaternion (head_quat_w/x/y/z) to every sample, so receivers can
+     * skip the Euler conversion and its gimbal lock near +-90 degrees of pitch. The quaternion is
+     * sent as the sensor reports it; the invert switches do not apply. Set before the sensor
+     * source starts.
+     */
+    public void setSendQuaternion(boolean enabled) {
+        sendQuaternion = enabled;
+    }
+
+    /**
+     * Smooths pitch, roll, yaw and the angular velocities of every sample before it is sent (and
+     * before prediction). Null turns it off. Set before the sensor source starts.
+     */
+    public void setSmoother(SampleSmoother smoother) {
+        this.smoother = smoother;
+    }
+
+    /**
+     * Adds an orientation extrapolated by the predictor's horizon to every sample
+     * (head_pred_pitch/roll/yaw), next to the measured values. Null turns it off.
+     * Set before the sensor source starts.
+     */
+    public void setPredictor(MotionPredictor predictor) {
+        this.predictor = predictor;
+    }
+
+    public void setReadout(Readout readout) {
+        this.readout = readout;
+    }
+
+    /**
+     * Counts events per sensor and records SensorEvent.timestamp to delivery latency, and the
+     * time spent smoothing each sample if a smoother is set. Also exposes the interpolation delay
+     * (0 outside CLOCK mode): clock samples are built that far in the past, so the delay is part of
+     * the sender's sensor-to-send latency.
+     */
+    public void setMetrics(MetricsRegistry registry) {
+        registry.gauge(METRIC_INTERPOLATION_DELAY, () -> mode == Mode.CLOCK ? interpolationDelayNanos : 0);
+        gyroscopeEvents = registry.counter(METRIC_GYROSCOPE_EVENTS);
+        deliveryLatency = registry.histogram(METRIC_SENSOR_DELIVERY);
+        smoothingLatency = registry.histogram(METRIC_SMOOTHING);
+        rotationVectorEvents = registry.counter(METRIC_ROTATION_VECTOR_EVENTS);
+    }
+
+    @Override
+    public void onSensorEvent(int type, long timestampNanos, float[] values, int valueCount, int accuracy) {
+        LatencyHistogram delivery = deliveryLatency;
+        if (delivery != null) {
+            delivery.record(timeSource.nanoTime() - timestampNanos);
+        }
+
+        if (type == SensorSource.TYPE_GYROSCOPE) {
+            AtomicLong events = gyroscopeEvents;
+            if (events != null) events.incrementAndGet();
+
+            // Gyroscope gives angular velocity in rad/s
+            angularVelYaw = values[2];   // Z axis (yaw rotation rate)
+            angularVelPitch = values[0]; // X axis (pitch rotation rate)
+            angularVelRoll = values[1];  // Y axis (roll rotation rate)
+
+            float outputYaw = invertYaw ? -angularVelYaw : angularVelYaw;
+            interpolator.addAngularVelocity(timestampNanos, outputYaw, angularVelPitch, angularVelRoll);
+            updateYawFusion(timestampNanos);
+
+            if (mode == Mode.GYRO_DRIVEN) {
+                submitEventSample(invertPitch ? -currentPitch : currentPitch, outputYaw, timestampNanos);
+            }
+        } else if (type == SensorSource.TYPE_ROTATION_VECTOR) {
+            AtomicLong events = rotationVectorEvents;
+            if (events != null) events.incrementAndGet();
+
+            // Pitch and roll straight from the quaternion (ignoring azimuth to avoid drift)
+            quatX = values[0];
+            quatY = values[1];
+            quatZ = values[2];
+            quatW = OrientationMath.scalarPart(values, valueCount);
+            hasQuaternion = true;
+            currentPitch = (float) Math.toDegrees(OrientationMath.pitch(quatX, quatY, quatZ, quatW));
+            currentRoll = (float) Math.toDegrees(OrientationMath.roll(quatX, quatY, quatZ, quatW));
+
+            // Apply pitch and yaw inversion if enabled
+            float outputPitch = invertPitch ? -currentPitch : currentPitch;
+            float outputYaw = invertYaw ? -angularVelYaw : angularVelYaw;
+
+            Readout r = readout;
+            if (r != null) {
+                r.publish(outputPitch, currentRoll, outputYaw, angularVelPitch, angularVelRoll);
+            }
+
+            interpolator.addOrientation(timestampNanos, outputPitch, currentRoll);
+            if (sendQuaternion) {
+                interpolator.addQuaternion(timestampNanos, quatW, quatX, quatY, quatZ);
+            }
+
+            if (mode == Mode.EVENT_DRIVEN) {
+                submitEventSample(outputPitch, outputYaw, timestampNanos);
+            }
+        } else if (type == SensorSource.TYPE_ACCELEROMETER) {
+            accelX = values[0];
+            accelY = values[1];
+            accelZ = values[2];
+            hasAccel = true;
+        } else if (type == SensorSource.TYPE_MAGNETIC_FIELD) {
+            magneticX = values[0];
+            magneticY = values[1];
+            magneticZ = values[2];
+        }
+    }
+
+    private void updateYawFusion(long timestampNanos) {
+        MadgwickFilter fusion = yawFusion;
+        long dt = timestampNanos - lastGyroTimestamp;
+        boolean integrate = fusion != null && hasAccel && lastGyroTimestamp != 0
+                && dt > 0 && dt <= MAX_FUSION_STEP_NANOS;
+        lastGyroTimestamp = timestampNanos;
+        if (!integrate) return;
+
+        // Zero magnetometer values (none received) make the filter skip the heading correction
+        fusion.update(angularVelPitch, angularVelRoll, angularVelYaw, accelX, accelY, accelZ,
+                magneticX, magneticY, magneticZ, dt * 1e-9f);
+        currentYaw = fusion.yawDegrees();
+        hasYaw = true;
+        interpolator.addYaw(timestampNanos, invertYaw ? -currentYaw : currentYaw);
+    }
+
+    private void submitEventSample(float outputPitch, float outputYaw, long timestampNanos) {
+        eventSample.pitch = outputPitch;
+        eventSample.roll = currentRoll;
+        eventSample.hasYaw = hasYaw;
+        eventSample.yaw = invertYaw ? -currentYaw : currentYaw;
+        eventSample.hasQuaternion = sendQuaternion && hasQuaternion;
+        eventSample.quatW = quatW;
+        eventSample.quatX = quatX;
+        eventSample.quatY = quatY;
+        eventSample.quatZ = quatZ;
+        eventSample.velYaw = outputYaw;
+        eventSample.velPitch = angularVelPitch;
+        eventSample.velRoll = angularVelRoll;
+        eventSample.timestampNanos = timestampNanos;
+        eventSample.sensorTimestampNanos = timestampNanos;
+        applySmoothing(eventSample);
+        applyPrediction(eventSample);
+        applyButtons(eventSample);
+        sender.submit(eventSample);
+    }
+
+    /**
+     * Output clock tick (CLOCK mode): emits the state interpolated at the tick deadline minus the
+     * interpolation delay. The sample's sensor timestamp is that of the newest reading used.
+     */
+    @Override
+    public void onTick(long deadlineNanos) {
+        if (!interpolator.sampleAt(deadlineNanos - interpolationDelayNanos, tickSample)) {
+            if (!reportButtons) return;
+            // No orientation yet: still report button states
+            tickSample.pitch = 0f;
+            tickSample.roll = 0f;
+            tickSample.hasYaw = false;
+            tickSample.hasQuaternion = false;
+            tickSample.velYaw = 0f;
+            tickSample.velPitch = 0f;
+            tickSample.velRoll = 0f;
+            tickSample.timestampNanos = deadlineNanos;
+            tickSample.sensorTimestampNanos = deadlineNanos; // no reading to refer to
+            tickSample.hasPrediction = false;
+        } else {
+            applySmoothing(tickSample);
+            applyPrediction(tickSample);
+        }
+        applyButtons(tickSample);
+        sender.submit(tickSample);
+    }
+
+    // Like applyPrediction, only ever called from the one producing thread
+    private void applySmoothing(NithSample sample) {
+        SampleSmoother s = smoother;
+        if (s == null) return;
+        LatencyHistogram cost = smoothingLatency;
+        if (cost == null) {
+            s.apply(sample);
+            return;
+        }
+        long start = timeSource.nanoTime();
+        s.apply(sample);
+        cost.record(timeSource.nanoTime() - start);
+    }
+
+    /**
+     * Runs on the thread that produces samples (sensor or clock, never both), so one predictor is
+     * enough. The sample's values are already inverted: the predictor works on the sensor's signs.
+     */
+    private void applyPrediction(NithSample sample) {
+        MotionPredictor p = predictor;
+        if (p == null) {
+            sample.hasPrediction = false;
+            return;
+        }
+        boolean pitchInverted = invertPitch;
+        boolean yawInverted = invertYaw;
+        p.predict(pitchInverted ? -sample.pitch : sample.pitch, sample.roll,
+                sample.velPitch, sample.velRoll, yawInverted ? -sample.velYaw : sample.velYaw);
+        sample.predPitch = pitchInverted ? -p.getPitch() : p.getPitch();
+        sample.predRoll = p.getRoll();
+        float yaw = sample.yaw + (yawInverted ? -p.getYawDelta() : p.getYawDelta());
+        if (yaw > 180f) yaw -= 360f;
+        else if (yaw < -180f) yaw += 360f;
+        sample.predYaw = yaw;
+        sample.hasPrediction = true;
+    }
+
+    private void applyButtons(NithSample sample) {
+        sample.hasButtons = reportButtons;
+        sample.button1 = button1;
+        sample.button2 = button2;
+    }
+}
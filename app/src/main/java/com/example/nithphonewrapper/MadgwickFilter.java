@@ -0,0 +1,311 @@
+package com.example.nithphonewrapper;
+
+/**
+ * Madgwick gradient-descent orientation filter (S. Madgwick, 2010), used for a yaw position that
+ * does not drift: the gyroscope is integrated at its own rate, while the accelerometer (gravity)
+ * and the magnetometer (magnetic north) pull the estimate back by at most {@link #getGain()} rad/s.
+ * Without a magnetometer only pitch and roll are corrected and yaw drifts slowly with gyro bias.
+ * The first update starts from the orientation measured by accelerometer and magnetometer, so
+ * the output is usable immediately instead of converging from identity.
+ *
+ * Works in the Android device frame (x right, y up the screen, z out of it). The state is four
+ * floats and every update is plain arithmetic: no allocation. Not thread-safe: update from the
+ * sensor thread only.
+ */
+public class MadgwickFilter {
+
+    /** Steady-state gain: low enough to hide magnetometer noise, high enough to cancel gyro drift. */
+    public static final float DEFAULT_GAIN = 0.1f;
+
+    private final float gain;
+
+    // Orientation quaternion, sensor frame relative to earth frame (x magnetic north, z up)
+    private float q0 = 1f;
+    private float q1 = 0f;
+    private float q2 = 0f;
+    private float q3 = 0f;
+    private boolean tiltInitialized = false;    // from the accelerometer
+    private boolean headingInitialized = false; // from the magnetometer
+
+    public MadgwickFilter() {
+        this(DEFAULT_GAIN);
+    }
+
+    public MadgwickFilter(float gain) {
+        if (!(gain > 0f)) {
+            throw new IllegalArgumentException("Gain must be positive: " + gain);
+        }
+        this.gain = gain;
+    }
+
+    public float getGain() {
+        return gain;
+    }
+
+    /** Forgets the estimate; the next update starts over from the measured orientation. */
+    public void reset() {
+        q0 = 1f;
+        q1 = q2 = q3 = 0f;
+        tiltInitialized = false;
+        headingInitialized = false;
+    }
+
+    /**
+     * One step with gyroscope (rad/s), accelerometer (any unit) and magnetometer (any unit).
+     * Falls back to {@link #updateImu} when the magnetometer reading is all zeros.
+     */
+    public void update(float gx, float gy, float gz, float ax, float ay, float az,
+                       float mx, float my, float mz, float dtSeconds) {
+        if (mx == 0f && my == 0f && mz == 0f) {
+            updateImu(gx, gy, gz, ax, ay, az, dtSeconds);
+            return;
+        }
+        if (!headingInitialized && initialize(ax, ay, az, mx, my, mz)) {
+            return;
+        }
+
+        // Rate of change of the quaternion from the gyroscope
+        float qDot0 = 0.5f * (-q1 * gx - q2 * gy - q3 * gz);
+        float qDot1 = 0.5f * (q0 * gx + q2 * gz - q3 * gy);
+        float qDot2 = 0.5f * (q0 * gy - q1 * gz + q3 * gx);
+        float qDot3 = 0.5f * (q0 * gz + q1 * gy - q2 * gx);
+
+        if (!(ax == 0f && ay == 0f && az == 0f)) {
+            float recipNorm = invSqrt(ax * ax + ay * ay + az * az);
+            ax *= recipNorm;
+            ay *= recipNorm;
+            az *= recipNorm;
+            recipNorm = invSqrt(mx * mx + my * my + mz * mz);
+            mx *= recipNorm;
+            my *= recipNorm;
+            mz *= recipNorm;
+
+            float _2q0mx = 2f * q0 * mx;
+            float _2q0my = 2f * q0 * my;
+            float _2q0mz = 2f * q0 * mz;
+            float _2q1mx = 2f * q1 * mx;
+            float _2q0 = 2f * q0;
+            float _2q1 = 2f * q1;
+            float _2q2 = 2f * q2;
+            float _2q3 = 2f * q3;
+            float _2q0q2 = 2f * q0 * q2;
+            float _2q2q3 = 2f * q2 * q3;
+            float q0q0 = q0 * q0;
+            float q0q1 = q0 * q1;
+            float q0q2 = q0 * q2;
+            float q0q3 = q0 * q3;
+            float q1q1 = q1 * q1;
+            float q1q2 = q1 * q2;
+            float q1q3 = q1 * q3;
+            float q2q2 = q2 * q2;
+            float q2q3 = q2 * q3;
+            float q3q3 = q3 * q3;
+
+            // Direction of the earth's magnetic field in the earth frame (horizontal and vertical part)
+            float hx = mx * q0q0 - _2q0my * q3 + _2q0mz * q2 + mx * q1q1 + _2q1 * my * q2 + _2q1 * mz * q3
+                    - mx * q2q2 - mx * q3q3;
+            float hy = _2q0mx * q3 + my * q0q0 - _2q0mz * q1 + _2q1mx * q2 - my * q1q1 + my * q2q2
+                    + _2q2 * mz * q3 - my * q3q3;
+            float _2bx = (float) Math.sqrt(hx * hx + hy * hy);
+            float _2bz = -_2q0mx * q2 + _2q0my * q1 + mz * q0q0 + _2q1mx * q3 - mz * q1q1 + _2q2 * my * q3
+                    - mz * q2q2 + mz * q3q3;
+            float _4bx = 2f * _2bx;
+            float _4bz = 2f * _2bz;
+
+            // Gradient of the objective function (gravity and magnetic field errors)
+            float ex = _2bx * (0.5f - q2q2 - q3q3) + _2bz * (q1q3 - q0q2) - mx;
+            float ey = _2bx * (q1q2 - q0q3) + _2bz * (q0q1 + q2q3) - my;
+            float ez = _2bx * (q0q2 + q1q3) + _2bz * (0.5f - q1q1 - q2q2) - mz;
+            float gxErr = 2f * q1q3 - _2q0q2 - ax;
+            float gyErr = 2f * q0q1 + _2q2q3 - ay;
+            float gzErr = 1f - 2f * q1q1 - 2f * q2q2 - az;
+            float s0 = -_2q2 * gxErr + _2q1 * gyErr
+                    - _2bz * q2 * ex + (-_2bx * q3 + _2bz * q1) * ey + _2bx * q2 * ez;
+            float s1 = _2q3 * gxErr + _2q0 * gyErr - 4f * q1 * gzErr
+                    + _2bz * q3 * ex + (_2bx * q2 + _2bz * q0) * ey + (_2bx * q3 - _4bz * q1) * ez;
+            float s2 = -_2q0 * gxErr + _2q3 * gyErr - 4f * q2 * gzErr
+                    + (-_4bx * q2 - _2bz * q0) * ex + (_2bx * q1 + _2bz * q3) * ey + (_2bx * q0 - _4bz * q2) * ez;
+            float s3 = _2q1 * gxErr + _2q2 * gyErr
+                    + (-_4bx * q3 + _2bz * q1) * ex + (-_2bx * q0 + _2bz * q2) * ey + _2bx * q1 * ez;
+            float sNorm = s0 * s0 + s1 * s1 + s2 * s2 + s3 * s3;
+            if (sNorm > 0f) {
+                float beta = gain * invSqrt(sNorm);
+                qDot0 -= beta * s0;
+                qDot1 -= beta * s1;
+                qDot2 -= beta * s2;
+                qDot3 -= beta * s3;
+            }
+        }
+
+        integrate(qDot0, qDot1, qDot2, qDot3, dtSeconds);
+    }
+
+    /** One step with gyroscope (rad/s) and accelerometer only: pitch and roll are corrected, yaw is not. */
+    public void updateImu(float gx, float gy, float gz, float ax, float ay, float az, float dtSeconds) {
+        if (!tiltInitialized && initializeTilt(ax, ay, az)) {
+            return;
+        }
+        float qDot0 = 0.5f * (-q1 * gx - q2 * gy - q3 * gz);
+        float qDot1 = 0.5f * (q0 * gx + q2 * gz - q3 * gy);
+        float qDot2 = 0.5f * (q0 * gy - q1 * gz + q3 * gx);
+        float qDot3 = 0.5f * (q0 * gz + q1 * gy - q2 * gx);
+
+        if (!(ax == 0f && ay == 0f && az == 0f)) {
+            float recipNorm = invSqrt(ax * ax + ay * ay + az * az);
+            ax *= recipNorm;
+            ay *= recipNorm;
+            az *= recipNorm;
+
+            float _2q0 = 2f * q0;
+            float _2q1 = 2f * q1;
+            float _2q2 = 2f * q2;
+            float _2q3 = 2f * q3;
+            float _4q0 = 4f * q0;
+            float _4q1 = 4f * q1;
+            float _4q2 = 4f * q2;
+            float _8q1 = 8f * q1;
+            float _8q2 = 8f * q2;
+            float q0q0 = q0 * q0;
+            float q1q1 = q1 * q1;
+            float q2q2 = q2 * q2;
+            float q3q3 = q3 * q3;
+
+            float s0 = _4q0 * q2q2 + _2q2 * ax + _4q0 * q1q1 - _2q1 * ay;
+            float s1 = _4q1 * q3q3 - _2q3 * ax + 4f * q0q0 * q1 - _2q0 * ay - _4q1 + _8q1 * q1q1
+                    + _8q1 * q2q2 + _4q1 * az;
+            float s2 = 4f * q0q0 * q2 + _2q0 * ax + _4q2 * q3q3 - _2q3 * ay - _4q2 + _8q2 * q1q1
+                    + _8q2 * q2q2 + _4q2 * az;
+            float s3 = 4f * q1q1 * q3 - _2q1 * ax + 4f * q2q2 * q3 - _2q2 * ay;
+            float sNorm = s0 * s0 + s1 * s1 + s2 * s2 + s3 * s3;
+            if (sNorm > 0f) {
+                float beta = gain * invSqrt(sNorm);
+                qDot0 -= beta * s0;
+                qDot1 -= beta * s1;
+                qDot2 -= beta * s2;
+                qDot3 -= beta * s3;
+            }
+        }
+
+        integrate(qDot0, qDot1, qDot2, qDot3, dtSeconds);
+    }
+
+    /**
+     * Heading in degrees, -180..180, counterclockwise positive (same sense as gyroscope z).
+     * 0 is magnetic north with a magnetometer, the starting heading without one.
+     */
+    public float yawDegrees() {
+        return (float) Math.toDegrees(Math.atan2(2f * (q0 * q3 + q1 * q2), 1f - 2f * (q2 * q2 + q3 * q3)));
+    }
+
+    public float getW() {
+        return q0;
+    }
+
+    public float getX() {
+        return q1;
+    }
+
+    public float getY() {
+        return q2;
+    }
+
+    public float getZ() {
+        return q3;
+    }
+
+    /**
+     * Sets the orientation from gravity (up) and the magnetic field, as SensorManager.getRotationMatrix
+     * does: east = m x up, north = up x east. The rows of the device-to-earth matrix are the earth
+     * axes (x north, y west, z up) in device coordinates.
+     * @return false if the readings are degenerate (free fall, field parallel to gravity)
+     */
+    private boolean initialize(float ax, float ay, float az, float mx, float my, float mz) {
+        float aNorm = (float) Math.sqrt(ax * ax + ay * ay + az * az);
+        if (aNorm == 0f) return false;
+        float ux = ax / aNorm, uy = ay / aNorm, uz = az / aNorm;
+        float ex = my * uz - mz * uy;
+        float ey = mz * ux - mx * uz;
+        float ez = mx * uy - my * ux;
+        float eNorm = (float) Math.sqrt(ex * ex + ey * ey + ez * ez);
+        if (eNorm < 1e-6f) return false;
+        ex /= eNorm;
+        ey /= eNorm;
+        ez /= eNorm;
+        float nx = uy * ez - uz * ey;
+        float ny = uz * ex - ux * ez;
+        float nz = ux * ey - uy * ex;
+        setFromMatrix(nx, ny, nz, -ex, -ey, -ez, ux, uy, uz);
+        tiltInitialized = true;
+        headingInitialized = true;
+        return true;
+    }
+
+    /** Sets pitch and roll from gravity alone (shortest rotation from device up to earth z), yaw 0. */
+    private boolean initializeTilt(float ax, float ay, float az) {
+        float aNorm = (float) Math.sqrt(ax * ax + ay * ay + az * az);
+        if (aNorm == 0f) return false;
+        float w = 1f + az / aNorm;
+        if (w < 1e-6f) return false; // upside down: any axis would do, let the filter converge
+        float x = ay / aNorm;
+        float y = -ax / aNorm;
+        float recipNorm = invSqrt(w * w + x * x + y * y);
+        q0 = w * recipNorm;
+        q1 = x * recipNorm;
+        q2 = y * recipNorm;
+        q3 = 0f;
+        tiltInitialized = true;
+        return true;
+    }
+
+    /** Quaternion from the rotation matrix with rows (r00 r01 r02), (r10 r11 r12), (r20 r21 r22). */
+    private void setFromMatrix(float r00, float r01, float r02, float r10, float r11, float r12,
+                               float r20, float r21, float r22) {
+        float trace = r00 + r11 + r22;
+        if (trace > 0f) {
+            float s = (float) Math.sqrt(trace + 1f) * 2f;
+            q0 = 0.25f * s;
+            q1 = (r21 - r12) / s;
+            q2 = (r02 - r20) / s;
+            q3 = (r10 - r01) / s;
+        } else if (r00 > r11 && r00 > r22) {
+            float s = (float) Math.sqrt(1f + r00 - r11 - r22) * 2f;
+            q0 = (r21 - r12) / s;
+            q1 = 0.25f * s;
+            q2 = (r01 + r10) / s;
+            q3 = (r02 + r20) / s;
+        } else if (r11 > r22) {
+            float s = (float) Math.sqrt(1f + r11 - r00 - r22) * 2f;
+            q0 = (r02 - r20) / s;
+            q1 = (r01 + r10) / s;
+            q2 = 0.25f * s;
+            q3 = (r12 + r21) / s;
+        } else {
+            float s = (float) Math.sqrt(1f + r22 - r00 - r11) * 2f;
+            q0 = (r10 - r01) / s;
+            q1 = (r02 + r20) / s;
+            q2 = (r12 + r21) / s;
+            q3 = 0.25f * s;
+        }
+        float recipNorm = invSqrt(q0 * q0 + q1 * q1 + q2 * q2 + q3 * q3);
+        q0 *= recipNorm;
+        q1 *= recipNorm;
+        q2 *= recipNorm;
+        q3 *= recipNorm;
+    }
+
+    private void integrate(float qDot0, float qDot1, float qDot2, float qDot3, float dtSeconds) {
+        q0 += qDot0 * dtSeconds;
+        q1 += qDot1 * dtSeconds;
+        q2 += qDot2 * dtSeconds;
+        q3 += qDot3 * dtSeconds;
+        float recipNorm = invSqrt(q0 * q0 + q1 * q1 + q2 * q2 + q3 * q3);
+        q0 *= recipNorm;
+        q1 *= recipNorm;
+        q2 *= recipNorm;
+        q3 *= recipNorm;
+    }
+
+    private static float invSqrt(float x) {
+        return (float) (1.0 / Math.sqrt(x));
+    }
+}
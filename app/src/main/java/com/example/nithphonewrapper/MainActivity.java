@@ -5,13 +5,17 @@ import androidx.appcompat.app.AppCompatActivity;
 import android.content.Context;
 import android.content.Intent;
 import android.hardware.Sensor;
-import android.hardware.SensorEvent;
-import android.hardware.SensorEventListener;
 import android.hardware.SensorManager;
+import android.net.ConnectivityManager;
 import android.net.DhcpInfo;
+import android.net.LinkProperties;
+import android.net.Network;
 import android.net.wifi.WifiManager;
 import android.os.Build;
 import android.os.Bundle;
+import android.os.SystemClock;
+import android.os.Handler;
+import android.os.Looper;
 import android.os.VibrationEffect;
 import android.os.Vibrator;
 import android.util.Log;
@@ -21,68 +25,184 @@ import android.widget.EditText;
 import android.widget.TextView;
 import android.widget.Toast;
 
+import java.io.File;
+import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Writer;
 import java.lang.reflect.Method;
-import java.net.DatagramPacket;
-import java.net.DatagramSocket;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.charset.StandardCharsets;
 import java.net.UnknownHostException;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
-public class MainActivity extends AppCompatActivity implements SensorEventListener {
+public class MainActivity extends AppCompatActivity {
 
     private static final String TAG = "HeadTrackControllerJA";
 
+    // Errors are reported on the change to failing and then periodically (see SampleSender.Listener)
+    private final SampleSender.Listener sendListener = new SampleSender.Listener() {
+        @Override
+        public void onSendError(IOException e) {
+            Log.e(TAG, "Send error", e);
+        }
+
+        @Override
+        public void onSendRecovered(long failedSends) {
+            Log.i(TAG, "Sending again after " + failedSends + " failed sends");
+        }
+    };
+
     // Discovery Ports
     private static final int DISCOVERY_PORT = 20500;
     private static final int VIBRATION_PORT = 21103;
     private static final int DEFAULT_RECEIVER_PORT = 20103;
 
+    // Output rate (Hz) of the fixed-rate clock; 0 sends on every rotation-vector event instead
+    private static final int DEFAULT_OUTPUT_RATE_HZ = 0;
+    // Interpolate this far behind the clock, so two sensor readings (SENSOR_DELAY_GAME ~20 ms) bracket each tick
+    private static final long INTERPOLATION_DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(20);
+
+    // Batching: one sample per gyroscope event, several samples per datagram. The hold time also
+    // becomes the sensors' maxReportLatencyUs, so the sensor hub can deliver events in bursts
+    private static final int DEFAULT_BATCH_HOLD_MS = 20;
+    // Hardware batches arrive in bursts: queue them all instead of keeping only the latest
+    private static final int BATCH_QUEUE_CAPACITY = 1024;
+
     // UI Elements
     private TextView tvStatus, tvIpAddress, tvSensorData, tvSensorInfo, tvAngularRate;
-    private TextView tvNetworkStatus, tvLastCommand;
-    private EditText etTargetIp, etTargetPort, etListenPort;
-    private Button btnStartStop, btnTestVibration, btnDiscoverPc, btnOpenButtons;
+    private TextView tvNetworkStatus, tvLastCommand, tvMetrics;
+    private EditText etTargetIp, etTargetPort, etListenPort, etOutputRate, etBatchSize, etBatchHoldMs, etBatchGyroRate;
+    private EditText etDeadBandAngle, etDeadBandVelocity, etPredictionMs;
+    private EditText etHapticWindowMs, etHapticMaxRate;
+    private EditText etSmoothAngleCutoff, etSmoothAngleBeta, etSmoothVelocityCutoff, etSmoothVelocityBeta;
+    private EditText etMulticastGroup, etMulticastTtl;
+    private Button btnStartStop, btnTestVibration, btnDiscoverPc, btnOpenButtons, btnExportMetrics;
     private androidx.appcompat.widget.SwitchCompat switchInvertPitch, switchInvertYaw, switchVibrateOnPress;
+    private androidx.appcompat.widget.SwitchCompat switchFrameMetadata, switchRecordTrace, switchYawFusion;
+    private androidx.appcompat.widget.SwitchCompat switchQuaternion, switchMulticast, switchTcp;
+    private androidx.appcompat.widget.SwitchCompat switchDebugMetrics;
 
     // Sensor Variables
     private SensorManager sensorManager;
     private Sensor rotationVectorSensor;
     private Sensor gyroscopeSensor;
-    private final float[] rotationVectorReading = new float[5];
-    private final float[] orientationAngles = new float[3];
-    private final float[] gyroscopeReading = new float[3];
-    
-    // Orientation data (from rotation vector)
-    private float currentPitch = 0f;
-    private float currentRoll = 0f;
-    
-    // Angular velocity (from gyroscope - rad/s)
-    private float angularVelYaw = 0f;   // rotation rate around Z axis
-    private float angularVelPitch = 0f; // rotation rate around X axis  
-    private float angularVelRoll = 0f;  // rotation rate around Y axis
-    
-    // Settings
+    // Yaw fusion only; both may be null
+    private Sensor accelerometerSensor;
+    private Sensor magneticFieldSensor;
+    private AndroidSensorSource sensorSource;
+    // Raw sensor trace of the current tracking session, null unless recording
+    private SensorTraceRecorder traceRecorder;
+    private int traceSession; // UI thread only: changes on every start and stop of a recording
+
+    // Live readout, refreshed once per frame
+    private SensorReadoutUpdater readoutUpdater;
+
+    // Settings, forwarded to the running pipeline
     private boolean invertPitch = false;
     private boolean invertYaw = false;
     private boolean vibrateOnPress = false;
+    private volatile boolean frameMetadata = false;
 
     // Networking Variables
-    private int currentTargetPort;
     private int currentListenPort;
-    private InetAddress targetInetAddress;
-    private DatagramSocket sendSocket;
-
-    // Discovery and Vibration Listeners
-    private DiscoveryListener discoveryListener;
-    private VibrationCommandListener vibrationListener;
+    private volatile UdpFanOutTransport udpTransport;
+    // Every receiver that answered discovery gets the same frames, in the format they all support
+    private static final long RECEIVER_ERROR_TIMEOUT_MS = 5000;
+    private final Map<InetSocketAddress, FrameFormat> discoveredReceivers = new ConcurrentHashMap<>();
+    // While streaming, discovery is repeated and receivers that stop replying are dropped
+    private static final long RECEIVER_REFRESH_INTERVAL_MS = 2000;
+    private static final long RECEIVER_SILENCE_TIMEOUT_MS = 6000;
+    private final Map<InetSocketAddress, Long> receiverLastSeenNanos = new ConcurrentHashMap<>();
+    private final Runnable receiverRefresh = this::refreshReceivers;
+    // The receiver in the IP/port fields: pinned in the set, never expired for errors or silence
+    private volatile InetSocketAddress configuredTarget;
+    private String streamDestination; // UI thread only, for the tracking status
+    private volatile FrameFormat negotiatedFrameFormat = FrameFormat.TEXT;
+    // Multicast mode: one datagram per frame to a group, whatever the number of listeners.
+    // Some Wi-Fi drivers filter multicast while the lock is not held, so it is held while streaming.
+    private static final int DEFAULT_MULTICAST_TTL = 1;
+    private volatile UdpChannelTransport multicastTransport;
+    private WifiManager.MulticastLock multicastLock;
+    // TCP mode: one length-prefixed stream to Target IP:Port, e.g. over USB with "adb reverse".
+    // An empty IP means the adb reverse endpoint on the phone itself.
+    static final String TCP_DEFAULT_HOST = "127.0.0.1";
+    private static final long TCP_RECONNECT_INTERVAL_MS = 1000;
+    private volatile TcpFrameTransport tcpTransport;
+
+    // Device identity for the extra fields: computed once, phone IP refreshed on network changes only
+    private final String deviceInfo = Build.MANUFACTURER + "_" + Build.MODEL;
+    private volatile String phoneIp = "Not Available";
+    private ConnectivityManager connectivityManager;
+    private ConnectivityManager.NetworkCallback networkCallback;
+
+    // Send pipeline: sensor source -> tracking pipeline -> ring buffer -> single sender thread
+    private static final int SEND_QUEUE_CAPACITY = 64;
+    private static final SampleRingBuffer.OverflowPolicy SEND_OVERFLOW_POLICY = SampleRingBuffer.OverflowPolicy.KEEP_LATEST;
+    private volatile SampleSender sampleSender;
+    private volatile HeadTrackingPipeline pipeline;
+    // Fixed-rate output: the clock thread takes samples from the pipeline's interpolator
+    private OutputClock outputClock;
+
+    // Pipeline metrics: hot-path counters and histograms are looked up once, here
+    private static final long METRICS_REFRESH_MS = 1000;
+    static final String METRIC_VIBRATION_COMMANDS = "vibration.commands";
+    static final String METRIC_VIBRATION_MALFORMED = "vibration.malformed";
+    private final MetricsRegistry metrics = new MetricsRegistry();
+    private final AtomicLong rotationVectorEvents = metrics.counter(HeadTrackingPipeline.METRIC_ROTATION_VECTOR_EVENTS);
+    private final AtomicLong gyroscopeEvents = metrics.counter(HeadTrackingPipeline.METRIC_GYROSCOPE_EVENTS);
+    private final LatencyHistogram sensorDeliveryLatency = metrics.histogram(HeadTrackingPipeline.METRIC_SENSOR_DELIVERY);
+    private final AtomicLong vibrationCommands = metrics.counter(METRIC_VIBRATION_COMMANDS);
+    private final AtomicLong malformedVibrationCommands = metrics.counter(METRIC_VIBRATION_MALFORMED);
+    private final Handler uiHandler = new Handler(Looper.getMainLooper());
+    // File writes (metrics export) stay off the UI thread
+    private final ExecutorService fileExecutor = Executors.newSingleThreadExecutor();
+    private final Runnable metricsRefresh = this::refreshMetricsPanel;
+    private long lastMetricsRefreshMs;
+    private long lastRotationVectorEvents, lastGyroscopeEvents, lastDatagrams;
+
+    // Discovery and vibration sockets share one reactor thread
+    private static final int DISCOVERY_BUFFER_SIZE = 512;
+    private static final int VIBRATION_BUFFER_SIZE = 1024;
+    private final UdpReactor udpReactor = new UdpReactor();
+    private final VibrationCommandParser vibrationParser = new VibrationCommandParser(); // reactor thread only
+    private volatile DatagramChannel discoveryChannel;
     private volatile boolean isTracking = false;
 
     // Vibration
     private Vibrator vibrator;
     private final int defaultVibrationAmplitude = VibrationEffect.DEFAULT_AMPLITUDE;
+    private final StringBuilder lastCommandText = new StringBuilder(64); // UI thread only
+    // Commands within the window merge into one vibration; at most the max rate start per second.
+    // Defaults for the vibration limit fields
+    private static final int DEFAULT_HAPTIC_WINDOW_MS = 10;
+    private static final int DEFAULT_HAPTIC_MAX_RATE_HZ = 25;
+    private static final int EFFECT_CACHE_SIZE = 8;
+    private final HapticScheduler hapticScheduler = new HapticScheduler(DEFAULT_HAPTIC_WINDOW_MS, DEFAULT_HAPTIC_MAX_RATE_HZ,
+            SystemClock::elapsedRealtimeNanos, uiHandler::postDelayed, new HapticScheduler.Player() {
+                @Override
+                public void playOneShot(long durationMs, int intensity) {
+                    vibrate(durationMs, intensity);
+                }
+
+                @Override
+                public void playWaveform(long[] timingsMs, int[] amplitudes, int length) {
+                    vibrateWaveform(timingsMs, amplitudes, length);
+                }
+            });
+    // One-shot effects only exist from API 26; the cache is only touched there
+    private final EffectCache<VibrationEffect> effectCache = new EffectCache<>(EFFECT_CACHE_SIZE,
+            (durationMs, intensity) -> VibrationEffect.createOneShot(durationMs, intensity));
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -97,9 +217,27 @@ public class MainActivity extends AppCompatActivity implements SensorEventListen
         tvSensorInfo = findViewById(R.id.tvSensorInfo);
         tvNetworkStatus = findViewById(R.id.tvNetworkStatus);
         tvLastCommand = findViewById(R.id.tvLastCommand);
+        tvMetrics = findViewById(R.id.tvMetrics);
+        btnExportMetrics = findViewById(R.id.btnExportMetrics);
+        switchDebugMetrics = findViewById(R.id.switchDebugMetrics);
         etTargetIp = findViewById(R.id.etTargetIp);
         etTargetPort = findViewById(R.id.etTargetPort);
         etListenPort = findViewById(R.id.etListenPort);
+        etOutputRate = findViewById(R.id.etOutputRate);
+        etBatchSize = findViewById(R.id.etBatchSize);
+        etBatchHoldMs = findViewById(R.id.etBatchHoldMs);
+        etBatchGyroRate = findViewById(R.id.etBatchGyroRate);
+        etDeadBandAngle = findViewById(R.id.etDeadBandAngle);
+        etDeadBandVelocity = findViewById(R.id.etDeadBandVelocity);
+        etPredictionMs = findViewById(R.id.etPredictionMs);
+        etHapticWindowMs = findViewById(R.id.etHapticWindowMs);
+        etHapticMaxRate = findViewById(R.id.etHapticMaxRate);
+        etSmoothAngleCutoff = findViewById(R.id.etSmoothAngleCutoff);
+        etSmoothAngleBeta = findViewById(R.id.etSmoothAngleBeta);
+        etSmoothVelocityCutoff = findViewById(R.id.etSmoothVelocityCutoff);
+        etSmoothVelocityBeta = findViewById(R.id.etSmoothVelocityBeta);
+        etMulticastGroup = findViewById(R.id.etMulticastGroup);
+        etMulticastTtl = findViewById(R.id.etMulticastTtl);
         btnStartStop = findViewById(R.id.btnStartStop);
         btnTestVibration = findViewById(R.id.btnTestVibration);
         btnDiscoverPc = findViewById(R.id.btnDiscoverPc);
@@ -107,11 +245,22 @@ public class MainActivity extends AppCompatActivity implements SensorEventListen
         switchInvertPitch = findViewById(R.id.switchInvertPitch);
         switchInvertYaw = findViewById(R.id.switchInvertYaw);
         switchVibrateOnPress = findViewById(R.id.switchVibrateOnPress);
+        switchFrameMetadata = findViewById(R.id.switchFrameMetadata);
+        switchRecordTrace = findViewById(R.id.switchRecordTrace);
+        switchYawFusion = findViewById(R.id.switchYawFusion);
+        switchQuaternion = findViewById(R.id.switchQuaternion);
+        switchMulticast = findViewById(R.id.switchMulticast);
+        switchTcp = findViewById(R.id.switchTcp);
+
+        readoutUpdater = new SensorReadoutUpdater(tvSensorData, tvAngularRate);
 
         // Initialize SensorManager and sensors
         sensorManager = (SensorManager) getSystemService(Context.SENSOR_SERVICE);
         rotationVectorSensor = sensorManager.getDefaultSensor(Sensor.TYPE_ROTATION_VECTOR);
         gyroscopeSensor = sensorManager.getDefaultSensor(Sensor.TYPE_GYROSCOPE);
+        accelerometerSensor = sensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER);
+        magneticFieldSensor = sensorManager.getDefaultSensor(Sensor.TYPE_MAGNETIC_FIELD);
+        sensorSource = new AndroidSensorSource(sensorManager, rotationVectorSensor, gyroscopeSensor);
 
         if (rotationVectorSensor == null) {
             tvStatus.setText("Status: Rotation Vector Sensor NOT AVAILABLE.");
@@ -126,18 +275,26 @@ public class MainActivity extends AppCompatActivity implements SensorEventListen
             Log.w(TAG, "Gyroscope not available. Angular acceleration disabled.");
             tvSensorInfo.setText("Sensors: RV ✓ | Gyro ✗");
         } else {
-            tvSensorInfo.setText("Sensors: RV ✓ | Gyro ✓");
+            tvSensorInfo.setText("Sensors: RV ✓ | Gyro ✓ | Mag " + (magneticFieldSensor != null ? "✓" : "✗"));
+        }
+        if (gyroscopeSensor == null || accelerometerSensor == null) {
+            // Yaw fusion integrates the gyroscope and levels with the accelerometer
+            switchYawFusion.setEnabled(false);
         }
         
         // Setup invert pitch switch
         switchInvertPitch.setOnCheckedChangeListener((buttonView, isChecked) -> {
             invertPitch = isChecked;
+            HeadTrackingPipeline p = pipeline;
+            if (p != null) p.setInvertPitch(isChecked);
             Log.d(TAG, "Pitch invert: " + invertPitch);
         });
         
         // Setup invert yaw switch
         switchInvertYaw.setOnCheckedChangeListener((buttonView, isChecked) -> {
             invertYaw = isChecked;
+            HeadTrackingPipeline p = pipeline;
+            if (p != null) p.setInvertYaw(isChecked);
             Log.d(TAG, "Yaw invert: " + invertYaw);
         });
         
@@ -147,15 +304,46 @@ public class MainActivity extends AppCompatActivity implements SensorEventListen
             Log.d(TAG, "Vibrate on press: " + vibrateOnPress);
         });
 
+        // Setup frame metadata switch (sequence number and timestamps in the extra section)
+        switchFrameMetadata.setOnCheckedChangeListener((buttonView, isChecked) -> {
+            frameMetadata = isChecked;
+            SampleSender sender = sampleSender;
+            if (sender != null) {
+                sender.setFrameMetadata(isChecked);
+            }
+        });
+
+        // Setup debug metrics panel
+        switchDebugMetrics.setOnCheckedChangeListener((buttonView, isChecked) -> {
+            int visibility = isChecked ? View.VISIBLE : View.GONE;
+            tvMetrics.setVisibility(visibility);
+            btnExportMetrics.setVisibility(visibility);
+            uiHandler.removeCallbacks(metricsRefresh);
+            if (isChecked) {
+                lastMetricsRefreshMs = 0;
+                refreshMetricsPanel();
+            }
+        });
+        btnExportMetrics.setOnClickListener(v -> exportMetrics());
+        hapticScheduler.setMetrics(metrics);
+
         // Initialize Vibrator service
         vibrator = (Vibrator) getSystemService(Context.VIBRATOR_SERVICE);
 
+        connectivityManager = (ConnectivityManager) getSystemService(Context.CONNECTIVITY_SERVICE);
+
         displayIpAddress();
 
         // Set default port numbers in UI
         etTargetIp.setText("");
         etTargetPort.setText(String.valueOf(DEFAULT_RECEIVER_PORT));
         etListenPort.setText(String.valueOf(VIBRATION_PORT));
+        etOutputRate.setText(String.valueOf(DEFAULT_OUTPUT_RATE_HZ));
+        etBatchSize.setText("1");
+        etBatchHoldMs.setText(String.valueOf(DEFAULT_BATCH_HOLD_MS));
+        etBatchGyroRate.setText("0");
+        etHapticWindowMs.setText(String.valueOf(DEFAULT_HAPTIC_WINDOW_MS));
+        etHapticMaxRate.setText(String.valueOf(DEFAULT_HAPTIC_MAX_RATE_HZ));
 
         // Setup listeners for buttons
         btnStartStop.setOnClickListener(v -> {
@@ -188,51 +376,55 @@ public class MainActivity extends AppCompatActivity implements SensorEventListen
      * Format: "NITHphoneWrapper-1.0|device_ip=X.X.X.X&device_port=21103"
      */
     private void sendDiscoveryBroadcast() {
-        tvNetworkStatus.setText("Sending discovery broadcast...");
-        new Thread(() -> {
-            DatagramSocket tempSocket = null;
-            try {
-                String myIp = getIpAddress();
-                String broadcastAddress = getSubnetBroadcastAddress();
-                String deviceIdentifier = "NITHphoneWrapper-1.0";
-
-                int listenPort;
-                try {
-                    listenPort = Integer.parseInt(etListenPort.getText().toString());
-                } catch (NumberFormatException e) {
-                    listenPort = VIBRATION_PORT;
-                    final int finalPort = listenPort;
-                    runOnUiThread(() -> etListenPort.setText(String.valueOf(finalPort)));
-                }
-
-                // Format: devicename-version|device_ip=ip&device_port=port
-                String message = String.format(Locale.US,
-                        "%s|device_ip=%s&device_port=%d",
-                        deviceIdentifier, myIp, listenPort);
+        broadcastDiscovery(true);
+    }
 
-                Log.d(TAG, "Discovery broadcast: " + message + " to " + broadcastAddress + ":" + DISCOVERY_PORT);
+    /** Sends the discovery broadcast; showStatus false for the periodic refresh while streaming. */
+    private void broadcastDiscovery(boolean showStatus) {
+        DatagramChannel channel = discoveryChannel;
+        if (channel == null) {
+            if (showStatus) {
+                tvNetworkStatus.setText("Discovery broadcast failed: not listening on port " + DISCOVERY_PORT);
+            }
+            return;
+        }
+        if (showStatus) {
+            tvNetworkStatus.setText("Sending discovery broadcast...");
+        }
+        String myIp = getIpAddress();
+        String broadcastAddress = getSubnetBroadcastAddress();
+        String deviceIdentifier = "NITHphoneWrapper-1.0";
 
-                byte[] data = message.getBytes();
-                tempSocket = new DatagramSocket();
-                tempSocket.setBroadcast(true);
+        int listenPort;
+        try {
+            listenPort = Integer.parseInt(etListenPort.getText().toString());
+        } catch (NumberFormatException e) {
+            listenPort = VIBRATION_PORT;
+            etListenPort.setText(String.valueOf(listenPort));
+        }
 
-                DatagramPacket packet = new DatagramPacket(
-                        data, data.length,
-                        InetAddress.getByName(broadcastAddress),
-                        DISCOVERY_PORT);
+        // Format: devicename-version|device_ip=ip&device_port=port
+        String message = String.format(Locale.US,
+                "%s|device_ip=%s&device_port=%d",
+                deviceIdentifier, myIp, listenPort);
 
-                tempSocket.send(packet);
-                runOnUiThread(() -> tvNetworkStatus.setText("Discovery sent to " + broadcastAddress + ". Listening for reply..."));
+        Log.d(TAG, "Discovery broadcast: " + message + " to " + broadcastAddress + ":" + DISCOVERY_PORT);
 
+        // Sent from the discovery socket on the reactor thread; replies arrive on the same socket
+        ByteBuffer data = ByteBuffer.wrap(message.getBytes(StandardCharsets.UTF_8));
+        udpReactor.execute(() -> {
+            try {
+                channel.send(data, new InetSocketAddress(InetAddress.getByName(broadcastAddress), DISCOVERY_PORT));
+                if (showStatus) {
+                    runOnUiThread(() -> tvNetworkStatus.setText("Discovery sent to " + broadcastAddress + ". Listening for reply..."));
+                }
             } catch (Exception e) {
-                runOnUiThread(() -> tvNetworkStatus.setText("Discovery broadcast failed: " + e.getMessage()));
-                Log.e(TAG, "Discovery broadcast error", e);
-            } finally {
-                if (tempSocket != null && !tempSocket.isClosed()) {
-                    tempSocket.close();
+                if (showStatus) {
+                    runOnUiThread(() -> tvNetworkStatus.setText("Discovery broadcast failed: " + e.getMessage()));
                 }
+                Log.e(TAG, "Discovery broadcast error", e);
             }
-        }).start();
+        });
     }
 
     /**
@@ -281,7 +473,12 @@ public class MainActivity extends AppCompatActivity implements SensorEventListen
     private void openButtonController() {
         String targetIp = etTargetIp.getText().toString();
         
-        if (targetIp.isEmpty()) {
+        boolean tcp = switchTcp.isChecked();
+        boolean multicast = switchMulticast.isChecked() && !tcp;
+        if (tcp && targetIp.isEmpty()) {
+            targetIp = TCP_DEFAULT_HOST;
+        }
+        if (targetIp.isEmpty() && !multicast) {
             Toast.makeText(this, "Please set Target IP first (use 'Find Receivers' or enter manually)", Toast.LENGTH_LONG).show();
             return;
         }
@@ -299,14 +496,87 @@ public class MainActivity extends AppCompatActivity implements SensorEventListen
         intent.putExtra("INVERT_PITCH", invertPitch);
         intent.putExtra("INVERT_YAW", invertYaw);
         intent.putExtra("VIBRATE_ON_PRESS", vibrateOnPress);
-        intent.putExtra("DEVICE_INFO", Build.MANUFACTURER + "_" + Build.MODEL);
-        intent.putExtra("PHONE_IP", getIpAddress());
+        intent.putExtra("FRAME_METADATA", frameMetadata);
+        intent.putExtra("YAW_FUSION", switchYawFusion.isChecked() && switchYawFusion.isEnabled());
+        intent.putExtra("QUATERNION", switchQuaternion.isChecked());
+        intent.putExtra("OUTPUT_RATE_HZ", parseOutputRate());
+        intent.putExtra("FRAME_FORMAT", negotiatedFrameFormat.name());
+        intent.putExtra("DEADBAND_DEG", parseNonNegativeFloat(etDeadBandAngle));
+        intent.putExtra("DEADBAND_RAD_S", parseNonNegativeFloat(etDeadBandVelocity));
+        intent.putExtra("PREDICTION_MS", parseNonNegativeFloat(etPredictionMs));
+        intent.putExtra("SMOOTH_ANGLE_HZ", parseNonNegativeFloat(etSmoothAngleCutoff));
+        intent.putExtra("SMOOTH_ANGLE_BETA", parseNonNegativeFloat(etSmoothAngleBeta));
+        intent.putExtra("SMOOTH_VELOCITY_HZ", parseNonNegativeFloat(etSmoothVelocityCutoff));
+        intent.putExtra("SMOOTH_VELOCITY_BETA", parseNonNegativeFloat(etSmoothVelocityBeta));
+        intent.putExtra("DEVICE_INFO", deviceInfo);
+        intent.putExtra("PHONE_IP", phoneIp);
+        intent.putExtra("TCP", tcp);
+        if (multicast) {
+            intent.putExtra("MULTICAST_GROUP", etMulticastGroup.getText().toString().trim());
+            intent.putExtra("MULTICAST_TTL", parseMulticastTtl(etMulticastTtl));
+        }
         startActivity(intent);
     }
 
     private void displayIpAddress() {
-        String ipString = getIpAddress();
-        tvIpAddress.setText("My IP: " + ipString);
+        refreshPhoneIp();
+        tvIpAddress.setText("My IP: " + phoneIp);
+    }
+
+    /**
+     * Re-reads the phone IP (a WifiManager binder call) and republishes the pre-encoded extra fields.
+     * Called on resume and on network changes, never per sample.
+     */
+    private void refreshPhoneIp() {
+        phoneIp = getIpAddress();
+        SampleSender sender = sampleSender;
+        if (sender != null) {
+            sender.setExtra(deviceInfo, phoneIp);
+        }
+    }
+
+    private void registerNetworkCallback() {
+        if (connectivityManager == null || networkCallback != null) {
+            return;
+        }
+        networkCallback = new ConnectivityManager.NetworkCallback() {
+            @Override
+            public void onAvailable(Network network) {
+                onNetworkChanged();
+            }
+
+            @Override
+            public void onLost(Network network) {
+                onNetworkChanged();
+            }
+
+            @Override
+            public void onLinkPropertiesChanged(Network network, LinkProperties linkProperties) {
+                onNetworkChanged();
+            }
+        };
+        try {
+            connectivityManager.registerDefaultNetworkCallback(networkCallback);
+        } catch (Exception e) {
+            Log.e(TAG, "Error registering network callback", e);
+            networkCallback = null;
+        }
+    }
+
+    private void unregisterNetworkCallback() {
+        if (connectivityManager != null && networkCallback != null) {
+            try {
+                connectivityManager.unregisterNetworkCallback(networkCallback);
+            } catch (Exception e) {
+                Log.e(TAG, "Error unregistering network callback", e);
+            }
+        }
+        networkCallback = null;
+    }
+
+    private void onNetworkChanged() {
+        refreshPhoneIp();
+        runOnUiThread(() -> tvIpAddress.setText("My IP: " + phoneIp));
     }
 
     private String getIpAddress() {
@@ -342,438 +612,758 @@ public class MainActivity extends AppCompatActivity implements SensorEventListen
         String targetIp = etTargetIp.getText().toString();
         String targetPort = etTargetPort.getText().toString();
 
-        if (targetIp.isEmpty() || targetPort.isEmpty()) {
+        // TCP takes precedence over multicast: it is a single wired receiver
+        boolean tcp = switchTcp.isChecked();
+        boolean multicast = switchMulticast.isChecked() && !tcp;
+        if (tcp && targetIp.isEmpty()) {
+            targetIp = TCP_DEFAULT_HOST;
+        }
+        if ((targetIp.isEmpty() && !multicast) || targetPort.isEmpty()) {
             Toast.makeText(this, "Target IP and Port cannot be empty. Use 'Discover PC' first.", Toast.LENGTH_LONG).show();
             return;
         }
 
+        boolean checkingGroup = false; // true while the multicast transport validates the group
         try {
-            currentTargetPort = Integer.parseInt(targetPort);
-            targetInetAddress = InetAddress.getByName(targetIp);
-            sendSocket = new DatagramSocket();
+            int port = Integer.parseInt(targetPort);
+            FrameTransport transport;
+            String destination;
+            if (tcp) {
+                // Connects lazily on the sender thread, so no network I/O happens here
+                tcpTransport = new TcpFrameTransport(new InetSocketAddress(InetAddress.getByName(targetIp), port),
+                        TCP_RECONNECT_INTERVAL_MS, SystemClock::elapsedRealtimeNanos);
+                tcpTransport.setMetrics(metrics);
+                transport = tcpTransport;
+                destination = "tcp://" + targetIp + ":" + port;
+            } else if (multicast) {
+                String group = etMulticastGroup.getText().toString().trim();
+                int ttl = parseMulticastTtl(etMulticastTtl);
+                InetSocketAddress groupAddress = new InetSocketAddress(InetAddress.getByName(group), port);
+                checkingGroup = true;
+                multicastTransport = new UdpChannelTransport(groupAddress, ttl, null);
+                checkingGroup = false;
+                acquireMulticastLock();
+                transport = multicastTransport;
+                destination = "group " + group + ":" + port + " (TTL " + ttl + ")";
+            } else {
+                udpTransport = new UdpFanOutTransport(RECEIVER_ERROR_TIMEOUT_MS, SystemClock::elapsedRealtimeNanos,
+                        this::onReceiverRemoved);
+                InetSocketAddress target = new InetSocketAddress(InetAddress.getByName(targetIp), port);
+                configuredTarget = target;
+                udpTransport.addPinned(target);
+                for (InetSocketAddress receiver : discoveredReceivers.keySet()) {
+                    udpTransport.add(receiver);
+                }
+                udpTransport.setMetrics(metrics);
+                transport = udpTransport;
+                int others = discoveredReceivers.size() - (discoveredReceivers.containsKey(target) ? 1 : 0);
+                destination = targetIp + (others > 0 ? " and " + others + " more" : "");
+            }
+
+            int outputRate = parseOutputRate();
+            int batchSize = parsePositiveInt(etBatchSize, 1);
+            int batchHoldMs = parsePositiveInt(etBatchHoldMs, DEFAULT_BATCH_HOLD_MS);
+            boolean batching = batchSize > 1;
+
+            SampleRingBuffer ring = batching
+                    ? new SampleRingBuffer(BATCH_QUEUE_CAPACITY, SampleRingBuffer.OverflowPolicy.DROP_OLDEST)
+                    : new SampleRingBuffer(SEND_QUEUE_CAPACITY, SEND_OVERFLOW_POLICY);
+            sampleSender = new SampleSender(ring, transport, sendListener);
+            sampleSender.setExtra(deviceInfo, phoneIp);
+            sampleSender.setFrameFormat(negotiatedFrameFormat);
+            sampleSender.setTimeSource(SystemClock::elapsedRealtimeNanos);
+            sampleSender.setFrameMetadata(frameMetadata);
+            sampleSender.setMetrics(metrics);
+            sampleSender.setDeadBand(DeadBandFilter.createOrNull(
+                    parseNonNegativeFloat(etDeadBandAngle), parseNonNegativeFloat(etDeadBandVelocity)));
+            if (batching) {
+                sampleSender.setBatching(batchSize, TimeUnit.MILLISECONDS.toNanos(batchHoldMs));
+            }
+            sampleSender.start();
+
+            // The sample producer is either the clock thread or the sensor thread, never both
+            HeadTrackingPipeline.Mode mode = batching ? HeadTrackingPipeline.Mode.GYRO_DRIVEN
+                    : outputRate > 0 ? HeadTrackingPipeline.Mode.CLOCK
+                    : HeadTrackingPipeline.Mode.EVENT_DRIVEN;
+            pipeline = new HeadTrackingPipeline(sampleSender, mode, INTERPOLATION_DELAY_NANOS,
+                    SystemClock::elapsedRealtimeNanos);
+            pipeline.setInvertPitch(invertPitch);
+            pipeline.setInvertYaw(invertYaw);
+            pipeline.setReadout(readoutUpdater);
+            pipeline.setMetrics(metrics);
+            pipeline.setSendQuaternion(switchQuaternion.isChecked());
+            pipeline.setSmoother(SampleSmoother.createOrNull(
+                    parseNonNegativeFloat(etSmoothAngleCutoff), parseNonNegativeFloat(etSmoothAngleBeta),
+                    parseNonNegativeFloat(etSmoothVelocityCutoff), parseNonNegativeFloat(etSmoothVelocityBeta)));
+            pipeline.setPredictor(MotionPredictor.createOrNull(parseNonNegativeFloat(etPredictionMs)));
+            boolean yawFusion = switchYawFusion.isChecked() && switchYawFusion.isEnabled();
+            if (yawFusion) {
+                pipeline.setYawFusion(new MadgwickFilter());
+                sensorSource.setFusionSensors(accelerometerSensor, magneticFieldSensor);
+                if (magneticFieldSensor == null) {
+                    Log.w(TAG, "No magnetometer: yaw position will drift slowly");
+                }
+            } else {
+                sensorSource.setFusionSensors(null, null);
+            }
+            if (mode == HeadTrackingPipeline.Mode.CLOCK) {
+                outputClock = new OutputClock(outputRate, SystemClock::elapsedRealtimeNanos, pipeline);
+                outputClock.start();
+                OutputClock clock = outputClock;
+                metrics.gauge("clock.ticks", clock::getTickCount);
+                metrics.gauge("clock.skipped_ticks", clock::getSkippedTickCount);
+            }
 
-            registerSensors();
+            applyHapticLimits();
+            readoutUpdater.start();
+            if (batching) {
+                // Gyroscope rate from its own field (0 = fastest); the hold time doubles as the
+                // sensors' maxReportLatencyUs
+                sensorSource.setBatching(parseNonNegativeInt(etBatchGyroRate),
+                        (int) TimeUnit.MILLISECONDS.toMicros(batchHoldMs));
+            } else {
+                sensorSource.clearBatching();
+            }
+            if (switchRecordTrace.isChecked()) {
+                startTraceRecording();
+            }
+            sensorSource.start(pipeline);
+            if (udpTransport != null) {
+                startReceiverRefresh();
+            }
             isTracking = true;
             btnStartStop.setText("Stop Tracking");
-            tvStatus.setText("Status: Tracking... Sending data to " + targetIp);
+            streamDestination = destination;
+            tvStatus.setText("Status: Tracking... Sending data to " + destination);
         } catch (NumberFormatException e) {
             Toast.makeText(this, "Invalid port format", Toast.LENGTH_LONG).show();
+            // Undo whatever was started before the failure: sender, clock, transport
+            stopTracking();
         } catch (UnknownHostException e) {
             Toast.makeText(this, "Invalid IP address", Toast.LENGTH_LONG).show();
+            stopTracking();
+        } catch (IllegalArgumentException e) {
+            String what = checkingGroup ? "Invalid multicast group: " : "Invalid setting: ";
+            Toast.makeText(this, what + e.getMessage(), Toast.LENGTH_LONG).show();
+            stopTracking();
         } catch (Exception e) {
             Toast.makeText(this, "Error: " + e.getMessage(), Toast.LENGTH_LONG).show();
             Log.e(TAG, "Error starting tracking", e);
+            stopTracking();
         }
     }
 
-    private void stopTracking() {
-        isTracking = false;
-        unregisterSensors();
+    /**
+     * Applies the vibration limit fields to the scheduler. Invalid values (a negative window, a
+     * rate that is not positive, or not a number) are reported and the previous limits stay.
+     */
+    private void applyHapticLimits() {
+        String window = etHapticWindowMs.getText().toString().trim();
+        String rate = etHapticMaxRate.getText().toString().trim();
+        try {
+            hapticScheduler.setLimits(Integer.parseInt(window), Integer.parseInt(rate));
+        } catch (NumberFormatException e) {
+            Toast.makeText(this, "Invalid vibration limits: " + window + " ms, " + rate + " Hz",
+                    Toast.LENGTH_LONG).show();
+        } catch (IllegalArgumentException e) {
+            Toast.makeText(this, "Invalid vibration limits: " + e.getMessage(), Toast.LENGTH_LONG).show();
+        }
+    }
+
+    /** Multicast TTL from the UI, clamped to 0-255; invalid input means the default (local network only). */
+    private static int parseMulticastTtl(EditText field) {
+        try {
+            int ttl = Integer.parseInt(field.getText().toString().trim());
+            return Math.max(0, Math.min(UdpChannelTransport.MAX_MULTICAST_TTL, ttl));
+        } catch (NumberFormatException e) {
+            return DEFAULT_MULTICAST_TTL;
+        }
+    }
 
-        if (sendSocket != null && !sendSocket.isClosed()) {
-            sendSocket.close();
-            sendSocket = null;
+    private void acquireMulticastLock() {
+        if (multicastLock == null) {
+            WifiManager wifiManager = (WifiManager) getApplicationContext().getSystemService(Context.WIFI_SERVICE);
+            if (wifiManager == null) return;
+            multicastLock = wifiManager.createMulticastLock(TAG);
+            multicastLock.setReferenceCounted(false);
         }
+        multicastLock.acquire();
+    }
 
-        btnStartStop.setText("Start Tracking");
-        tvStatus.setText("Status: Idle. Tap Start.");
-        tvSensorData.setText("Pitch: --\nRoll: --");
-        tvAngularRate.setText("ω_y: -- rad/s\nω_p: -- rad/s\nω_r: -- rad/s");
+    private void releaseMulticastLock() {
+        if (multicastLock != null && multicastLock.isHeld()) {
+            multicastLock.release();
+        }
     }
 
-    private void registerSensors() {
-        if (rotationVectorSensor != null) {
-            sensorManager.registerListener(this, rotationVectorSensor, SensorManager.SENSOR_DELAY_GAME);
+    /** Closes the stream's transport (unicast, multicast or TCP) and releases the multicast lock. */
+    private void closeTransports() {
+        if (tcpTransport != null) {
+            tcpTransport.close();
+            tcpTransport = null;
+        }
+        if (udpTransport != null) {
+            udpTransport.close();
+            udpTransport = null;
         }
-        if (gyroscopeSensor != null) {
-            sensorManager.registerListener(this, gyroscopeSensor, SensorManager.SENSOR_DELAY_GAME);
+        if (multicastTransport != null) {
+            multicastTransport.close();
+            multicastTransport = null;
         }
+        releaseMulticastLock();
     }
 
-    private void unregisterSensors() {
-        sensorManager.unregisterListener(this);
+    /** Output rate from the UI; 0 (or invalid input) means one packet per rotation-vector event. */
+    private int parseOutputRate() {
+        try {
+            return Math.max(0, Integer.parseInt(etOutputRate.getText().toString()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
     }
 
-    @Override
-    public void onSensorChanged(SensorEvent event) {
-        if (!isTracking || event == null) return;
-
-        if (event.sensor.getType() == Sensor.TYPE_GYROSCOPE) {
-            // Gyroscope gives angular velocity in rad/s
-            angularVelYaw = event.values[2];   // Z axis (yaw rotation rate)
-            angularVelPitch = event.values[0]; // X axis (pitch rotation rate)
-            angularVelRoll = event.values[1];  // Y axis (roll rotation rate)
-            
-        } else if (event.sensor.getType() == Sensor.TYPE_ROTATION_VECTOR) {
-            System.arraycopy(event.values, 0, rotationVectorReading, 0, event.values.length);
-
-            float[] rotationMatrix = new float[9];
-            SensorManager.getRotationMatrixFromVector(rotationMatrix, rotationVectorReading);
-            
-            // Get orientation from rotation vector
-            SensorManager.getOrientation(rotationMatrix, orientationAngles);
-            
-            // Extract pitch and roll (ignoring yaw to avoid drift)
-            currentPitch = (float) Math.toDegrees(orientationAngles[1]);
-            currentRoll = (float) Math.toDegrees(orientationAngles[2]);
-            
-            // Apply pitch and yaw inversion if enabled
-            float outputPitch = invertPitch ? -currentPitch : currentPitch;
-            float outputYaw = invertYaw ? -angularVelYaw : angularVelYaw;
-            
-            // Convert gyro rad/s to degrees/s for display
-            float gyroYawDeg = (float) Math.toDegrees(angularVelYaw);
-            float gyroPitchDeg = (float) Math.toDegrees(angularVelPitch);
-            float gyroRollDeg = (float) Math.toDegrees(angularVelRoll);
-
-            // Update UI - split orientation and angular rate into separate TextViews
-            String orientationText = String.format(Locale.US,
-                    "Pitch: %.1f°\nRoll: %.1f°",
-                    outputPitch, currentRoll);
-            
-            String angularRateText = String.format(Locale.US,
-                    "ω_y: %.2f rad/s\nω_p: %.2f rad/s\nω_r: %.2f rad/s",
-                    outputYaw, angularVelPitch, angularVelRoll);
-            
-            runOnUiThread(() -> {
-                tvSensorData.setText(orientationText);
-                tvAngularRate.setText(angularRateText);
-            });
+    private static int parsePositiveInt(EditText field, int fallback) {
+        try {
+            int value = Integer.parseInt(field.getText().toString());
+            return value > 0 ? value : fallback;
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
 
-            // Send via UDP
-            if (sendSocket != null && targetInetAddress != null && !sendSocket.isClosed()) {
-                String devInfo = Build.MANUFACTURER + "_" + Build.MODEL;
-                String myIp = getIpAddress();
-                String payload = String.format(Locale.US,
-                        "$NITHphoneWrapper-v0.2.0|OPR|head_pos_pitch=%.2f&head_pos_roll=%.2f&head_vel_yaw=%.4f&head_vel_pitch=%.4f&head_vel_roll=%.4f^dev=%s&phone_ip=%s",
-                        outputPitch, currentRoll, outputYaw, angularVelPitch, angularVelRoll, devInfo, myIp);
-
-                new Thread(() -> {
-                    try {
-                        byte[] buffer = payload.getBytes();
-                        DatagramPacket packet = new DatagramPacket(
-                                buffer, buffer.length,
-                                targetInetAddress, currentTargetPort);
-                        sendSocket.send(packet);
-                    } catch (IOException e) {
-                        Log.e(TAG, "UDP send error", e);
-                    }
-                }).start();
-            }
+    private static int parseNonNegativeInt(EditText field) {
+        try {
+            return Math.max(0, Integer.parseInt(field.getText().toString()));
+        } catch (NumberFormatException e) {
+            return 0;
         }
     }
 
-    @Override
-    public void onAccuracyChanged(Sensor sensor, int accuracy) {
-        // Not used in this implementation
+    private static float parseNonNegativeFloat(EditText field) {
+        try {
+            return Math.max(0f, Float.parseFloat(field.getText().toString()));
+        } catch (NumberFormatException e) {
+            return 0f;
+        }
+    }
+
+    private void stopTracking() {
+        isTracking = false;
+        configuredTarget = null;
+        uiHandler.removeCallbacks(receiverRefresh);
+        sensorSource.stop();
+        stopTraceRecording();
+        readoutUpdater.stop();
+
+        if (outputClock != null) {
+            outputClock.stop();
+            Log.d(TAG, "Output clock: ticks=" + outputClock.getTickCount()
+                    + ", skipped=" + outputClock.getSkippedTickCount());
+            outputClock = null;
+        }
+
+        if (sampleSender != null) {
+            sampleSender.stop();
+            Log.d(TAG, "Sender stats: enqueued=" + sampleSender.getEnqueuedCount()
+                    + ", sent=" + sampleSender.getSentCount()
+                    + ", datagrams=" + sampleSender.getDatagramCount()
+                    + ", dropped=" + sampleSender.getDroppedCount());
+            DeadBandFilter deadBand = sampleSender.getDeadBand();
+            if (deadBand != null) {
+                Log.d(TAG, String.format(Locale.US, "Dead-band: passed=%d, suppressed=%d (%.1f%%), heartbeats=%d",
+                        deadBand.getPassedCount(), deadBand.getSuppressedCount(),
+                        deadBand.getSuppressionRatio() * 100, deadBand.getHeartbeatCount()));
+            }
+            sampleSender = null;
+        }
+        pipeline = null;
+
+        closeTransports();
+
+        btnStartStop.setText("Start Tracking");
+        tvStatus.setText("Status: Idle. Tap Start.");
+        tvSensorData.setText("Pitch: --\nRoll: --");
+        tvAngularRate.setText("ω_y: -- rad/s\nω_p: -- rad/s\nω_r: -- rad/s");
     }
 
     /**
-     * Parses and processes vibration commands from receiver.
-     * Format: $issuer_name-version|COM|vibration_intensity=VALUE&vibration_duration=VALUE^
-     * Example: $HeadBower-1.0|COM|vibration_intensity=200&vibration_duration=100^
+     * Records raw sensor events of this session to the app's external files directory.
+     * Sizing and mapping the file (about 20 MB) runs on the file executor; the recorder is handed
+     * to the sensor source once it is open, so the first events of the session may be missing.
      */
-    private void processVibrationCommand(final String command) {
-        Log.d(TAG, "Received vibration command: '" + command + "'");
-        runOnUiThread(() -> {
-            tvLastCommand.setText("Last command: " + command);
+    private void startTraceRecording() {
+        File dir = getExternalFilesDir(null);
+        if (dir == null) dir = getFilesDir();
+        File file = new File(dir, "nith-trace-" + System.currentTimeMillis() + ".bin");
+        int session = ++traceSession;
+        fileExecutor.execute(() -> {
+            SensorTraceRecorder recorder;
             try {
-                // Validate format: must start with '$' and end with '^'
-                if (!command.startsWith("$") || !command.endsWith("^")) {
-                    Log.w(TAG, "Invalid vibration command format: missing $ or ^");
-                    return;
-                }
-
-                // Remove leading '$' and trailing '^'
-                String trimmed = command.substring(1, command.length() - 1);
-
-                // Split into header and payload
-                String[] mainParts = trimmed.split("\\|");
-                if (mainParts.length < 3) {
-                    Log.w(TAG, "Invalid vibration command: missing parts");
+                recorder = new SensorTraceRecorder(file, SensorTraceRecorder.DEFAULT_MAX_EVENTS);
+            } catch (IOException e) {
+                // Tracking works without the recording
+                Log.e(TAG, "Error creating sensor trace", e);
+                uiHandler.post(() -> Toast.makeText(this, "Trace recording failed: " + e.getMessage(),
+                        Toast.LENGTH_LONG).show());
+                return;
+            }
+            uiHandler.post(() -> {
+                if (session != traceSession) {
+                    // Tracking stopped while the file was being created: nothing was recorded
+                    fileExecutor.execute(() -> {
+                        closeTrace(recorder);
+                        file.delete();
+                    });
                     return;
                 }
+                traceRecorder = recorder;
+                sensorSource.setRecorder(recorder);
+                Log.d(TAG, "Recording sensor trace to " + file.getAbsolutePath());
+            });
+        });
+    }
 
-                // Parse header: issuer_name-version
-                String issuerInfo = mainParts[0];
-                String commandType = mainParts[1];
+    /**
+     * Must run after the sensor source stopped, so the sensor thread no longer writes.
+     * The mapping is flushed and the file closed on the file executor.
+     */
+    private void stopTraceRecording() {
+        traceSession++;
+        sensorSource.setRecorder(null);
+        SensorTraceRecorder recorder = traceRecorder;
+        if (recorder == null) return;
+        traceRecorder = null;
+        fileExecutor.execute(() -> {
+            if (!closeTrace(recorder)) return;
+            Log.d(TAG, "Sensor trace: events=" + recorder.getEventCount() + ", dropped=" + recorder.getDroppedCount());
+            uiHandler.post(() -> Toast.makeText(this, recorder.getEventCount() + " sensor events saved to "
+                    + recorder.getFile().getAbsolutePath(), Toast.LENGTH_LONG).show());
+        });
+    }
 
-                // Verify command type is COM
-                if (!"COM".equalsIgnoreCase(commandType)) {
-                    Log.w(TAG, "Ignored non-COM command: " + commandType);
-                    return;
-                }
+    /** On the file executor; false if closing failed. */
+    private static boolean closeTrace(SensorTraceRecorder recorder) {
+        try {
+            recorder.close();
+            return true;
+        } catch (IOException e) {
+            Log.e(TAG, "Error closing sensor trace", e);
+            return false;
+        }
+    }
 
-                // Parse parameters: vibration_intensity=VALUE&vibration_duration=VALUE
-                String paramsString = mainParts[2];
-                int vibrationIntensity = defaultVibrationAmplitude;
-                long vibrationDuration = 100;
-
-                for (String param : paramsString.split("&")) {
-                    String[] keyValue = param.split("=", 2);
-                    if (keyValue.length == 2) {
-                        String key = keyValue[0].trim();
-                        String value = keyValue[1].trim();
-
-                        if ("vibration_intensity".equalsIgnoreCase(key)) {
-                            vibrationIntensity = Integer.parseInt(value);
-                        } else if ("vibration_duration".equalsIgnoreCase(key)) {
-                            vibrationDuration = Long.parseLong(value);
-                        }
-                    }
-                }
+    /**
+     * Debug panel: event and send rates since the last refresh, plus latency percentiles.
+     * Runs on the UI thread once per second while the panel is shown.
+     */
+    private void refreshMetricsPanel() {
+        long nowMs = SystemClock.elapsedRealtime();
+        long rv = rotationVectorEvents.get();
+        long gyro = gyroscopeEvents.get();
+        long datagrams = metrics.value(SampleSender.METRIC_DATAGRAMS);
+        double seconds = lastMetricsRefreshMs > 0 ? (nowMs - lastMetricsRefreshMs) / 1000.0 : 0;
+
+        StringBuilder sb = new StringBuilder();
+        if (seconds > 0) {
+            sb.append(String.format(Locale.US, "Events/s: rv=%.0f gyro=%.0f  Datagrams/s: %.0f\n",
+                    (rv - lastRotationVectorEvents) / seconds, (gyro - lastGyroscopeEvents) / seconds,
+                    (datagrams - lastDatagrams) / seconds));
+        }
+        sb.append(String.format(Locale.US, "Sent: %d  Errors: %d  Dropped: %d  Stale: %d\n",
+                metrics.value(SampleSender.METRIC_SENT), metrics.value(SampleSender.METRIC_SEND_ERRORS),
+                metrics.value(SampleSender.METRIC_DROPPED), metrics.value(SampleSender.METRIC_STALE)));
+        UdpFanOutTransport transport = udpTransport;
+        if (transport != null) {
+            for (UdpFanOutTransport.Receiver receiver : transport.getReceivers()) {
+                sb.append(String.format(Locale.US, "-> %s:%d  sent %d  errors %d\n",
+                        receiver.address.getAddress().getHostAddress(), receiver.address.getPort(),
+                        receiver.getSentCount(), receiver.getErrorCount()));
+            }
+        }
+        sb.append(String.format(Locale.US, "Vibration commands: %d  Malformed: %d  Played: %d  Coalesced: %d\n",
+                vibrationCommands.get(), malformedVibrationCommands.get(),
+                hapticScheduler.getPlayedCount(), hapticScheduler.getCoalescedCount()));
+        sb.append("Latency (ms)      p50     p99     max\n");
+        appendLatency(sb, "sensor->send", metrics.histogram(SampleSender.METRIC_SENSOR_TO_SEND));
+        appendLatency(sb, "send() call", metrics.histogram(SampleSender.METRIC_SEND_CALL));
+        appendLatency(sb, "delivery", sensorDeliveryLatency);
+        long interpolationDelay = metrics.value(HeadTrackingPipeline.METRIC_INTERPOLATION_DELAY);
+        if (interpolationDelay > 0) {
+            sb.append(String.format(Locale.US, "%-14s %7.2f (part of sensor->send)\n", "interp. delay",
+                    interpolationDelay / 1e6));
+        }
+        TcpFrameTransport tcp = tcpTransport;
+        if (tcp != null) {
+            appendLatency(sb, "tcp write", metrics.histogram(TcpFrameTransport.METRIC_WRITE));
+            sb.append(String.format(Locale.US, "TCP %s  connects: %d  skipped: %d  dropped: %d\n",
+                    tcp.isConnected() ? "connected" : "disconnected",
+                    tcp.getConnectCount(), tcp.getSkippedCount(), tcp.getDroppedCount()));
+        }
+        tvMetrics.setText(sb);
 
-                // Validate values
-                if (vibrationIntensity < 1 || vibrationIntensity > 255) {
-                    Log.w(TAG, "Invalid vibration intensity: " + vibrationIntensity + ", using default");
-                    vibrationIntensity = defaultVibrationAmplitude;
-                }
-                if (vibrationDuration < 1 || vibrationDuration > 10000) {
-                    Log.w(TAG, "Invalid vibration duration: " + vibrationDuration + "ms");
-                    return;
-                }
+        lastMetricsRefreshMs = nowMs;
+        lastRotationVectorEvents = rv;
+        lastGyroscopeEvents = gyro;
+        lastDatagrams = datagrams;
+        uiHandler.postDelayed(metricsRefresh, METRICS_REFRESH_MS);
+    }
 
-                Log.d(TAG, "Vibration command from '" + issuerInfo + "': intensity=" + vibrationIntensity + ", duration=" + vibrationDuration + "ms");
+    private static void appendLatency(StringBuilder sb, String label, LatencyHistogram h) {
+        sb.append(String.format(Locale.US, "%-14s %7.2f %7.2f %7.2f\n", label,
+                h.getPercentileNanos(0.5) / 1e6, h.getPercentileNanos(0.99) / 1e6, h.getMaxNanos() / 1e6));
+    }
 
-                // Execute vibration
-                if (vibrator != null && vibrator.hasVibrator()) {
-                    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
-                        vibrator.vibrate(VibrationEffect.createOneShot(vibrationDuration, vibrationIntensity));
-                    } else {
-                        vibrator.vibrate(vibrationDuration);
-                    }
-                }
-            } catch (NumberFormatException e) {
-                Log.e(TAG, "Error parsing vibration command values: \"" + command + "\"", e);
-            } catch (Exception e) {
-                Log.e(TAG, "Error processing vibration command: \"" + command + "\"", e);
+    /** Writes the full metrics report to the app's external files directory. */
+    private void exportMetrics() {
+        File dir = getExternalFilesDir(null);
+        if (dir == null) dir = getFilesDir();
+        File file = new File(dir, "nith-metrics-" + System.currentTimeMillis() + ".txt");
+        // Snapshot on the UI thread, write on the file executor
+        String report = "# " + deviceInfo + ", uptime " + SystemClock.elapsedRealtime() + " ms\n"
+                + "# " + SampleSender.METRIC_SENSOR_TO_SEND + " includes "
+                + HeadTrackingPipeline.METRIC_INTERPOLATION_DELAY + " (fixed output rate only)\n"
+                + metrics.report();
+        fileExecutor.execute(() -> {
+            try (Writer out = new FileWriter(file)) {
+                out.write(report);
+                uiHandler.post(() -> Toast.makeText(this, "Metrics saved to " + file.getAbsolutePath(),
+                        Toast.LENGTH_LONG).show());
+            } catch (IOException e) {
+                Log.e(TAG, "Error exporting metrics", e);
+                uiHandler.post(() -> Toast.makeText(this, "Export failed: " + e.getMessage(),
+                        Toast.LENGTH_LONG).show());
             }
         });
     }
 
     /**
-     * Listener for discovery responses on port 20500.
-     * Receives: "NITHreceiver|receiver_ip=X.X.X.X&expected_port=20103"
+     * Plays a one-shot command released by the {@link HapticScheduler}, on the UI thread.
+     * Runs once per played (possibly merged) command; effects come from the LRU cache.
      */
-    private class DiscoveryListener extends Thread {
-        private volatile boolean running = true;
-        private DatagramSocket socket;
-
-        @Override
-        public void run() {
-            try {
-                socket = new DatagramSocket(DISCOVERY_PORT);
-                Log.d(TAG, "Discovery Listener: started on port " + DISCOVERY_PORT);
-                runOnUiThread(() -> tvNetworkStatus.setText("Network: Listening for discovery on port " + DISCOVERY_PORT));
-
-                byte[] buffer = new byte[256];
-                while (running) {
-                    try {
-                        DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
-                        socket.receive(packet);
-
-                        String message = new String(packet.getData(), 0, packet.getLength());
-                        String sender = packet.getAddress().getHostAddress();
-                        Log.d(TAG, "Discovery: received from " + sender + ": " + message);
-
-                        // Only process discovery responses
-                        if (message.startsWith("NITHreceiver|")) {
-                            handleDiscoveryResponse(message, sender);
-                        }
-                    } catch (IOException e) {
-                        if (running) {
-                            Log.e(TAG, "Discovery receive error", e);
-                        }
-                    }
-                }
-            } catch (Exception e) {
-                Log.e(TAG, "Discovery socket error", e);
-                runOnUiThread(() -> tvNetworkStatus.setText("Discovery socket error: " + e.getMessage()));
-            } finally {
-                if (socket != null) socket.close();
-                Log.d(TAG, "Discovery Listener thread finished.");
+    private void vibrate(long durationMs, int intensity) {
+        if (vibrator != null && vibrator.hasVibrator()) {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+                vibrator.vibrate(effectCache.get(durationMs, intensity));
+            } else {
+                vibrator.vibrate(durationMs);
             }
         }
+        lastCommandText.setLength(0);
+        lastCommandText.append("Last command: intensity=").append(intensity)
+                .append(", duration=").append(durationMs).append("ms");
+        tvLastCommand.setText(lastCommandText);
+    }
 
-        void stopListening() {
-            running = false;
-            if (socket != null) socket.close();
+    /** Plays a waveform command released by the {@link HapticScheduler}, on the UI thread. */
+    private void vibrateWaveform(long[] timingsMs, int[] amplitudes, int length) {
+        long totalMs = 0;
+        for (int i = 0; i < length; i++) totalMs += timingsMs[i];
+        if (vibrator != null && vibrator.hasVibrator()) {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+                vibrator.vibrate(VibrationEffect.createWaveform(
+                        Arrays.copyOf(timingsMs, length), Arrays.copyOf(amplitudes, length), -1));
+            } else {
+                vibrator.vibrate(toOnOffPattern(timingsMs, amplitudes, length), -1);
+            }
         }
+        lastCommandText.setLength(0);
+        lastCommandText.append("Last command: waveform, ").append(length)
+                .append(" steps, ").append(totalMs).append("ms");
+        tvLastCommand.setText(lastCommandText);
     }
 
     /**
-     * Listener for vibration commands on port 21103.
-     * Receives: "VIB:300:255" etc.
+     * Pre-O vibrators cannot set amplitudes: off/on pattern (starting with off) where steps with
+     * amplitude 0 are pauses and all others vibrate at full strength.
      */
-    private class VibrationCommandListener extends Thread {
-        private volatile boolean running = true;
-        private DatagramSocket socket;
-        private final int port;
-
-        VibrationCommandListener(int port) {
-            this.port = port;
+    private static long[] toOnOffPattern(long[] timingsMs, int[] amplitudes, int length) {
+        long[] pattern = new long[length + 1];
+        int count = 1; // pattern[0]: initial pause
+        boolean on = false;
+        for (int i = 0; i < length; i++) {
+            boolean stepOn = amplitudes[i] > 0;
+            if (stepOn != on) {
+                count++;
+                on = stepOn;
+            }
+            pattern[count - 1] += timingsMs[i];
         }
+        return Arrays.copyOf(pattern, count);
+    }
 
-        @Override
-        public void run() {
-            try {
-                socket = new DatagramSocket(port);
-                Log.d(TAG, "Vibration Listener: started on port " + port);
-                runOnUiThread(() -> tvNetworkStatus.setText("Network: Listening on port " + port));
-
-                byte[] buffer = new byte[1024];
-                while (running) {
-                    try {
-                        DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
-                        socket.receive(packet);
-
-                        String message = new String(packet.getData(), 0, packet.getLength());
-                        String sender = packet.getAddress().getHostAddress();
-                        Log.d(TAG, "Vibration command from " + sender + ": " + message);
-
-                        // Process vibration commands
-                        processVibrationCommand(message);
-                    } catch (IOException e) {
-                        if (running) {
-                            Log.e(TAG, "Vibration receive error", e);
-                        }
-                    }
-                }
-            } catch (Exception e) {
-                Log.e(TAG, "Vibration socket error", e);
-                runOnUiThread(() -> tvNetworkStatus.setText("Socket error: " + e.getMessage()));
-            } finally {
-                if (socket != null) socket.close();
-                Log.d(TAG, "Vibration Listener thread finished.");
-            }
+    /**
+     * Discovery responses on port 20500, on the reactor thread.
+     * Receives: "NITHreceiver|receiver_ip=X.X.X.X&expected_port=20103"
+     */
+    private void onDiscoveryDatagram(ByteBuffer datagram, InetSocketAddress source) {
+        String message = new String(datagram.array(), datagram.arrayOffset() + datagram.position(),
+                datagram.remaining(), StandardCharsets.UTF_8);
+        String sender = source.getAddress().getHostAddress();
+        Log.d(TAG, "Discovery: received from " + sender + ": " + message);
+
+        // Only process discovery responses (our own broadcast arrives here too)
+        if (message.startsWith(DiscoveryReply.PREFIX)) {
+            handleDiscoveryResponse(message, sender);
         }
+    }
 
-        void stopListening() {
-            running = false;
-            if (socket != null) socket.close();
+    /**
+     * Vibration commands on the listen port (21103), on the reactor thread.
+     * Parses each datagram in place (no String per packet) and hands the command to the
+     * {@link HapticScheduler}: $issuer_name-version|COM|vibration_intensity=VALUE&vibration_duration=VALUE^
+     * (or vibration_waveform=DURATION:AMPLITUDE,...)
+     */
+    private void onVibrationDatagram(ByteBuffer datagram, InetSocketAddress source) {
+        VibrationCommandParser parser = vibrationParser;
+        if (parser.parse(datagram.array(), datagram.arrayOffset() + datagram.position(),
+                datagram.remaining(), defaultVibrationAmplitude)) {
+            vibrationCommands.incrementAndGet();
+            if (parser.isIntensityReplaced()) {
+                Log.w(TAG, "Invalid vibration intensity: " + parser.getRejectedIntensity() + ", using default");
+            }
+            if (parser.getWaveformLength() > 0) {
+                hapticScheduler.submitWaveform(parser.getWaveformTimings(),
+                        parser.getWaveformAmplitudes(), parser.getWaveformLength());
+            } else {
+                hapticScheduler.submit(parser.getDurationMs(), parser.getIntensity());
+            }
+        } else {
+            long malformed = malformedVibrationCommands.incrementAndGet();
+            String message = "Invalid vibration command from " + source.getAddress().getHostAddress()
+                    + ": " + parser.getFailure() + " (" + malformed + " so far)";
+            // Unparsable values were logged as errors, format problems as warnings
+            if (VibrationCommandParser.INVALID_NUMBER.equals(parser.getFailure())) {
+                Log.e(TAG, message);
+            } else {
+                Log.w(TAG, message);
+            }
         }
     }
 
     /**
      * Parses discovery response and updates settings.
-     * Format: "NITHreceiver|receiver_ip=192.168.1.50&expected_port=20103"
+     * Format: "NITHreceiver|receiver_ip=192.168.1.50&expected_port=20103[&binary_format=float|int16]"
      */
     private void handleDiscoveryResponse(String message, String senderIp) {
         try {
-            if (!message.startsWith("NITHreceiver|")) {
-                Log.w(TAG, "Ignored discovery response with unexpected prefix");
-                return;
-            }
-
-            // Extract parameters
-            String paramsString = message.substring("NITHreceiver|".length());
-
-            // Parse key=value pairs
-            Map<String, String> params = new HashMap<>();
-            for (String param : paramsString.split("&")) {
-                String[] parts = param.split("=", 2);
-                if (parts.length == 2) {
-                    params.put(parts[0].trim(), parts[1].trim());
-                }
-            }
-
-            String receiverIp = params.get("receiver_ip");
-            String portStr = params.get("expected_port");
+            DiscoveryReply reply = DiscoveryReply.parse(message);
+            final String finalIp = reply.receiverIp;
+            final int finalPort = reply.port;
 
-            if (receiverIp == null || portStr == null) {
-                Log.w(TAG, "Discovery response missing required fields");
-                return;
-            }
-
-            final String finalIp = receiverIp;
-            final int finalPort = Integer.parseInt(portStr.replaceAll("[^0-9]", ""));
+            // Optional binary frame support; receivers that don't advertise it get text frames
+            final FrameFormat format = reply.frameFormat;
+            final String group = reply.multicastGroup;
+            final int ttl = reply.multicastTtl;
 
             runOnUiThread(() -> {
+                if (markReceiverSeen(finalIp, finalPort, format) && isTracking) {
+                    return; // Reply to the periodic refresh from a receiver already in the set
+                }
                 etTargetIp.setText(finalIp);
                 etTargetPort.setText(String.valueOf(finalPort));
-                tvNetworkStatus.setText("✓ Receiver found: " + finalIp + ":" + finalPort);
+                tvNetworkStatus.setText("✓ Receiver found: " + finalIp + ":" + finalPort
+                        + (format == FrameFormat.TEXT ? "" : " (" + format.name().toLowerCase(Locale.US) + ")")
+                        + (group == null ? "" : ", multicast group " + group));
                 Toast.makeText(MainActivity.this, "Receiver discovered!", Toast.LENGTH_SHORT).show();
+                if (group != null) {
+                    // The receiver listens on a multicast group: switch to it for the next start
+                    etMulticastGroup.setText(group);
+                    if (ttl >= 0) etMulticastTtl.setText(String.valueOf(ttl));
+                    switchMulticast.setChecked(true);
+                }
 
                 try {
-                    targetInetAddress = InetAddress.getByName(finalIp);
-                    currentTargetPort = finalPort;
+                    // Add to the receiver set: a running stream fans out to it at once,
+                    // otherwise startTracking() adds it next to the target in the fields above
+                    InetSocketAddress address = new InetSocketAddress(InetAddress.getByName(finalIp), finalPort);
+                    discoveredReceivers.put(address, format);
+                    updateNegotiatedFrameFormat();
+                    UdpFanOutTransport transport = udpTransport;
+                    if (transport != null) {
+                        transport.add(address);
+                    }
+                    UdpChannelTransport groupTransport = multicastTransport;
+                    if (groupTransport != null && group != null) {
+                        // Already multicasting: follow the advertised group (the TTL applies at the next start)
+                        groupTransport.setTarget(new InetSocketAddress(InetAddress.getByName(group), finalPort));
+                    }
                 } catch (Exception e) {
-                    Log.e(TAG, "Error setting discovered target", e);
+                    Log.e(TAG, "Error adding discovered receiver", e);
                 }
             });
 
-            Log.d(TAG, "Discovery successful: " + finalIp + ":" + finalPort);
+            Log.d(TAG, "Discovery successful: " + finalIp + ":" + finalPort + ", format " + format);
+        } catch (IllegalArgumentException e) {
+            Log.w(TAG, "Ignored discovery response from " + senderIp + ": " + e.getMessage());
         } catch (Exception e) {
             Log.e(TAG, "Error parsing discovery response", e);
         }
     }
 
-    // --- Lifecycle Management ---
-
-    private void startDiscoveryListener() {
-        if (discoveryListener != null && discoveryListener.isAlive()) {
-            Log.d(TAG, "Discovery Listener is already running.");
-            return;
+    /** A receiver kept failing (or could not be reached at all); it is forgotten until it replies again. */
+    private void onReceiverRemoved(InetSocketAddress address, IOException lastError) {
+        Log.w(TAG, "Receiver " + address + " removed: " + lastError.getMessage());
+        receiverLastSeenNanos.remove(address);
+        if (discoveredReceivers.remove(address) != null) {
+            updateNegotiatedFrameFormat();
         }
+    }
+
+    /**
+     * Records the time of a discovery reply, on the UI thread.
+     * @return true if the receiver is already in the set with this format
+     */
+    private boolean markReceiverSeen(String ip, int port, FrameFormat format) {
+        InetSocketAddress address;
         try {
-            discoveryListener = new DiscoveryListener();
-            discoveryListener.start();
-        } catch (Exception e) {
-            Log.e(TAG, "Error starting discovery listener", e);
-            tvNetworkStatus.setText("Error starting discovery listener: " + e.getMessage());
+            address = new InetSocketAddress(InetAddress.getByName(ip), port);
+        } catch (UnknownHostException e) {
+            return false;
         }
+        receiverLastSeenNanos.put(address, SystemClock.elapsedRealtimeNanos());
+        return discoveredReceivers.get(address) == format;
     }
 
-    private void stopDiscoveryListener() {
-        if (discoveryListener != null) {
-            discoveryListener.stopListening();
-            discoveryListener = null;
+    /** Gives every known receiver a full timeout to reply, then refreshes them periodically. */
+    private void startReceiverRefresh() {
+        long now = SystemClock.elapsedRealtimeNanos();
+        for (InetSocketAddress address : discoveredReceivers.keySet()) {
+            receiverLastSeenNanos.put(address, now);
+        }
+        broadcastDiscovery(false);
+        uiHandler.removeCallbacks(receiverRefresh);
+        uiHandler.postDelayed(receiverRefresh, RECEIVER_REFRESH_INTERVAL_MS);
+    }
+
+    /**
+     * While streaming over UDP, on the UI thread: drops the discovered receivers (not the
+     * configured target) that have not replied for the silence timeout (a closed receiver app
+     * often fails no write at all, e.g. when its PC left the network), updates the status and
+     * asks the others to reply again.
+     */
+    private void refreshReceivers() {
+        long now = SystemClock.elapsedRealtimeNanos();
+        long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(RECEIVER_SILENCE_TIMEOUT_MS);
+        boolean removed = false;
+        for (Map.Entry<InetSocketAddress, Long> entry : receiverLastSeenNanos.entrySet()) {
+            if (now - entry.getValue() < timeoutNanos) continue;
+            InetSocketAddress address = entry.getKey();
+            if (address.equals(configuredTarget)) continue; // only discovered receivers expire
+            receiverLastSeenNanos.remove(address);
+            if (discoveredReceivers.remove(address) == null) continue;
+            removed = true;
+            UdpFanOutTransport transport = udpTransport;
+            if (transport != null) {
+                transport.remove(address);
+            }
+            Log.w(TAG, "Receiver " + address + " removed: no discovery reply for "
+                    + RECEIVER_SILENCE_TIMEOUT_MS + " ms");
+        }
+        if (removed) {
+            updateNegotiatedFrameFormat();
+        }
+        UdpFanOutTransport transport = udpTransport;
+        if (transport != null && isTracking) {
+            // Frames to an empty set fail: say so instead of naming a destination nobody gets
+            tvStatus.setText(transport.getReceivers().isEmpty()
+                    ? "Status: Tracking... No receivers, frames are not sent"
+                    : "Status: Tracking... Sending data to " + streamDestination);
         }
+        broadcastDiscovery(false);
+        uiHandler.postDelayed(receiverRefresh, RECEIVER_REFRESH_INTERVAL_MS);
     }
 
-    private void startVibrationListener() {
-        if (vibrationListener != null && vibrationListener.isAlive()) {
-            Log.d(TAG, "Vibration Listener is already running.");
+    /** One encoding for all receivers: binary only if every discovered receiver supports the same one. */
+    private void updateNegotiatedFrameFormat() {
+        FrameFormat common = null;
+        for (FrameFormat format : discoveredReceivers.values()) {
+            common = common == null || common == format ? format : FrameFormat.TEXT;
+        }
+        negotiatedFrameFormat = common != null ? common : FrameFormat.TEXT;
+        SampleSender sender = sampleSender;
+        if (sender != null) {
+            sender.setFrameFormat(negotiatedFrameFormat);
+        }
+    }
+
+    // --- Lifecycle Management ---
+
+    /** Starts the UDP reactor with the discovery and vibration sockets. */
+    private void startUdpReactor() {
+        if (udpReactor.isRunning()) {
+            Log.d(TAG, "UDP reactor is already running.");
             return;
         }
+        applyHapticLimits();
         try {
             currentListenPort = Integer.parseInt(etListenPort.getText().toString());
-            vibrationListener = new VibrationCommandListener(currentListenPort);
-            vibrationListener.start();
         } catch (NumberFormatException e) {
             tvNetworkStatus.setText("Invalid Listen Port");
             Toast.makeText(this, "Invalid listen port. Cannot start listener.", Toast.LENGTH_SHORT).show();
+            currentListenPort = -1;
+        }
+        try {
+            udpReactor.start();
+            DatagramChannel channel = udpReactor.bind(DISCOVERY_PORT, DISCOVERY_BUFFER_SIZE, this::onDiscoveryDatagram);
+            channel.setOption(StandardSocketOptions.SO_BROADCAST, true);
+            discoveryChannel = channel;
+            Log.d(TAG, "Discovery: listening on port " + DISCOVERY_PORT);
+            tvNetworkStatus.setText("Network: Listening for discovery on port " + DISCOVERY_PORT);
+        } catch (Exception e) {
+            Log.e(TAG, "Discovery socket error", e);
+            tvNetworkStatus.setText("Discovery socket error: " + e.getMessage());
+        }
+        if (currentListenPort < 0 || !udpReactor.isRunning()) return;
+        try {
+            udpReactor.bind(currentListenPort, VIBRATION_BUFFER_SIZE, this::onVibrationDatagram);
+            Log.d(TAG, "Vibration: listening on port " + currentListenPort);
+            tvNetworkStatus.setText("Network: Listening on port " + currentListenPort);
+        } catch (Exception e) {
+            Log.e(TAG, "Vibration socket error", e);
+            tvNetworkStatus.setText("Socket error: " + e.getMessage());
         }
     }
 
-    private void stopVibrationListener() {
-        if (vibrationListener != null) {
-            vibrationListener.stopListening();
-            vibrationListener = null;
-        }
+    /** Closes the discovery and vibration sockets and waits for the reactor thread. */
+    private void stopUdpReactor() {
+        discoveryChannel = null;
+        udpReactor.stop();
+        hapticScheduler.clear();
     }
 
     @Override
     protected void onResume() {
         super.onResume();
         displayIpAddress();
-        startDiscoveryListener();    // Listen for discovery responses on port 20500
-        startVibrationListener();    // Listen for vibration commands on port 21103
+        registerNetworkCallback();
+        startUdpReactor();    // Discovery responses on port 20500, vibration commands on port 21103
+        readoutUpdater.resume();
+        if (switchDebugMetrics.isChecked()) {
+            lastMetricsRefreshMs = 0;
+            refreshMetricsPanel();
+        }
     }
 
     @Override
     protected void onPause() {
         super.onPause();
+        readoutUpdater.pause();
         if (isTracking) {
             stopTracking();
         }
-        stopDiscoveryListener();
-        stopVibrationListener();
+        unregisterNetworkCallback();
+        uiHandler.removeCallbacks(metricsRefresh);
+        stopUdpReactor();
     }
 
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        // Cleanup is handled by onPause
+        // Cleanup is handled by onPause; make sure the sensor and socket threads never outlive the activity
+        if (sensorSource != null) {
+            sensorSource.stop();
+        }
+        stopUdpReactor();
+        fileExecutor.shutdown();
     }
 }
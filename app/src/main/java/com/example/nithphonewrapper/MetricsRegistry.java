@@ -0,0 +1,102 @@
+package com.example.nithphonewrapper;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Named pipeline metrics: counters, gauges (read-through views of counters owned elsewhere, e.g.
+ * the sender's) and latency histograms. Look metrics up once when wiring the pipeline; the
+ * returned objects are then updated lock-free and allocation-free on the hot paths.
+ * Registration and reporting are synchronized and may allocate.
+ */
+public class MetricsRegistry {
+
+    private final Map<String, AtomicLong> counters = new LinkedHashMap<>();
+    private final Map<String, LongSupplier> gauges = new LinkedHashMap<>();
+    private final Map<String, LatencyHistogram> histograms = new LinkedHashMap<>();
+
+    /** Returns the counter with this name, creating it on first use. */
+    public synchronized AtomicLong counter(String name) {
+        AtomicLong counter = counters.get(name);
+        if (counter == null) {
+            counter = new AtomicLong();
+            counters.put(name, counter);
+        }
+        return counter;
+    }
+
+    /** Registers (or replaces) a gauge, e.g. a counter of a newly started sender. */
+    public synchronized void gauge(String name, LongSupplier value) {
+        gauges.put(name, value);
+    }
+
+    /** Returns the histogram with this name, creating it on first use. */
+    public synchronized LatencyHistogram histogram(String name) {
+        LatencyHistogram histogram = histograms.get(name);
+        if (histogram == null) {
+            histogram = new LatencyHistogram();
+            histograms.put(name, histogram);
+        }
+        return histogram;
+    }
+
+    /** Current value of a counter or gauge, 0 if unknown. */
+    public synchronized long value(String name) {
+        AtomicLong counter = counters.get(name);
+        if (counter != null) return counter.get();
+        LongSupplier gauge = gauges.get(name);
+        return gauge != null ? gauge.getAsLong() : 0;
+    }
+
+    public synchronized List<String> names() {
+        List<String> names = new ArrayList<>(counters.keySet());
+        names.addAll(gauges.keySet());
+        names.addAll(histograms.keySet());
+        return names;
+    }
+
+    /** Zeroes counters and histograms; gauges belong to their owners and are left alone. */
+    public synchronized void reset() {
+        for (AtomicLong counter : counters.values()) counter.set(0);
+        for (LatencyHistogram histogram : histograms.values()) histogram.reset();
+    }
+
+    /**
+     * Writes one line per metric, "name value" for counters and gauges and
+     * "name count=... mean=... p50=... p99=... max=..." (milliseconds) for histograms.
+     */
+    public synchronized void writeReport(Appendable out) throws IOException {
+        for (Map.Entry<String, AtomicLong> e : counters.entrySet()) {
+            out.append(e.getKey()).append(' ').append(Long.toString(e.getValue().get())).append('\n');
+        }
+        for (Map.Entry<String, LongSupplier> e : gauges.entrySet()) {
+            out.append(e.getKey()).append(' ').append(Long.toString(e.getValue().getAsLong())).append('\n');
+        }
+        for (Map.Entry<String, LatencyHistogram> e : histograms.entrySet()) {
+            LatencyHistogram h = e.getValue();
+            out.append(String.format(Locale.US, "%s count=%d mean=%.3fms p50=%.3fms p99=%.3fms max=%.3fms\n",
+                    e.getKey(), h.getCount(), millis(h.getMeanNanos()), millis(h.getPercentileNanos(0.5)),
+                    millis(h.getPercentileNanos(0.99)), millis(h.getMaxNanos())));
+        }
+    }
+
+    public String report() {
+        StringBuilder sb = new StringBuilder();
+        try {
+            writeReport(sb);
+        } catch (IOException e) {
+            throw new AssertionError(e); // StringBuilder does not throw
+        }
+        return sb.toString();
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+}
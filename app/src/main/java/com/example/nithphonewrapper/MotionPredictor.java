@@ -0,0 +1,114 @@
+package com.example.nithphonewrapper;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Extrapolates head orientation a short time ahead with the gyroscope's angular velocity, to hide
+ * part of the Wi-Fi and receiver latency. Assumes the angular velocity stays constant over the
+ * horizon: the gravity direction seen by the phone is rotated back by the angle the phone turns
+ * in that time, and pitch and roll are read off the result, so tilted heads are handled correctly
+ * (the Euler rates are not simply the gyroscope axes). The yaw position moves by the angular
+ * velocity about the vertical.
+ *
+ * Overshoot is bounded twice: the horizon is clamped to {@link #MAX_HORIZON_NANOS} and the
+ * extrapolated rotation to {@link #MAX_ROTATION_DEG}, so a gyroscope spike cannot throw the
+ * predicted values far off. Allocation-free; not thread-safe (one predictor per producing thread).
+ */
+public final class MotionPredictor {
+
+    /** Longest horizon accepted; beyond this the constant-velocity guess is mostly wrong. */
+    public static final long MAX_HORIZON_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    /** Largest rotation a single prediction may add. */
+    public static final float MAX_ROTATION_DEG = 20f;
+
+    private static final double MAX_ROTATION_RAD = Math.toRadians(MAX_ROTATION_DEG);
+
+    private final long horizonNanos;
+    private final float horizonSeconds;
+
+    // Results of the last predict() call
+    private float pitch;
+    private float roll;
+    private float yawDelta;
+
+    /**
+     * @param horizonNanos how far ahead to predict; clamped to {@link #MAX_HORIZON_NANOS}
+     */
+    public MotionPredictor(long horizonNanos) {
+        if (horizonNanos < 0) {
+            throw new IllegalArgumentException("Prediction horizon must not be negative: " + horizonNanos);
+        }
+        this.horizonNanos = Math.min(horizonNanos, MAX_HORIZON_NANOS);
+        horizonSeconds = this.horizonNanos * 1e-9f;
+    }
+
+    /**
+     * Predictor for a horizon in milliseconds (as typed on the main screen), or null when it is 0
+     * (prediction off).
+     */
+    public static MotionPredictor createOrNull(float horizonMs) {
+        if (!(horizonMs > 0f)) return null;
+        return new MotionPredictor((long) (horizonMs * 1e6)); // saturates, then clamped
+    }
+
+    /** Horizon in use, after clamping. */
+    public long getHorizonNanos() {
+        return horizonNanos;
+    }
+
+    /**
+     * Predicts pitch and roll (degrees, as computed from the rotation vector, not inverted) and
+     * the yaw change over the horizon. Angular velocities are the raw gyroscope axes in rad/s:
+     * x (velPitch), y (velRoll), z (velYaw). Read the results with the getters.
+     */
+    public void predict(float pitchDeg, float rollDeg, float velPitch, float velRoll, float velYaw) {
+        // Up direction in the phone frame: pitch = asin(-gy), roll = atan2(-gx, gz)
+        double p = Math.toRadians(pitchDeg);
+        double r = Math.toRadians(rollDeg);
+        double cosP = Math.cos(p);
+        double gx = -cosP * Math.sin(r);
+        double gy = -Math.sin(p);
+        double gz = cosP * Math.cos(r);
+
+        double rate = Math.sqrt(velPitch * velPitch + velRoll * velRoll + velYaw * velYaw);
+        double angle = Math.min(rate * horizonSeconds, MAX_ROTATION_RAD);
+        if (angle <= 0) {
+            pitch = pitchDeg;
+            roll = rollDeg;
+            yawDelta = 0f;
+            return;
+        }
+
+        // Yaw turns with the angular velocity about the vertical
+        double kx = velPitch / rate, ky = velRoll / rate, kz = velYaw / rate;
+        double verticalRate = kx * gx + ky * gy + kz * gz;
+        yawDelta = (float) Math.toDegrees(angle * verticalRate);
+
+        // Earth-fixed vectors turn the opposite way in the phone frame: Rodrigues by -angle about k
+        double cos = Math.cos(angle);
+        double sin = -Math.sin(angle);
+        double dot = verticalRate * (1 - cos);
+        double ux = gx * cos + (ky * gz - kz * gy) * sin + kx * dot;
+        double uy = gy * cos + (kz * gx - kx * gz) * sin + ky * dot;
+        double uz = gz * cos + (kx * gy - ky * gx) * sin + kz * dot;
+
+        pitch = (float) Math.toDegrees(Math.asin(Math.max(-1, Math.min(1, -uy))));
+        roll = (float) Math.toDegrees(Math.atan2(-ux, uz));
+    }
+
+    /** Predicted pitch in degrees. */
+    public float getPitch() {
+        return pitch;
+    }
+
+    /** Predicted roll in degrees. */
+    public float getRoll() {
+        return roll;
+    }
+
+    /** Predicted change of the yaw position in degrees, counterclockwise positive like velYaw. */
+    public float getYawDelta() {
+        return yawDelta;
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.nithphonewrapper;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Allocation-free encoder for the compact binary frame (little-endian):
+ *
+ *  offset  size  field
+ *  0       2     magic 'N' 'B'
+ *  2       1     version (1)
+ *  3       1     flags: bit0 int16 fields, bit1 buttons present, bit2 button1, bit3 button2,
+ *                bit4 head_pos_yaw present, bit5 quaternion present, bit6 prediction present
+ *  4       4     sequence number (uint32, wraps)
+ *  8       8     sensor timestamp (ns, SensorEvent.timestamp base)
+ *  16      20|10 head_pos_pitch, head_pos_roll, head_vel_yaw, head_vel_pitch, head_vel_roll
+ *                as float32, or as int16 (degrees * 100, rad/s * 1000, saturating)
+ *  36|26   4|2   head_pos_yaw in the same representation, only if flag bit4 is set
+ *  ...     16|8  head_quat_w, x, y, z as float32 or int16 (* 10000), only if flag bit5 is set
+ *  ...     8|4   head_pred_pitch, head_pred_roll like the angles above, only if flag bit6 is set,
+ *                followed by head_pred_yaw (4|2) if bit4 is set too
+ *
+ * 36 bytes with float fields, 26 with int16 fields (40/28 with yaw, +16/+8 with the quaternion,
+ * +8/+4 or +12/+6 with the prediction), versus ~180 bytes of text.
+ */
+public class NithBinaryEncoder {
+
+    public static final byte MAGIC_0 = 'N';
+    public static final byte MAGIC_1 = 'B';
+    public static final byte VERSION = 1;
+
+    public static final int FLAG_INT16 = 1;
+    public static final int FLAG_BUTTONS = 1 << 1;
+    public static final int FLAG_BUTTON1 = 1 << 2;
+    public static final int FLAG_BUTTON2 = 1 << 3;
+    public static final int FLAG_YAW = 1 << 4;
+    public static final int FLAG_QUATERNION = 1 << 5;
+    public static final int FLAG_PREDICTION = 1 << 6;
+
+    public static final int HEADER_SIZE = 16;
+    public static final float DEGREES_SCALE = 100f;
+    public static final float RAD_PER_SEC_SCALE = 1000f;
+    public static final float QUATERNION_SCALE = 10000f;
+
+    private final byte[] buffer = new byte[96];
+    private final ByteBuffer frame = ByteBuffer.wrap(buffer).order(ByteOrder.LITTLE_ENDIAN);
+
+    /**
+     * Encodes a sample into the internal buffer.
+     * @return the frame length in bytes
+     */
+    public int encode(NithSample sample, long sequence, boolean quantized) {
+        int flags = quantized ? FLAG_INT16 : 0;
+        if (sample.hasButtons) {
+            flags |= FLAG_BUTTONS;
+            if (sample.button1) flags |= FLAG_BUTTON1;
+            if (sample.button2) flags |= FLAG_BUTTON2;
+        }
+        if (sample.hasYaw) flags |= FLAG_YAW;
+        if (sample.hasQuaternion) flags |= FLAG_QUATERNION;
+        if (sample.hasPrediction) flags |= FLAG_PREDICTION;
+
+        frame.clear();
+        frame.put(MAGIC_0).put(MAGIC_1).put(VERSION).put((byte) flags);
+        frame.putInt((int) sequence);
+        frame.putLong(sample.sensorTimestampNanos);
+        if (quantized) {
+            frame.putShort(quantize(sample.pitch, DEGREES_SCALE));
+            frame.putShort(quantize(sample.roll, DEGREES_SCALE));
+            frame.putShort(quantize(sample.velYaw, RAD_PER_SEC_SCALE));
+            frame.putShort(quantize(sample.velPitch, RAD_PER_SEC_SCALE));
+            frame.putShort(quantize(sample.velRoll, RAD_PER_SEC_SCALE));
+            if (sample.hasYaw) frame.putShort(quantize(sample.yaw, DEGREES_SCALE));
+            if (sample.hasQuaternion) {
+                frame.putShort(quantize(sample.quatW, QUATERNION_SCALE));
+                frame.putShort(quantize(sample.quatX, QUATERNION_SCALE));
+                frame.putShort(quantize(sample.quatY, QUATERNION_SCALE));
+                frame.putShort(quantize(sample.quatZ, QUATERNION_SCALE));
+            }
+            if (sample.hasPrediction) {
+                frame.putShort(quantize(sample.predPitch, DEGREES_SCALE));
+                frame.putShort(quantize(sample.predRoll, DEGREES_SCALE));
+                if (sample.hasYaw) frame.putShort(quantize(sample.predYaw, DEGREES_SCALE));
+            }
+        } else {
+            frame.putFloat(sample.pitch);
+            frame.putFloat(sample.roll);
+            frame.putFloat(sample.velYaw);
+            frame.putFloat(sample.velPitch);
+            frame.putFloat(sample.velRoll);
+            if (sample.hasYaw) frame.putFloat(sample.yaw);
+            if (sample.hasQuaternion) {
+                frame.putFloat(sample.quatW);
+                frame.putFloat(sample.quatX);
+                frame.putFloat(sample.quatY);
+                frame.putFloat(sample.quatZ);
+            }
+            if (sample.hasPrediction) {
+                frame.putFloat(sample.predPitch);
+                frame.putFloat(sample.predRoll);
+                if (sample.hasYaw) frame.putFloat(sample.predYaw);
+            }
+        }
+        return frame.position();
+    }
+
+    public byte[] buffer() {
+        return buffer;
+    }
+
+    static short quantize(float value, float scale) {
+        float scaled = value * scale;
+        if (Float.isNaN(scaled)) return 0;
+        return (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, Math.round(scaled)));
+    }
+}
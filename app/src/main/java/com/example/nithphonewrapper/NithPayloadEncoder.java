@@ -0,0 +1,240 @@
+package com.example.nithphonewrapper;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Allocation-free encoder for the NITH v0.2.0 text frame.
+ * Writes the frame straight into a reusable byte buffer, producing exactly the same bytes as:
+ * String.format(Locale.US, "$NITHphoneWrapper-v0.2.0|OPR|head_pos_pitch=%.2f&...^dev=%s&phone_ip=%s").getBytes()
+ * Not thread-safe: use one encoder per sending thread.
+ */
+public class NithPayloadEncoder {
+
+    public static final String HEADER = "$NITHphoneWrapper-v0.2.0|OPR|";
+
+    private static final int DEFAULT_CAPACITY = 512;
+
+    // Pre-encoded frame pieces
+    private static final byte[] HEADER_BYTES = ascii(HEADER);
+    private static final byte[] KEY_PITCH = ascii("head_pos_pitch=");
+    private static final byte[] KEY_ROLL = ascii("&head_pos_roll=");
+    private static final byte[] KEY_VEL_YAW = ascii("&head_vel_yaw=");
+    private static final byte[] KEY_VEL_PITCH = ascii("&head_vel_pitch=");
+    private static final byte[] KEY_VEL_ROLL = ascii("&head_vel_roll=");
+    private static final byte[] KEY_YAW = ascii("&head_pos_yaw=");
+    private static final byte[] KEY_QUAT_W = ascii("&head_quat_w=");
+    private static final byte[] KEY_QUAT_X = ascii("&head_quat_x=");
+    private static final byte[] KEY_QUAT_Y = ascii("&head_quat_y=");
+    private static final byte[] KEY_QUAT_Z = ascii("&head_quat_z=");
+    private static final byte[] KEY_PRED_PITCH = ascii("&head_pred_pitch=");
+    private static final byte[] KEY_PRED_ROLL = ascii("&head_pred_roll=");
+    private static final byte[] KEY_PRED_YAW = ascii("&head_pred_yaw=");
+    private static final byte[] KEY_BUTTON1 = ascii("button1");
+    private static final byte[] KEY_BUTTON2 = ascii("button2");
+    private static final byte[] TRUE_BYTES = ascii("true");
+    private static final byte[] FALSE_BYTES = ascii("false");
+
+    private byte[] buffer;
+    private int length;
+
+    // Extra section ("dev=...&phone_ip=..."), pre-encoded
+    private byte[] extraBytes = new byte[0];
+
+    public NithPayloadEncoder() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public NithPayloadEncoder(int capacity) {
+        buffer = new byte[capacity];
+    }
+
+    /**
+     * Sets the non-standard extra fields written after '^'.
+     */
+    public void setExtra(String deviceInfo, String phoneIp) {
+        extraBytes = encodeExtra(deviceInfo, phoneIp);
+    }
+
+    /**
+     * Uses an extra section pre-encoded with {@link #encodeExtra}. The array is kept by reference.
+     */
+    public void setExtraBytes(byte[] extra) {
+        extraBytes = extra;
+    }
+
+    /** Encodes "dev=...&phone_ip=..." once, so it can be reused for every frame. */
+    public static byte[] encodeExtra(String deviceInfo, String phoneIp) {
+        return ("dev=" + deviceInfo + "&phone_ip=" + phoneIp).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Encodes an OPR frame into the internal buffer, replacing any previous content.
+     * @return the frame length in bytes
+     */
+    public int encode(float pitch, float roll, float velYaw, float velPitch, float velRoll) {
+        putValues(pitch, roll, velYaw, velPitch, velRoll);
+        putExtra();
+        return length;
+    }
+
+    /**
+     * Encodes a pipeline sample, including the fused yaw position, quaternion, predicted
+     * orientation and button flags if the sample carries them. The optional values go last among
+     * the OPR values, in that order ("&head_pos_yaw=%.2f&head_quat_w=%.4f&...&head_quat_z=%.4f
+     * &head_pred_pitch=%.2f&head_pred_roll=%.2f&head_pred_yaw=%.2f" before '^').
+     * @return the frame length in bytes
+     */
+    public int encode(NithSample sample) {
+        putValues(sample.pitch, sample.roll, sample.velYaw, sample.velPitch, sample.velRoll);
+        if (sample.hasYaw) {
+            put(KEY_YAW);
+            putFixed(sample.yaw, 2);
+        }
+        if (sample.hasQuaternion) {
+            put(KEY_QUAT_W);
+            putFixed(sample.quatW, 4);
+            put(KEY_QUAT_X);
+            putFixed(sample.quatX, 4);
+            put(KEY_QUAT_Y);
+            putFixed(sample.quatY, 4);
+            put(KEY_QUAT_Z);
+            putFixed(sample.quatZ, 4);
+        }
+        if (sample.hasPrediction) {
+            put(KEY_PRED_PITCH);
+            putFixed(sample.predPitch, 2);
+            put(KEY_PRED_ROLL);
+            putFixed(sample.predRoll, 2);
+            if (sample.hasYaw) {
+                put(KEY_PRED_YAW);
+                putFixed(sample.predYaw, 2);
+            }
+        }
+        putExtra();
+        if (sample.hasButtons) {
+            appendFlag(KEY_BUTTON1, sample.button1);
+            appendFlag(KEY_BUTTON2, sample.button2);
+        }
+        return length;
+    }
+
+    private void putValues(float pitch, float roll, float velYaw, float velPitch, float velRoll) {
+        length = 0;
+        put(HEADER_BYTES);
+        put(KEY_PITCH);
+        putFixed(pitch, 2);
+        put(KEY_ROLL);
+        putFixed(roll, 2);
+        put(KEY_VEL_YAW);
+        putFixed(velYaw, 4);
+        put(KEY_VEL_PITCH);
+        putFixed(velPitch, 4);
+        put(KEY_VEL_ROLL);
+        putFixed(velRoll, 4);
+    }
+
+    private void putExtra() {
+        put((byte) '^');
+        put(extraBytes);
+    }
+
+    /**
+     * Appends "&name=true|false" to the current frame.
+     * @param name field name pre-encoded with {@link #ascii(String)}
+     */
+    public void appendFlag(byte[] name, boolean value) {
+        put((byte) '&');
+        put(name);
+        put((byte) '=');
+        put(value ? TRUE_BYTES : FALSE_BYTES);
+    }
+
+    /**
+     * Appends "&name=value" to the current frame.
+     * @param name field name pre-encoded with {@link #ascii(String)}
+     */
+    public void appendLong(byte[] name, long value) {
+        put((byte) '&');
+        put(name);
+        put((byte) '=');
+        if (value < 0) {
+            put((byte) '-');
+            if (value == Long.MIN_VALUE) {
+                // -Long.MIN_VALUE overflows; its last digit is 8
+                putDigits(-(value / 10), 1);
+                put((byte) '8');
+                return;
+            }
+            value = -value;
+        }
+        putDigits(value, 1);
+    }
+
+    /** Backing array; only the first {@link #length()} bytes are valid. */
+    public byte[] buffer() {
+        return buffer;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    public static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    // --- Low-level writers ---
+
+    private void put(byte b) {
+        ensureCapacity(1);
+        buffer[length++] = b;
+    }
+
+    private void put(byte[] bytes) {
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buffer, length, bytes.length);
+        length += bytes.length;
+    }
+
+    /**
+     * Writes value with the given number of decimals, matching Formatter's "%.Nf" (HALF_UP).
+     * Rounding is done with exact integer arithmetic (see {@link FixedPoint}),
+     * so no Formatter, StringBuilder or boxing is involved.
+     */
+    void putFixed(float value, int decimals) {
+        if (!FixedPoint.isSupported(value)) {
+            put(String.format(Locale.US, "%." + decimals + "f", value).getBytes(StandardCharsets.US_ASCII));
+            return;
+        }
+        long rounded = FixedPoint.scaledHalfUp(value, decimals);
+        // Formatter keeps the sign of negative values that round to zero (and of -0.0)
+        if (FixedPoint.isNegative(value)) {
+            put((byte) '-');
+        }
+        long divisor = FixedPoint.POWERS_OF_TEN[decimals];
+        putDigits(rounded / divisor, 1);
+        if (decimals > 0) {
+            put((byte) '.');
+            putDigits(rounded % divisor, decimals);
+        }
+    }
+
+    /** Writes a non-negative number, left-padded with zeros to at least minDigits. */
+    private void putDigits(long value, int minDigits) {
+        int digits = FixedPoint.digitCount(value, minDigits);
+        ensureCapacity(digits);
+        for (int i = length + digits - 1; i >= length; i--) {
+            buffer[i] = (byte) ('0' + (value % 10));
+            value /= 10;
+        }
+        length += digits;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (length + extra > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + extra));
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.nithphonewrapper;
+
+/**
+ * One head-tracking sample as it travels through the send pipeline.
+ * Instances are preallocated and copied field by field, never created per event.
+ */
+public class NithSample {
+
+    // Orientation (degrees), already inverted if requested
+    public float pitch;
+    public float roll;
+
+    // Fused yaw position (degrees), already inverted if requested; only sent when hasYaw
+    public boolean hasYaw;
+    public float yaw;
+
+    // Rotation-vector quaternion as reported by the sensor (not inverted); only sent when hasQuaternion
+    public boolean hasQuaternion;
+    public float quatW;
+    public float quatX;
+    public float quatY;
+    public float quatZ;
+
+    // Orientation extrapolated by the motion predictor (degrees), inverted like pitch and yaw;
+    // only sent when hasPrediction, predYaw only together with yaw
+    public boolean hasPrediction;
+    public float predPitch;
+    public float predRoll;
+    public float predYaw;
+
+    // Angular velocity (rad/s), yaw already inverted if requested
+    public float velYaw;
+    public float velPitch;
+    public float velRoll;
+
+    // Instant the values describe (ns, SensorEvent.timestamp base): the event's timestamp, or the
+    // interpolation time in CLOCK mode; smoothing runs on this time line
+    public long timestampNanos;
+    // SensorEvent.timestamp of the newest reading the sample was built from (ns), sent as sensor_ts;
+    // equals timestampNanos unless the sample was interpolated
+    public long sensorTimestampNanos;
+
+    // Button states (ButtonActivity only)
+    public boolean hasButtons;
+    public boolean button1;
+    public boolean button2;
+
+    public void set(NithSample other) {
+        pitch = other.pitch;
+        roll = other.roll;
+        hasYaw = other.hasYaw;
+        yaw = other.yaw;
+        hasQuaternion = other.hasQuaternion;
+        quatW = other.quatW;
+        quatX = other.quatX;
+        quatY = other.quatY;
+        quatZ = other.quatZ;
+        hasPrediction = other.hasPrediction;
+        predPitch = other.predPitch;
+        predRoll = other.predRoll;
+        predYaw = other.predYaw;
+        velYaw = other.velYaw;
+        velPitch = other.velPitch;
+        velRoll = other.velRoll;
+        timestampNanos = other.timestampNanos;
+        sensorTimestampNanos = other.sensorTimestampNanos;
+        hasButtons = other.hasButtons;
+        button1 = other.button1;
+        button2 = other.button2;
+    }
+}
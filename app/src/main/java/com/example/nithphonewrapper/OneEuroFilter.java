@@ -0,0 +1,95 @@
+package com.example.nithphonewrapper;
+
+/**
+ * One Euro filter (Casiez, Roussel and Vogel, CHI 2012) for a single value: a low-pass filter
+ * whose cutoff frequency rises with the speed of the signal. A still head gets heavy smoothing
+ * (minCutoff), a moving one little lag (beta scales the cutoff increase per unit/s of speed).
+ *
+ * Angles that wrap at +-180 degrees are filtered on the short way round and wrapped back.
+ * Allocation-free; not thread-safe.
+ */
+public final class OneEuroFilter {
+
+    /** Cutoff of the speed estimate, as recommended by the authors. */
+    public static final float DEFAULT_DERIVATIVE_CUTOFF_HZ = 1f;
+
+    private static final float TWO_PI = (float) (2 * Math.PI);
+
+    private final float minCutoffHz;
+    private final float beta;
+    private final float derivativeCutoffHz;
+    private final boolean wrapsAt180;
+
+    private boolean initialized = false;
+    private long lastTimestampNanos;
+    private float lastValue;
+    private float lastDerivative;
+
+    /**
+     * @param minCutoffHz cutoff while the value is still; lower is smoother but lags more
+     * @param beta cutoff increase (Hz) per unit/s of speed; higher follows fast motion better
+     */
+    public OneEuroFilter(float minCutoffHz, float beta, boolean wrapsAt180) {
+        this(minCutoffHz, beta, DEFAULT_DERIVATIVE_CUTOFF_HZ, wrapsAt180);
+    }
+
+    public OneEuroFilter(float minCutoffHz, float beta, float derivativeCutoffHz, boolean wrapsAt180) {
+        if (!(minCutoffHz > 0f) || !(derivativeCutoffHz > 0f)) {
+            throw new IllegalArgumentException("Cutoff frequencies must be positive: "
+                    + minCutoffHz + ", " + derivativeCutoffHz);
+        }
+        if (!(beta >= 0f)) {
+            throw new IllegalArgumentException("Beta must not be negative: " + beta);
+        }
+        this.minCutoffHz = minCutoffHz;
+        this.beta = beta;
+        this.derivativeCutoffHz = derivativeCutoffHz;
+        this.wrapsAt180 = wrapsAt180;
+    }
+
+    /**
+     * Filters the value observed at timestampNanos. The first value passes unchanged; a value with
+     * a timestamp not after the previous one returns the previous result.
+     */
+    public float filter(float value, long timestampNanos) {
+        if (!initialized) {
+            initialized = true;
+            lastTimestampNanos = timestampNanos;
+            lastValue = value;
+            lastDerivative = 0f;
+            return value;
+        }
+        long dtNanos = timestampNanos - lastTimestampNanos;
+        if (dtNanos <= 0) {
+            return lastValue;
+        }
+        lastTimestampNanos = timestampNanos;
+        float dt = dtNanos * 1e-9f;
+
+        float delta = value - lastValue;
+        if (wrapsAt180) delta = wrap(delta);
+
+        lastDerivative += alpha(derivativeCutoffHz, dt) * (delta / dt - lastDerivative);
+        float cutoff = minCutoffHz + beta * Math.abs(lastDerivative);
+        float filtered = lastValue + alpha(cutoff, dt) * delta;
+        lastValue = wrapsAt180 ? wrap(filtered) : filtered;
+        return lastValue;
+    }
+
+    /** Forgets the history, so the next value passes unchanged. */
+    public void reset() {
+        initialized = false;
+    }
+
+    // Smoothing factor of an exponential low-pass with this cutoff, for a step of dt seconds
+    private static float alpha(float cutoffHz, float dt) {
+        float r = TWO_PI * cutoffHz * dt;
+        return r / (r + 1f);
+    }
+
+    private static float wrap(float degrees) {
+        if (degrees > 180f) return degrees - 360f;
+        if (degrees < -180f) return degrees + 360f;
+        return degrees;
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.nithphonewrapper;
+
+/**
+ * Plain-Java port of the rotation-vector to Euler conversion done in onSensorChanged via
+ * SensorManager.getRotationMatrixFromVector and SensorManager.getOrientation (3x3 variants),
+ * so it can be benchmarked and tested on the JVM. Same formulas, same float results.
+ *
+ * The pipeline uses the direct quaternion variants ({@link #pitch}, {@link #roll}), which only
+ * compute the matrix elements getOrientation actually reads.
+ */
+public final class OrientationMath {
+
+    private OrientationMath() {
+    }
+
+    /**
+     * Same as SensorManager.getRotationMatrixFromVector(R, rotationVector) with a 9-element R.
+     * If the vector has no scalar component (length 3), it is derived from the other three.
+     */
+    public static void rotationVectorToMatrix(float[] rotationVector, float[] R) {
+        float q1 = rotationVector[0];
+        float q2 = rotationVector[1];
+        float q3 = rotationVector[2];
+        float q0;
+        if (rotationVector.length >= 4) {
+            q0 = rotationVector[3];
+        } else {
+            q0 = 1 - q1 * q1 - q2 * q2 - q3 * q3;
+            q0 = (q0 > 0) ? (float) Math.sqrt(q0) : 0;
+        }
+
+        float sqQ1 = 2 * q1 * q1;
+        float sqQ2 = 2 * q2 * q2;
+        float sqQ3 = 2 * q3 * q3;
+        float q1q2 = 2 * q1 * q2;
+        float q3q0 = 2 * q3 * q0;
+        float q1q3 = 2 * q1 * q3;
+        float q2q0 = 2 * q2 * q0;
+        float q2q3 = 2 * q2 * q3;
+        float q1q0 = 2 * q1 * q0;
+
+        R[0] = 1 - sqQ2 - sqQ3;
+        R[1] = q1q2 - q3q0;
+        R[2] = q1q3 + q2q0;
+
+        R[3] = q1q2 + q3q0;
+        R[4] = 1 - sqQ1 - sqQ3;
+        R[5] = q2q3 - q1q0;
+
+        R[6] = q1q3 - q2q0;
+        R[7] = q2q3 + q1q0;
+        R[8] = 1 - sqQ1 - sqQ2;
+    }
+
+    /**
+     * Same as SensorManager.getOrientation(R, values) with a 9-element R:
+     * values = {azimuth, pitch, roll} in radians.
+     */
+    public static void orientation(float[] R, float[] values) {
+        values[0] = (float) Math.atan2(R[1], R[4]);
+        values[1] = (float) Math.asin(-R[7]);
+        values[2] = (float) Math.atan2(-R[6], R[8]);
+    }
+
+    /** Both steps; R is scratch space of 9 floats. */
+    public static void rotationVectorToEuler(float[] rotationVector, float[] R, float[] values) {
+        rotationVectorToMatrix(rotationVector, R);
+        orientation(R, values);
+    }
+
+    /**
+     * Scalar part (w) of a rotation vector with valueCount values: values[3] if present,
+     * otherwise derived from x, y and z like getRotationMatrixFromVector does.
+     */
+    public static float scalarPart(float[] rotationVector, int valueCount) {
+        if (valueCount >= 4) {
+            return rotationVector[3];
+        }
+        float w = 1 - rotationVector[0] * rotationVector[0] - rotationVector[1] * rotationVector[1]
+                - rotationVector[2] * rotationVector[2];
+        return (w > 0) ? (float) Math.sqrt(w) : 0;
+    }
+
+    /**
+     * Pitch in radians straight from the quaternion: getOrientation's asin(-R[7]) without the
+     * matrix. The argument is clamped, so rounding near +-90 degrees cannot produce NaN.
+     */
+    public static float pitch(float x, float y, float z, float w) {
+        float sinPitch = -2 * (y * z + x * w);
+        return (float) Math.asin(Math.max(-1f, Math.min(1f, sinPitch)));
+    }
+
+    /** Roll in radians straight from the quaternion: getOrientation's atan2(-R[6], R[8]). */
+    public static float roll(float x, float y, float z, float w) {
+        return (float) Math.atan2(2 * (y * w - x * z), 1 - 2 * (x * x + y * y));
+    }
+}
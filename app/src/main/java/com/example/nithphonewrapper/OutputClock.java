@@ -0,0 +1,101 @@
+package com.example.nithphonewrapper;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Fixed-rate tick source scheduled against absolute deadlines (start + k * period), so the rate does
+ * not drift with the time spent in each tick or with scheduler jitter, unlike a sleep(period) loop.
+ * If the thread falls behind by more than a period, missed ticks are skipped (not bursted) and the
+ * original phase is kept.
+ */
+public class OutputClock {
+
+    public interface TickListener {
+        /** Called on the clock thread with the tick's scheduled deadline. */
+        void onTick(long deadlineNanos);
+    }
+
+    /** Monotonic time source; on Android use SystemClock.elapsedRealtimeNanos (SensorEvent.timestamp base). */
+    public interface TimeSource {
+        long nanoTime();
+    }
+
+    public static final TimeSource SYSTEM_NANO_TIME = System::nanoTime;
+
+    private final long periodNanos;
+    private final TimeSource timeSource;
+    private final TickListener listener;
+
+    private volatile boolean running = false;
+    private Thread thread;
+
+    private final AtomicLong ticks = new AtomicLong();
+    private final AtomicLong skippedTicks = new AtomicLong();
+
+    public OutputClock(int rateHz, TimeSource timeSource, TickListener listener) {
+        if (rateHz <= 0) {
+            throw new IllegalArgumentException("Output rate must be positive: " + rateHz);
+        }
+        this.periodNanos = TimeUnit.SECONDS.toNanos(1) / rateHz;
+        this.timeSource = timeSource;
+        this.listener = listener;
+    }
+
+    public synchronized void start() {
+        if (running) return;
+        running = true;
+        thread = new Thread(this::run, "NITH-OutputClock");
+        thread.setPriority(Thread.MAX_PRIORITY);
+        thread.start();
+    }
+
+    public synchronized void stop() {
+        if (!running) return;
+        running = false;
+        Thread t = thread;
+        thread = null;
+        LockSupport.unpark(t);
+        try {
+            t.join(500);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        long deadline = timeSource.nanoTime() + periodNanos;
+        while (running) {
+            long wait = deadline - timeSource.nanoTime();
+            while (wait > 0 && running) {
+                LockSupport.parkNanos(this, wait);
+                wait = deadline - timeSource.nanoTime();
+            }
+            if (!running) break;
+
+            listener.onTick(deadline);
+            ticks.incrementAndGet();
+            deadline += periodNanos;
+
+            long late = timeSource.nanoTime() - deadline;
+            if (late > periodNanos) {
+                long missed = late / periodNanos;
+                deadline += missed * periodNanos;
+                skippedTicks.addAndGet(missed);
+            }
+        }
+    }
+
+    public long getPeriodNanos() {
+        return periodNanos;
+    }
+
+    public long getTickCount() {
+        return ticks.get();
+    }
+
+    public long getSkippedTickCount() {
+        return skippedTicks.get();
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.nithphonewrapper;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays a {@link SensorTrace} on its own thread, at real time, any multiple of it, or as fast
+ * as possible. Timestamps are rebased onto the time source, as if the events had just happened:
+ * event i is delivered at, and stamped with, start + (t_i - t_0) / speed.
+ * Delivery does not allocate, so the replay itself does not disturb the pipeline being measured.
+ */
+public class ReplaySensorSource implements SensorSource {
+
+    /** Speed value meaning: no pacing, each event is stamped with its delivery time. */
+    public static final double AS_FAST_AS_POSSIBLE = Double.POSITIVE_INFINITY;
+
+    // Below this remaining wait the replay thread spins instead of parking, for sub-ms pacing
+    private static final long SPIN_THRESHOLD_NANOS = TimeUnit.MICROSECONDS.toNanos(200);
+
+    private final SensorTrace trace;
+    private final double speed;
+    private final OutputClock.TimeSource timeSource;
+    private final float[] values = new float[SensorTrace.MAX_VALUES];
+    private final AtomicLong delivered = new AtomicLong();
+
+    private volatile boolean running = false;
+    private volatile Thread thread;
+    private volatile CountDownLatch finished = new CountDownLatch(0);
+
+    /**
+     * @param speed 1 for real time, 2 for twice as fast, ... or {@link #AS_FAST_AS_POSSIBLE}
+     */
+    public ReplaySensorSource(SensorTrace trace, double speed, OutputClock.TimeSource timeSource) {
+        if (!(speed > 0)) {
+            throw new IllegalArgumentException("Replay speed must be positive: " + speed);
+        }
+        this.trace = trace;
+        this.speed = speed;
+        this.timeSource = timeSource;
+    }
+
+    @Override
+    public synchronized void start(Listener listener) {
+        if (running) return;
+        running = true;
+        delivered.set(0);
+        finished = new CountDownLatch(1);
+        thread = new Thread(() -> run(listener), "NITH-Replay");
+        thread.start();
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (!running && thread == null) return;
+        running = false;
+        Thread t = thread;
+        thread = null;
+        if (t != null) {
+            LockSupport.unpark(t);
+            if (Thread.currentThread() == t) return; // called from the listener: delivery ends when it returns
+            boolean interrupted = false;
+            while (t.isAlive()) {
+                try {
+                    t.join();
+                } catch (InterruptedException e) {
+                    // Keep waiting: the contract is that no event arrives after stop() returns
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /** Waits until the whole trace was delivered (or the replay was stopped). */
+    public boolean awaitFinished(long timeout, TimeUnit unit) throws InterruptedException {
+        return finished.await(timeout, unit);
+    }
+
+    public long getDeliveredCount() {
+        return delivered.get();
+    }
+
+    private void run(Listener listener) {
+        try {
+            int size = trace.size();
+            if (size == 0) return;
+            long traceStart = trace.timestampNanos(0);
+            long start = timeSource.nanoTime();
+            boolean paced = speed != AS_FAST_AS_POSSIBLE;
+            for (int i = 0; i < size && running; i++) {
+                long timestamp;
+                if (paced) {
+                    timestamp = start + (long) ((trace.timestampNanos(i) - traceStart) / speed);
+                    if (!waitUntil(timestamp)) break;
+                } else {
+                    timestamp = timeSource.nanoTime();
+                }
+                int count = trace.copyValues(i, values);
+                listener.onSensorEvent(trace.type(i), timestamp, values, count, trace.accuracy(i));
+                delivered.incrementAndGet();
+            }
+        } finally {
+            running = false;
+            finished.countDown();
+        }
+    }
+
+    private boolean waitUntil(long deadline) {
+        long remaining;
+        while (running && (remaining = deadline - timeSource.nanoTime()) > 0) {
+            if (remaining > SPIN_THRESHOLD_NANOS) {
+                LockSupport.parkNanos(this, remaining - SPIN_THRESHOLD_NANOS);
+            } else {
+                Thread.yield();
+            }
+        }
+        return running;
+    }
+}
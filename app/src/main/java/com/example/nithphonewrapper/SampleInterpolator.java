@@ -0,0 +1,192 @@
+package com.example.nithphonewrapper;
+
+/**
+ * Keeps a short timestamped history of sensor readings and reconstructs the state at any instant.
+ * Orientation (rotation vector) and angular velocity (gyroscope) arrive at different times, so each
+ * has its own history; {@link #sampleAt} interpolates both linearly between the two readings that
+ * bracket the requested time (by SensorEvent.timestamp) and holds the nearest reading outside them.
+ * Quaternions are interpolated component-wise and renormalized (nlerp), which is close enough to
+ * slerp for readings a few milliseconds apart.
+ *
+ * Written by the sensor thread, read by the output clock thread; all methods are synchronized and
+ * allocation-free.
+ */
+public class SampleInterpolator {
+
+    private static final int HISTORY = 16;
+
+    private final Channel orientation = new Channel(2, new boolean[]{false, true}); // pitch, roll (wraps at ±180)
+    private final Channel angularVelocity = new Channel(3, new boolean[]{false, false, false}); // yaw, pitch, roll
+    private final Channel yaw = new Channel(1, new boolean[]{true}); // fused yaw position, optional
+    private final Channel quaternion = new Channel(4, new boolean[]{false, false, false, false}); // w, x, y, z, optional
+
+    private final float[] orientationOut = new float[2];
+    private final float[] velocityOut = new float[3];
+    private final float[] yawOut = new float[1];
+    private final float[] quaternionOut = new float[4];
+
+    public synchronized void addOrientation(long timestampNanos, float pitch, float roll) {
+        orientation.add(timestampNanos, pitch, roll, 0f, 0f);
+    }
+
+    public synchronized void addAngularVelocity(long timestampNanos, float velYaw, float velPitch, float velRoll) {
+        angularVelocity.add(timestampNanos, velYaw, velPitch, velRoll, 0f);
+    }
+
+    /** Fused yaw position (degrees); samples carry a yaw only once this has been called. */
+    public synchronized void addYaw(long timestampNanos, float yawDegrees) {
+        yaw.add(timestampNanos, yawDegrees, 0f, 0f, 0f);
+    }
+
+    /**
+     * Rotation-vector quaternion; samples carry a quaternion only once this has been called.
+     * q and -q are the same rotation: the sign is flipped where needed so consecutive readings stay
+     * in the same hemisphere and interpolate the short way.
+     */
+    public synchronized void addQuaternion(long timestampNanos, float w, float x, float y, float z) {
+        if (quaternion.count > 0) {
+            int base = quaternion.newest() * 4;
+            float[] v = quaternion.values;
+            if (v[base] * w + v[base + 1] * x + v[base + 2] * y + v[base + 3] * z < 0f) {
+                w = -w;
+                x = -x;
+                y = -y;
+                z = -z;
+            }
+        }
+        quaternion.add(timestampNanos, w, x, y, z);
+    }
+
+    /**
+     * Fills out with the state at timeNanos (same time base as SensorEvent.timestamp), and
+     * out.sensorTimestampNanos with the timestamp of the newest reading used.
+     * Button fields of out are left untouched.
+     * @return false if no orientation reading has been received yet
+     */
+    public synchronized boolean sampleAt(long timeNanos, NithSample out) {
+        if (!orientation.interpolate(timeNanos, orientationOut)) {
+            return false;
+        }
+        long newestUsed = orientation.usedTime;
+        if (angularVelocity.interpolate(timeNanos, velocityOut)) {
+            newestUsed = Math.max(newestUsed, angularVelocity.usedTime);
+        } else {
+            velocityOut[0] = velocityOut[1] = velocityOut[2] = 0f;
+        }
+        out.pitch = orientationOut[0];
+        out.roll = orientationOut[1];
+        out.velYaw = velocityOut[0];
+        out.velPitch = velocityOut[1];
+        out.velRoll = velocityOut[2];
+        out.hasYaw = yaw.interpolate(timeNanos, yawOut);
+        out.yaw = out.hasYaw ? yawOut[0] : 0f;
+        if (out.hasYaw) newestUsed = Math.max(newestUsed, yaw.usedTime);
+        out.hasQuaternion = quaternion.interpolate(timeNanos, quaternionOut);
+        if (out.hasQuaternion) {
+            newestUsed = Math.max(newestUsed, quaternion.usedTime);
+            float w = quaternionOut[0], x = quaternionOut[1], y = quaternionOut[2], z = quaternionOut[3];
+            float norm = (float) Math.sqrt(w * w + x * x + y * y + z * z);
+            if (norm > 0f) {
+                out.quatW = w / norm;
+                out.quatX = x / norm;
+                out.quatY = y / norm;
+                out.quatZ = z / norm;
+            } else {
+                out.hasQuaternion = false;
+            }
+        }
+        out.timestampNanos = timeNanos;
+        out.sensorTimestampNanos = newestUsed;
+        return true;
+    }
+
+    /** Timestamp of the newest orientation reading, or 0 if none. */
+    public synchronized long latestOrientationTimestamp() {
+        return orientation.count == 0 ? 0L : orientation.times[orientation.newest()];
+    }
+
+    public synchronized void reset() {
+        orientation.count = 0;
+        angularVelocity.count = 0;
+        yaw.count = 0;
+        quaternion.count = 0;
+    }
+
+    /** Fixed-size ring of timestamped readings with a few float components each. */
+    private static final class Channel {
+        final int width;
+        final boolean[] wrapsAt180;
+        final long[] times = new long[HISTORY];
+        final float[] values;
+        int next = 0;
+        int count = 0;
+        // Timestamp of the newest reading the last interpolate() used
+        long usedTime;
+
+        Channel(int width, boolean[] wrapsAt180) {
+            this.width = width;
+            this.wrapsAt180 = wrapsAt180;
+            values = new float[HISTORY * width];
+        }
+
+        int newest() {
+            return (next - 1 + HISTORY) % HISTORY;
+        }
+
+        void add(long time, float a, float b, float c, float d) {
+            // Out-of-order or duplicate timestamps would break the bracketing search: restart history
+            if (count > 0 && time <= times[newest()]) {
+                count = 0;
+            }
+            times[next] = time;
+            int base = next * width;
+            values[base] = a;
+            if (width > 1) values[base + 1] = b;
+            if (width > 2) values[base + 2] = c;
+            if (width > 3) values[base + 3] = d;
+            next = (next + 1) % HISTORY;
+            if (count < HISTORY) count++;
+        }
+
+        boolean interpolate(long t, float[] out) {
+            if (count == 0) return false;
+            int newer = newest();
+            if (t >= times[newer]) {
+                copy(newer, out);
+                usedTime = times[newer];
+                return true;
+            }
+            // Walk back from the newest reading to find the pair bracketing t
+            for (int i = 1; i < count; i++) {
+                int older = (newer - 1 + HISTORY) % HISTORY;
+                if (times[older] <= t) {
+                    float fraction = (float) (t - times[older]) / (float) (times[newer] - times[older]);
+                    for (int k = 0; k < width; k++) {
+                        float from = values[older * width + k];
+                        float delta = values[newer * width + k] - from;
+                        if (wrapsAt180[k]) {
+                            if (delta > 180f) delta -= 360f;
+                            else if (delta < -180f) delta += 360f;
+                        }
+                        float value = from + delta * fraction;
+                        if (wrapsAt180[k]) {
+                            if (value > 180f) value -= 360f;
+                            else if (value < -180f) value += 360f;
+                        }
+                        out[k] = value;
+                    }
+                    usedTime = times[newer];
+                    return true;
+                }
+                newer = older;
+            }
+            copy(newer, out); // t is older than the whole history
+            usedTime = times[newer];
+            return true;
+        }
+
+        private void copy(int index, float[] out) {
+            System.arraycopy(values, index * width, out, 0, width);
+        }
+    }
+}
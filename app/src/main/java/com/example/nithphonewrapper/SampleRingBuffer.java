@@ -0,0 +1,118 @@
+package com.example.nithphonewrapper;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded single-producer/single-consumer ring of preallocated {@link NithSample} slots.
+ * The producer (sensor thread) copies samples in, the consumer (sender thread) copies them out;
+ * neither side allocates or blocks.
+ *
+ * Overflow is resolved by moving the read index forward with a CAS, so a consumer that was
+ * copying a slot the producer is about to reuse notices it (its own CAS fails) and retries.
+ */
+public class SampleRingBuffer {
+
+    public enum OverflowPolicy {
+        /** When full, the oldest queued sample is discarded to make room. */
+        DROP_OLDEST,
+        /** The consumer always skips to the newest sample; anything older is discarded. */
+        KEEP_LATEST
+    }
+
+    private final NithSample[] slots;
+    private final int mask;
+    private final OverflowPolicy policy;
+
+    private final AtomicLong head = new AtomicLong(); // next index to read
+    private final AtomicLong tail = new AtomicLong(); // next index to write
+
+    // Counters
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * @param capacity number of slots, rounded up to a power of two
+     */
+    public SampleRingBuffer(int capacity, OverflowPolicy policy) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        slots = new NithSample[size];
+        for (int i = 0; i < size; i++) {
+            slots[i] = new NithSample();
+        }
+        mask = size - 1;
+        this.policy = policy;
+    }
+
+    /**
+     * Producer side. Copies the sample into the ring, dropping the oldest entry if full.
+     * @return false if a queued sample had to be dropped
+     */
+    public boolean offer(NithSample sample) {
+        long t = tail.get();
+        boolean overflowed = false;
+        long h = head.get();
+        while (t - h >= slots.length) {
+            if (head.compareAndSet(h, h + 1)) {
+                dropped.incrementAndGet();
+                overflowed = true;
+                break;
+            }
+            h = head.get();
+        }
+        slots[(int) (t & mask)].set(sample);
+        tail.lazySet(t + 1);
+        enqueued.incrementAndGet();
+        return !overflowed;
+    }
+
+    /**
+     * Consumer side. Copies the next sample (or the newest one, with KEEP_LATEST) into out.
+     * @return false if the ring is empty
+     */
+    public boolean poll(NithSample out) {
+        while (true) {
+            long h = head.get();
+            long t = tail.get();
+            if (h >= t) {
+                return false;
+            }
+            if (policy == OverflowPolicy.KEEP_LATEST && t - h > 1) {
+                if (head.compareAndSet(h, t - 1)) {
+                    dropped.addAndGet(t - 1 - h);
+                }
+                continue;
+            }
+            out.set(slots[(int) (h & mask)]);
+            if (head.compareAndSet(h, h + 1)) {
+                return true;
+            }
+            // The producer reclaimed this slot while we were copying it: retry
+        }
+    }
+
+    public int size() {
+        return (int) Math.max(0, tail.get() - head.get());
+    }
+
+    public int capacity() {
+        return slots.length;
+    }
+
+    public OverflowPolicy policy() {
+        return policy;
+    }
+
+    public long getEnqueuedCount() {
+        return enqueued.get();
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+}
@@ -0,0 +1,388 @@
+package com.example.nithphonewrapper;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Single long-lived sender thread. Samples are submitted from the sensor thread into a
+ * {@link SampleRingBuffer}; this thread drains it, encodes each sample and hands it to the transport.
+ * Replaces the former thread-per-packet sending, so packets leave in order and without thread churn.
+ *
+ * Optionally several samples are packed into one datagram (see {@link #setBatching}): text frames
+ * are joined with '\n' and carry their sensor timestamp as "sensor_ts", binary frames are simply
+ * concatenated (each one is self-describing and already timestamped).
+ *
+ * Text frames can also carry "seq", "sensor_ts" and "send_ts" in the extra section
+ * (see {@link #setFrameMetadata}), so receivers can detect loss and measure staleness.
+ */
+public class SampleSender {
+
+    /**
+     * Callbacks from the sender thread. A receiver that is down fails every send, i.e. at sensor
+     * rate, so errors are reported on the change from working to failing and then at most once per
+     * {@link #ERROR_REPORT_INTERVAL_MS} while they continue; the send error metric counts them all.
+     */
+    public interface Listener {
+        void onSendError(IOException e);
+
+        /** A send succeeded after failedSends failed ones. */
+        default void onSendRecovered(long failedSends) {
+        }
+    }
+
+    public static final long ERROR_REPORT_INTERVAL_MS = 5000;
+    private static final long ERROR_REPORT_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(ERROR_REPORT_INTERVAL_MS);
+
+    // Upper bound on how long the idle sender sleeps; submit() wakes it up immediately anyway
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    /** A batch is flushed early rather than grow past this, to stay below a typical Wi-Fi MTU. */
+    public static final int MAX_DATAGRAM_BYTES = 1400;
+
+    // Metric names registered by setMetrics()
+    public static final String METRIC_ENQUEUED = "sender.enqueued";
+    public static final String METRIC_SENT = "sender.samples_sent";
+    public static final String METRIC_DATAGRAMS = "sender.datagrams";
+    public static final String METRIC_DROPPED = "sender.dropped";
+    public static final String METRIC_SEND_ERRORS = "sender.send_errors";
+    public static final String METRIC_STALE = "sender.stale_samples";
+    public static final String METRIC_SENSOR_TO_SEND = "latency.sensor_to_send";
+    public static final String METRIC_SEND_CALL = "latency.send_call";
+
+    static final byte[] KEY_SEQ = NithPayloadEncoder.ascii("seq");
+    static final byte[] KEY_SENSOR_TS = NithPayloadEncoder.ascii("sensor_ts");
+    static final byte[] KEY_SEND_TS = NithPayloadEncoder.ascii("send_ts");
+
+    private final SampleRingBuffer ring;
+    private final FrameTransport transport;
+    private final Listener listener;
+    private final NithPayloadEncoder encoder = new NithPayloadEncoder();
+    private final NithBinaryEncoder binaryEncoder = new NithBinaryEncoder();
+    private final NithSample current = new NithSample();
+
+    // Wire format, negotiated during discovery; may change while running
+    private volatile FrameFormat frameFormat = FrameFormat.TEXT;
+    private long sequence = 0; // sender thread only
+    private volatile boolean frameMetadata = false;
+    // Clock for send_ts and the dead-band heartbeat; should match the SensorEvent.timestamp base
+    private volatile OutputClock.TimeSource timeSource = OutputClock.SYSTEM_NANO_TIME;
+
+    // Pre-encoded extra fields, published by any thread and picked up by the sender thread
+    private volatile byte[] extraBytes = NithPayloadEncoder.encodeExtra(null, null);
+
+    // Batching: configured before start(); the batch itself is sender thread only
+    private volatile int batchMaxSamples = 1;
+    private volatile long batchMaxHoldNanos = 0;
+    private final byte[] batch = new byte[MAX_DATAGRAM_BYTES];
+    private int batchLength = 0;
+    // Sample timestamps of the pending batch, for latency metrics (a frame is at least a binary header)
+    private final long[] batchTimestamps = new long[MAX_DATAGRAM_BYTES / NithBinaryEncoder.HEADER_SIZE];
+    private final long[] singleTimestamp = new long[1];
+    private int batchSamples = 0;
+    private FrameFormat batchFormat;
+    private long batchDeadline;
+
+    // Optional idle suppression, applied on the sender thread before encoding
+    private volatile DeadBandFilter deadBand;
+
+    // Optional latency metrics, null until setMetrics()
+    private volatile LatencyHistogram sensorToSendLatency;
+    private volatile LatencyHistogram sendCallLatency;
+
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong datagrams = new AtomicLong();
+    private final AtomicLong sendErrors = new AtomicLong();
+    private final AtomicLong staleSamples = new AtomicLong();
+    // Sender thread only: current run of failed sends and when it was last reported
+    private long failedSends = 0;
+    private long lastErrorReportNanos;
+
+    private volatile boolean running = false;
+    private volatile Thread thread;
+
+    public SampleSender(SampleRingBuffer ring, FrameTransport transport, Listener listener) {
+        this.ring = ring;
+        this.transport = transport;
+        this.listener = listener;
+    }
+
+    /**
+     * Sets the device/IP extra fields. Encodes them once; call again only when they change.
+     */
+    public void setExtra(String deviceInfo, String phoneIp) {
+        extraBytes = NithPayloadEncoder.encodeExtra(deviceInfo, phoneIp);
+    }
+
+    public void setFrameFormat(FrameFormat format) {
+        frameFormat = format != null ? format : FrameFormat.TEXT;
+    }
+
+    public FrameFormat getFrameFormat() {
+        return frameFormat;
+    }
+
+    /**
+     * Adds "&seq=...&sensor_ts=...&send_ts=..." after the extra fields of text frames.
+     * seq counts frames (not datagrams) and is the same counter binary frames carry; sensor_ts is
+     * the originating SensorEvent.timestamp (for interpolated samples, that of the newest reading
+     * used) and send_ts the time the frame was encoded, both in ns.
+     */
+    public void setFrameMetadata(boolean enabled) {
+        frameMetadata = enabled;
+    }
+
+    /**
+     * Clock used for send_ts and the dead-band heartbeat. On Android pass
+     * SystemClock::elapsedRealtimeNanos, the SensorEvent.timestamp base, so send_ts - sensor_ts
+     * is the time a sample spent on the phone.
+     */
+    public void setTimeSource(OutputClock.TimeSource source) {
+        timeSource = source != null ? source : OutputClock.SYSTEM_NANO_TIME;
+    }
+
+    /**
+     * Packs up to maxSamples samples into each datagram. A partial batch is sent once its first
+     * sample has waited maxHoldNanos, or earlier if the next frame would not fit in
+     * {@link #MAX_DATAGRAM_BYTES}. maxSamples <= 1 disables batching.
+     *
+     * The hold time is checked after every sample, not only when the queue runs empty, and samples
+     * older than twice the hold time when their batch is sent (the sensor FIFO may already have held
+     * them for one hold time) are counted as {@link #getStaleSampleCount() stale}.
+     */
+    public void setBatching(int maxSamples, long maxHoldNanos) {
+        batchMaxHoldNanos = Math.max(0, maxHoldNanos);
+        batchMaxSamples = Math.max(1, maxSamples);
+    }
+
+    public int getBatchMaxSamples() {
+        return batchMaxSamples;
+    }
+
+    /**
+     * Drops samples that stay within the filter's dead-band (see {@link DeadBandFilter}).
+     * Suppressed samples do not consume a sequence number. Pass null to send everything.
+     */
+    public void setDeadBand(DeadBandFilter filter) {
+        deadBand = filter;
+    }
+
+    public DeadBandFilter getDeadBand() {
+        return deadBand;
+    }
+
+    /**
+     * Exposes this sender's counters as gauges and starts recording, per sample, the time from the
+     * sensor timestamp to the return of send(), and the duration of each send() call.
+     * Timestamps come from the {@link #setTimeSource time source}, which must match the samples' clock.
+     */
+    public void setMetrics(MetricsRegistry registry) {
+        registry.gauge(METRIC_ENQUEUED, this::getEnqueuedCount);
+        registry.gauge(METRIC_SENT, this::getSentCount);
+        registry.gauge(METRIC_DATAGRAMS, this::getDatagramCount);
+        registry.gauge(METRIC_DROPPED, this::getDroppedCount);
+        registry.gauge(METRIC_SEND_ERRORS, this::getSendErrorCount);
+        registry.gauge(METRIC_STALE, this::getStaleSampleCount);
+        // sendCallLatency is written last: once the sender sees it, it also sees sensorToSendLatency
+        sensorToSendLatency = registry.histogram(METRIC_SENSOR_TO_SEND);
+        sendCallLatency = registry.histogram(METRIC_SEND_CALL);
+    }
+
+    public synchronized void start() {
+        if (running) return;
+        running = true;
+        thread = new Thread(this::run, "NITH-UdpSender");
+        thread.start();
+    }
+
+    /**
+     * Stops the sender thread and waits briefly for it to exit. Queued samples are discarded.
+     */
+    public synchronized void stop() {
+        if (!running) return;
+        running = false;
+        Thread t = thread;
+        thread = null;
+        LockSupport.unpark(t);
+        try {
+            t.join(500);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Producer side (sensor thread). Copies the sample into the ring and wakes the sender.
+     */
+    public void submit(NithSample sample) {
+        ring.offer(sample);
+        Thread t = thread;
+        if (t != null) {
+            LockSupport.unpark(t);
+        }
+    }
+
+    private void run() {
+        while (running) {
+            if (!ring.poll(current)) {
+                if (batchSamples > 0) {
+                    long remaining = batchDeadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        flushBatch();
+                    } else {
+                        LockSupport.parkNanos(this, remaining);
+                    }
+                } else {
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                }
+                continue;
+            }
+            DeadBandFilter filter = deadBand;
+            long now = timeSource.nanoTime();
+            if (filter != null && !filter.accept(current, now)) {
+                continue;
+            }
+            int maxSamples = batchMaxSamples;
+            FrameFormat format = frameFormat;
+            byte[] frame;
+            int length;
+            if (format == FrameFormat.TEXT) {
+                encoder.setExtraBytes(extraBytes);
+                length = encoder.encode(current);
+                if (frameMetadata) {
+                    encoder.appendLong(KEY_SEQ, sequence);
+                    encoder.appendLong(KEY_SENSOR_TS, current.sensorTimestampNanos);
+                    encoder.appendLong(KEY_SEND_TS, now);
+                    length = encoder.length();
+                } else if (maxSamples > 1) {
+                    encoder.appendLong(KEY_SENSOR_TS, current.sensorTimestampNanos);
+                    length = encoder.length();
+                }
+                frame = encoder.buffer();
+            } else {
+                length = binaryEncoder.encode(current, sequence, format == FrameFormat.BINARY_INT16);
+                frame = binaryEncoder.buffer();
+            }
+            sequence++;
+
+            if (maxSamples <= 1) {
+                if (batchSamples > 0) flushBatch(); // batching was just turned off
+                singleTimestamp[0] = current.sensorTimestampNanos;
+                transmit(frame, length, singleTimestamp, 1);
+            } else {
+                addToBatch(frame, length, format, maxSamples);
+            }
+        }
+    }
+
+    private void addToBatch(byte[] frame, int length, FrameFormat format, int maxSamples) {
+        int separator = format == FrameFormat.TEXT ? 1 : 0;
+        if (batchSamples > 0
+                && (format != batchFormat || batchLength + separator + length > batch.length)) {
+            flushBatch();
+        }
+        if (length > batch.length) {
+            singleTimestamp[0] = current.sensorTimestampNanos;
+            transmit(frame, length, singleTimestamp, 1); // cannot be batched at all
+            return;
+        }
+        if (batchSamples == 0) {
+            batchFormat = format;
+            batchDeadline = System.nanoTime() + batchMaxHoldNanos;
+        } else if (separator != 0) {
+            batch[batchLength++] = '\n';
+        }
+        System.arraycopy(frame, 0, batch, batchLength, length);
+        batchLength += length;
+        if (batchSamples < batchTimestamps.length) {
+            batchTimestamps[batchSamples] = current.sensorTimestampNanos;
+        }
+        batchSamples++;
+        // A queue that never runs empty must not postpone the hold deadline
+        if (batchSamples >= maxSamples || System.nanoTime() - batchDeadline >= 0) {
+            flushBatch();
+        }
+    }
+
+    private void flushBatch() {
+        long maxAge = 2 * batchMaxHoldNanos;
+        long now = timeSource.nanoTime();
+        int recorded = Math.min(batchSamples, batchTimestamps.length);
+        for (int i = 0; i < recorded; i++) {
+            if (now - batchTimestamps[i] > maxAge) staleSamples.incrementAndGet();
+        }
+        transmit(batch, batchLength, batchTimestamps, batchSamples);
+        batchLength = 0;
+        batchSamples = 0;
+    }
+
+    private void transmit(byte[] datagram, int length, long[] timestamps, int samples) {
+        LatencyHistogram sendCall = sendCallLatency;
+        LatencyHistogram sensorToSend = sensorToSendLatency;
+        long start = sendCall != null ? timeSource.nanoTime() : 0;
+        try {
+            transport.send(datagram, length);
+            sent.addAndGet(samples);
+            datagrams.incrementAndGet();
+            if (failedSends > 0) {
+                long failed = failedSends;
+                failedSends = 0;
+                if (running && listener != null) {
+                    listener.onSendRecovered(failed);
+                }
+            }
+            if (sendCall != null) {
+                long end = timeSource.nanoTime();
+                sendCall.record(end - start);
+                int recorded = Math.min(samples, timestamps.length);
+                for (int i = 0; i < recorded; i++) {
+                    sensorToSend.record(end - timestamps[i]);
+                }
+            }
+        } catch (IOException e) {
+            sendErrors.incrementAndGet();
+            long now = timeSource.nanoTime();
+            boolean report = failedSends == 0 || now - lastErrorReportNanos >= ERROR_REPORT_INTERVAL_NANOS;
+            failedSends++;
+            if (report) {
+                lastErrorReportNanos = now;
+                if (running && listener != null) {
+                    listener.onSendError(e);
+                }
+            }
+        }
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    // --- Counters ---
+
+    public long getEnqueuedCount() {
+        return ring.getEnqueuedCount();
+    }
+
+    /** Samples sent; with batching this is larger than {@link #getDatagramCount()}. */
+    public long getSentCount() {
+        return sent.get();
+    }
+
+    public long getDatagramCount() {
+        return datagrams.get();
+    }
+
+    public long getDroppedCount() {
+        return ring.getDroppedCount();
+    }
+
+    public long getSendErrorCount() {
+        return sendErrors.get();
+    }
+
+    /** Batched samples older than twice the max hold time when their datagram was sent. */
+    public long getStaleSampleCount() {
+        return staleSamples.get();
+    }
+}
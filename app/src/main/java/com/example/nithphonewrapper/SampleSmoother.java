@@ -0,0 +1,86 @@
+package com.example.nithphonewrapper;
+
+/**
+ * Removes jitter from the orientation and angular velocity fields of each sample with one
+ * {@link OneEuroFilter} per field, so receivers get clean values without their own filters.
+ * Fields without a filter pass unchanged; the quaternion is never smoothed. The fused yaw is
+ * only filtered on samples that carry it.
+ *
+ * Filters run on the sample timestamps, so they work the same at any sample rate.
+ * Allocation-free; not thread-safe (one smoother per producing thread).
+ */
+public final class SampleSmoother {
+
+    public enum Field {
+        PITCH(false), ROLL(true), YAW(true), VEL_YAW(false), VEL_PITCH(false), VEL_ROLL(false);
+
+        final boolean wrapsAt180;
+
+        Field(boolean wrapsAt180) {
+            this.wrapsAt180 = wrapsAt180;
+        }
+    }
+
+    private static final Field[] FIELDS = Field.values();
+
+    private final OneEuroFilter[] filters = new OneEuroFilter[FIELDS.length]; // null = not filtered
+
+    /**
+     * Smoother with the same parameters for the three angles (degrees) and for the three angular
+     * velocities (rad/s), or null when both min-cutoffs are 0 (smoothing off).
+     * A min-cutoff of 0 leaves that group unfiltered.
+     */
+    public static SampleSmoother createOrNull(float angleMinCutoffHz, float angleBeta,
+                                              float velocityMinCutoffHz, float velocityBeta) {
+        if (!(angleMinCutoffHz > 0f) && !(velocityMinCutoffHz > 0f)) return null;
+        SampleSmoother smoother = new SampleSmoother();
+        smoother.set(Field.PITCH, angleMinCutoffHz, angleBeta);
+        smoother.set(Field.ROLL, angleMinCutoffHz, angleBeta);
+        smoother.set(Field.YAW, angleMinCutoffHz, angleBeta);
+        smoother.set(Field.VEL_YAW, velocityMinCutoffHz, velocityBeta);
+        smoother.set(Field.VEL_PITCH, velocityMinCutoffHz, velocityBeta);
+        smoother.set(Field.VEL_ROLL, velocityMinCutoffHz, velocityBeta);
+        return smoother;
+    }
+
+    /**
+     * Sets the filter of one field; a min-cutoff of 0 turns it off. Beta is in Hz per degree/s for
+     * the angles and per rad/s² for the angular velocities. Call before the pipeline starts.
+     * @return this, for chaining
+     */
+    public SampleSmoother set(Field field, float minCutoffHz, float beta) {
+        filters[field.ordinal()] = minCutoffHz > 0f
+                ? new OneEuroFilter(minCutoffHz, Math.max(0f, beta), field.wrapsAt180)
+                : null;
+        return this;
+    }
+
+    public boolean isFiltered(Field field) {
+        return filters[field.ordinal()] != null;
+    }
+
+    /** Smooths the sample's fields in place, at sample.timestampNanos. */
+    public void apply(NithSample sample) {
+        long t = sample.timestampNanos;
+        sample.pitch = filter(Field.PITCH, sample.pitch, t);
+        sample.roll = filter(Field.ROLL, sample.roll, t);
+        if (sample.hasYaw) {
+            sample.yaw = filter(Field.YAW, sample.yaw, t);
+        }
+        sample.velYaw = filter(Field.VEL_YAW, sample.velYaw, t);
+        sample.velPitch = filter(Field.VEL_PITCH, sample.velPitch, t);
+        sample.velRoll = filter(Field.VEL_ROLL, sample.velRoll, t);
+    }
+
+    /** Forgets all filter histories. */
+    public void reset() {
+        for (OneEuroFilter filter : filters) {
+            if (filter != null) filter.reset();
+        }
+    }
+
+    private float filter(Field field, float value, long timestampNanos) {
+        OneEuroFilter filter = filters[field.ordinal()];
+        return filter == null ? value : filter.filter(value, timestampNanos);
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.nithphonewrapper;
+
+import android.view.Choreographer;
+import android.widget.TextView;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Frame-coalesced updater for the live sensor readout.
+ * The sensor thread publishes the latest values; at most one Choreographer frame callback is pending,
+ * and it renders only the newest sample into reused char buffers. When nothing new arrives, no frame
+ * callback is scheduled, so a stopped updater (tracking off, activity paused / screen off) costs nothing.
+ * Likewise, once a frame finds the readout hidden, no more frames are scheduled until {@link #resume()}.
+ */
+public class SensorReadoutUpdater implements Choreographer.FrameCallback, HeadTrackingPipeline.Readout {
+
+    private final TextView tvSensorData;
+    private final TextView tvAngularRate;
+    private final Choreographer choreographer;
+
+    // Latest published values (written by the sensor thread, read on the UI thread)
+    private volatile float pitch, roll;
+    private volatile float velYaw, velPitch, velRoll;
+
+    private volatile boolean enabled = false;
+    // Cleared by pause() or by a frame that finds the readout hidden; set again by resume()
+    private volatile boolean visible = true;
+    private final AtomicBoolean frameScheduled = new AtomicBoolean(false);
+
+    // Reused display buffers (UI thread only)
+    private final char[] orientationText = new char[128];
+    private final char[] angularRateText = new char[192];
+
+    private static final char[] LABEL_PITCH = "Pitch: ".toCharArray();
+    private static final char[] LABEL_ROLL = "°\nRoll: ".toCharArray();
+    private static final char[] UNIT_DEGREES = "°".toCharArray();
+    private static final char[] LABEL_VEL_YAW = "ω_y: ".toCharArray();
+    private static final char[] LABEL_VEL_PITCH = " rad/s\nω_p: ".toCharArray();
+    private static final char[] LABEL_VEL_ROLL = " rad/s\nω_r: ".toCharArray();
+    private static final char[] UNIT_RAD_S = " rad/s".toCharArray();
+
+    /** Must be created on the UI thread (uses its Choreographer). */
+    public SensorReadoutUpdater(TextView tvSensorData, TextView tvAngularRate) {
+        this.tvSensorData = tvSensorData;
+        this.tvAngularRate = tvAngularRate;
+        this.choreographer = Choreographer.getInstance();
+    }
+
+    public void start() {
+        enabled = true;
+    }
+
+    /** Stops rendering and cancels any pending frame. Call from the UI thread. */
+    public void stop() {
+        enabled = false;
+        cancelFrame();
+    }
+
+    /** Stops scheduling frames while the activity is not visible; call from onPause. */
+    public void pause() {
+        visible = false;
+        cancelFrame();
+    }
+
+    /** Schedules frames again for new samples; call from onResume. */
+    public void resume() {
+        visible = true;
+    }
+
+    private void cancelFrame() {
+        choreographer.removeFrameCallback(this);
+        frameScheduled.set(false);
+    }
+
+    /**
+     * Called from the sensor thread for every sample. Never touches views; schedules one frame at most.
+     */
+    @Override
+    public void publish(float pitch, float roll, float velYaw, float velPitch, float velRoll) {
+        if (!enabled || !visible) return;
+        this.pitch = pitch;
+        this.roll = roll;
+        this.velYaw = velYaw;
+        this.velPitch = velPitch;
+        this.velRoll = velRoll;
+        if (frameScheduled.compareAndSet(false, true)) {
+            choreographer.postFrameCallback(this);
+        }
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        frameScheduled.set(false);
+        if (!enabled) return;
+        if (!tvSensorData.isShown()) {
+            // Hidden readout: stop re-arming the callback until the next resume()
+            visible = false;
+            return;
+        }
+
+        int len = append(LABEL_PITCH, orientationText, 0);
+        len = FixedPoint.format(pitch, 1, orientationText, len);
+        len = append(LABEL_ROLL, orientationText, len);
+        len = FixedPoint.format(roll, 1, orientationText, len);
+        len = append(UNIT_DEGREES, orientationText, len);
+        tvSensorData.setText(orientationText, 0, len);
+
+        len = append(LABEL_VEL_YAW, angularRateText, 0);
+        len = FixedPoint.format(velYaw, 2, angularRateText, len);
+        len = append(LABEL_VEL_PITCH, angularRateText, len);
+        len = FixedPoint.format(velPitch, 2, angularRateText, len);
+        len = append(LABEL_VEL_ROLL, angularRateText, len);
+        len = FixedPoint.format(velRoll, 2, angularRateText, len);
+        len = append(UNIT_RAD_S, angularRateText, len);
+        tvAngularRate.setText(angularRateText, 0, len);
+    }
+
+    private static int append(char[] src, char[] dst, int pos) {
+        System.arraycopy(src, 0, dst, pos, src.length);
+        return pos + src.length;
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.nithphonewrapper;
+
+/**
+ * Source of raw sensor events for the tracking pipeline: the phone's sensors
+ * ({@link AndroidSensorSource}) or a recorded/synthetic trace ({@link ReplaySensorSource}).
+ */
+public interface SensorSource {
+
+    // Same values as android.hardware.Sensor.TYPE_*
+    int TYPE_ACCELEROMETER = 1;
+    int TYPE_MAGNETIC_FIELD = 2;
+    int TYPE_GYROSCOPE = 4;
+    int TYPE_ROTATION_VECTOR = 11;
+
+    /** Receives events on the source's delivery thread, one at a time. */
+    interface Listener {
+        /**
+         * @param values only the first valueCount entries are valid; the array is reused after the call returns
+         */
+        void onSensorEvent(int type, long timestampNanos, float[] values, int valueCount, int accuracy);
+    }
+
+    void start(Listener listener);
+
+    /** Stops delivery and waits for a callback in progress; no events are delivered once this returns. */
+    void stop();
+}
@@ -0,0 +1,57 @@
+package com.example.nithphonewrapper;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+
+/**
+ * Dedicated high-priority looper thread for sensor callbacks.
+ * Registering listeners with {@link #getHandler()} keeps sensor processing and packet building off the
+ * UI thread, so layout passes and touch handling can't delay outgoing samples.
+ */
+public class SensorThread {
+
+    private static final String NAME = "NITH-Sensors";
+
+    private HandlerThread thread;
+    private Handler handler;
+
+    /** Starts the thread if needed and returns a handler bound to its looper. */
+    public synchronized Handler start() {
+        if (thread == null) {
+            thread = new HandlerThread(NAME, Process.THREAD_PRIORITY_URGENT_DISPLAY);
+            thread.start();
+            handler = new Handler(thread.getLooper());
+        }
+        return handler;
+    }
+
+    public synchronized Handler getHandler() {
+        return handler;
+    }
+
+    /**
+     * Stops the thread after already-queued callbacks have run, and waits for it to end, so no
+     * callback is still running once this returns. Unregister the sensor listeners first.
+     */
+    public synchronized void quit() {
+        HandlerThread t = thread;
+        if (t == null) return;
+        thread = null;
+        handler = null;
+        t.quitSafely();
+        if (Thread.currentThread() == t) return; // called from a callback: it ends when that returns
+        boolean interrupted = false;
+        while (t.isAlive()) {
+            try {
+                t.join();
+            } catch (InterruptedException e) {
+                // Keep waiting: returning early would let a callback outlive the caller's cleanup
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.nithphonewrapper;
+
+import java.util.Arrays;
+
+/**
+ * In-memory sequence of raw sensor events (type, timestamp, values, accuracy), stored column by
+ * column so replaying it does not allocate. Built from a recording or {@link #synthetic generated}.
+ */
+public final class SensorTrace {
+
+    /** Rotation vectors have up to 5 values (x, y, z, w, heading accuracy). */
+    public static final int MAX_VALUES = 5;
+
+    private int size;
+    private int[] types;
+    private long[] timestamps;
+    private float[] values;
+    private int[] valueCounts;
+    private int[] accuracies;
+
+    public SensorTrace() {
+        this(256);
+    }
+
+    public SensorTrace(int initialCapacity) {
+        int capacity = Math.max(1, initialCapacity);
+        types = new int[capacity];
+        timestamps = new long[capacity];
+        values = new float[capacity * MAX_VALUES];
+        valueCounts = new int[capacity];
+        accuracies = new int[capacity];
+    }
+
+    /** Appends an event; values beyond {@link #MAX_VALUES} are dropped. */
+    public void add(int type, long timestampNanos, float[] eventValues, int valueCount, int accuracy) {
+        if (size == types.length) {
+            int capacity = size * 2;
+            types = Arrays.copyOf(types, capacity);
+            timestamps = Arrays.copyOf(timestamps, capacity);
+            values = Arrays.copyOf(values, capacity * MAX_VALUES);
+            valueCounts = Arrays.copyOf(valueCounts, capacity);
+            accuracies = Arrays.copyOf(accuracies, capacity);
+        }
+        int count = Math.min(valueCount, MAX_VALUES);
+        types[size] = type;
+        timestamps[size] = timestampNanos;
+        System.arraycopy(eventValues, 0, values, size * MAX_VALUES, count);
+        valueCounts[size] = count;
+        accuracies[size] = accuracy;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int type(int index) {
+        return types[index];
+    }
+
+    public long timestampNanos(int index) {
+        return timestamps[index];
+    }
+
+    public int valueCount(int index) {
+        return valueCounts[index];
+    }
+
+    public float value(int index, int component) {
+        return values[index * MAX_VALUES + component];
+    }
+
+    public int accuracy(int index) {
+        return accuracies[index];
+    }
+
+    /** Copies the event's values into out (at least {@link #MAX_VALUES} long) and returns their count. */
+    public int copyValues(int index, float[] out) {
+        int count = valueCounts[index];
+        System.arraycopy(values, index * MAX_VALUES, out, 0, count);
+        return count;
+    }
+
+    /**
+     * Smooth synthetic head motion: pitch nodding +-20 degrees at 0.5 Hz and roll tilting
+     * +-10 degrees at 0.3 Hz, as rotation-vector events at rotationVectorRateHz and matching
+     * gyroscope events at gyroscopeRateHz, starting at timestamp 0.
+     */
+    public static SensorTrace synthetic(double rotationVectorRateHz, double gyroscopeRateHz, long durationNanos) {
+        double seconds = durationNanos / 1e9;
+        SensorTrace trace = new SensorTrace((int) (seconds * (rotationVectorRateHz + gyroscopeRateHz)) + 2);
+        long rvPeriod = (long) (1e9 / rotationVectorRateHz);
+        long gyroPeriod = (long) (1e9 / gyroscopeRateHz);
+        float[] v = new float[MAX_VALUES];
+        long nextRv = 0;
+        long nextGyro = 0;
+        while (nextRv < durationNanos || nextGyro < durationNanos) {
+            boolean rvFirst = nextRv < durationNanos && (nextRv <= nextGyro || nextGyro >= durationNanos);
+            long t = rvFirst ? nextRv : nextGyro;
+            double s = t / 1e9;
+            // Rotation about x by a, then about y by b: pitch = -a, roll = b (see OrientationMath)
+            double a = -Math.toRadians(20) * Math.sin(2 * Math.PI * 0.5 * s);
+            double b = Math.toRadians(10) * Math.sin(2 * Math.PI * 0.3 * s);
+            if (rvFirst) {
+                double sa = Math.sin(a / 2), ca = Math.cos(a / 2);
+                double sb = Math.sin(b / 2), cb = Math.cos(b / 2);
+                v[0] = (float) (sa * cb);
+                v[1] = (float) (ca * sb);
+                v[2] = (float) (sa * sb);
+                v[3] = (float) (ca * cb);
+                v[4] = 0f;
+                trace.add(SensorSource.TYPE_ROTATION_VECTOR, t, v, 5, 3);
+                nextRv += rvPeriod;
+            } else {
+                v[0] = (float) (-Math.toRadians(20) * 2 * Math.PI * 0.5 * Math.cos(2 * Math.PI * 0.5 * s));
+                v[1] = (float) (Math.toRadians(10) * 2 * Math.PI * 0.3 * Math.cos(2 * Math.PI * 0.3 * s));
+                v[2] = 0f;
+                trace.add(SensorSource.TYPE_GYROSCOPE, t, v, 3, 3);
+                nextGyro += gyroPeriod;
+            }
+        }
+        return trace;
+    }
+}
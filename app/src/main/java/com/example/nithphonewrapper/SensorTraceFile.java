@@ -0,0 +1,125 @@
+package com.example.nithphonewrapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Binary sensor trace file, written by {@link SensorTraceRecorder} and read back into a
+ * {@link SensorTrace}. All values are little-endian.
+ *
+ * <pre>
+ * Header (32 bytes)
+ *   0  byte[8] magic        "NITHTRC1"
+ *   8  int32   version      1
+ *  12  int32   recordSize   40
+ *  16  int64   eventCount   number of valid records, updated after every record
+ *  24  int64   createdMillis  wall-clock time the recording started (System.currentTimeMillis)
+ *
+ * Record (40 bytes), eventCount of them starting at offset 32
+ *   0  int32    type             android.hardware.Sensor.TYPE_*
+ *   4  int32    accuracy         SensorEvent.accuracy
+ *   8  int64    timestampNanos   SensorEvent.timestamp (elapsedRealtimeNanos base)
+ *  16  int32    valueCount       0..5
+ *  20  float32[5] values         SensorEvent.values, unused entries are 0
+ * </pre>
+ *
+ * The file is preallocated, so it is usually longer than 32 + eventCount * 40 bytes; anything
+ * after the last valid record is zero and ignored.
+ */
+public final class SensorTraceFile {
+
+    public static final byte[] MAGIC = "NITHTRC1".getBytes(StandardCharsets.US_ASCII);
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 32;
+    public static final int RECORD_SIZE = 40;
+
+    static final int VERSION_OFFSET = 8;
+    static final int RECORD_SIZE_OFFSET = 12;
+    static final int EVENT_COUNT_OFFSET = 16;
+    static final int CREATED_OFFSET = 24;
+
+    static final int TYPE_OFFSET = 0;
+    static final int ACCURACY_OFFSET = 4;
+    static final int TIMESTAMP_OFFSET = 8;
+    static final int VALUE_COUNT_OFFSET = 16;
+    static final int VALUES_OFFSET = 20;
+
+    private SensorTraceFile() {
+    }
+
+    /** File size for a recording of up to maxEvents events. */
+    public static long fileSize(int maxEvents) {
+        return HEADER_SIZE + (long) maxEvents * RECORD_SIZE;
+    }
+
+    /**
+     * Reads a trace file into memory.
+     * @throws IOException if the file can't be read or is not a version 1 trace
+     */
+    public static SensorTrace read(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE) {
+                throw new IOException("Not a sensor trace (too short): " + file);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            for (int i = 0; i < MAGIC.length; i++) {
+                if (buffer.get(i) != MAGIC[i]) {
+                    throw new IOException("Not a sensor trace (bad magic): " + file);
+                }
+            }
+            int version = buffer.getInt(VERSION_OFFSET);
+            int recordSize = buffer.getInt(RECORD_SIZE_OFFSET);
+            if (version != VERSION || recordSize != RECORD_SIZE) {
+                throw new IOException("Unsupported sensor trace version " + version + "/" + recordSize + ": " + file);
+            }
+            long available = (size - HEADER_SIZE) / RECORD_SIZE;
+            long count = buffer.getLong(EVENT_COUNT_OFFSET);
+            if (count < 0 || count > available) {
+                throw new IOException("Corrupt sensor trace (" + count + " events, room for " + available + "): " + file);
+            }
+
+            SensorTrace trace = new SensorTrace((int) count);
+            float[] values = new float[SensorTrace.MAX_VALUES];
+            for (int i = 0; i < count; i++) {
+                int record = HEADER_SIZE + i * RECORD_SIZE;
+                int valueCount = Math.min(Math.max(buffer.getInt(record + VALUE_COUNT_OFFSET), 0), SensorTrace.MAX_VALUES);
+                for (int v = 0; v < valueCount; v++) {
+                    values[v] = buffer.getFloat(record + VALUES_OFFSET + v * 4);
+                }
+                trace.add(buffer.getInt(record + TYPE_OFFSET), buffer.getLong(record + TIMESTAMP_OFFSET),
+                        values, valueCount, buffer.getInt(record + ACCURACY_OFFSET));
+            }
+            return trace;
+        }
+    }
+
+    /** Wall-clock start time stored in the header of a trace file. */
+    public static long readCreatedMillis(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE) {
+                throw new IOException("Not a sensor trace (too short): " + file);
+            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE)
+                    .order(ByteOrder.LITTLE_ENDIAN)
+                    .getLong(CREATED_OFFSET);
+        }
+    }
+
+    /** Writes an in-memory trace (e.g. a synthetic one) to a file in the same format. */
+    public static void write(SensorTrace trace, File file) throws IOException {
+        float[] values = new float[SensorTrace.MAX_VALUES];
+        try (SensorTraceRecorder recorder = new SensorTraceRecorder(file, trace.size())) {
+            for (int i = 0; i < trace.size(); i++) {
+                int count = trace.copyValues(i, values);
+                recorder.onSensorEvent(trace.type(i), trace.timestampNanos(i), values, count, trace.accuracy(i));
+            }
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.nithphonewrapper;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Appends raw sensor events to a preallocated, memory-mapped {@link SensorTraceFile}.
+ *
+ * The file is sized and mapped up front, so recording an event is a handful of absolute puts into
+ * the mapping: no allocation and no system call on the sensor thread, only an uncontended lock. The
+ * kernel writes the pages back in the background. Once the file is full further events are counted
+ * as dropped.
+ *
+ * Single writer: {@link #onSensorEvent} must only be called from one thread (the sensor thread).
+ * The lock makes {@link #close} safe while that thread is still writing: a write either finishes
+ * before the file is closed or is ignored, so the trace is never left with a torn record.
+ */
+public class SensorTraceRecorder implements SensorSource.Listener, Closeable {
+
+    /** About 15 minutes of rotation vector plus gyroscope at 250 Hz each (20 MB). */
+    public static final int DEFAULT_MAX_EVENTS = 500_000;
+
+    private final File file;
+    private final int maxEvents;
+    private final RandomAccessFile raf;
+    private final MappedByteBuffer buffer;
+
+    // Guards the mapping and the closed flag against a close() during a write
+    private final Object lock = new Object();
+
+    // Sensor thread writes, any thread reads
+    private volatile int eventCount = 0;
+    private volatile long droppedCount = 0;
+    private volatile boolean closed = false;
+
+    /**
+     * Creates (or overwrites) the file, sized for maxEvents events, and maps it.
+     */
+    public SensorTraceRecorder(File file, int maxEvents) throws IOException {
+        if (maxEvents <= 0) {
+            throw new IllegalArgumentException("maxEvents must be positive: " + maxEvents);
+        }
+        this.file = file;
+        this.maxEvents = maxEvents;
+        raf = new RandomAccessFile(file, "rw");
+        try {
+            long size = SensorTraceFile.fileSize(maxEvents);
+            raf.setLength(0);
+            raf.setLength(size);
+            buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        } catch (IOException | RuntimeException e) {
+            raf.close();
+            throw e;
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < SensorTraceFile.MAGIC.length; i++) {
+            buffer.put(i, SensorTraceFile.MAGIC[i]);
+        }
+        buffer.putInt(SensorTraceFile.VERSION_OFFSET, SensorTraceFile.VERSION);
+        buffer.putInt(SensorTraceFile.RECORD_SIZE_OFFSET, SensorTraceFile.RECORD_SIZE);
+        buffer.putLong(SensorTraceFile.EVENT_COUNT_OFFSET, 0);
+        buffer.putLong(SensorTraceFile.CREATED_OFFSET, System.currentTimeMillis());
+    }
+
+    @Override
+    public void onSensorEvent(int type, long timestampNanos, float[] values, int valueCount, int accuracy) {
+        synchronized (lock) {
+            if (!closed) {
+                write(type, timestampNanos, values, valueCount, accuracy);
+            }
+        }
+    }
+
+    private void write(int type, long timestampNanos, float[] values, int valueCount, int accuracy) {
+        int index = eventCount;
+        if (index >= maxEvents) {
+            droppedCount++; // single writer
+            return;
+        }
+        int record = SensorTraceFile.HEADER_SIZE + index * SensorTraceFile.RECORD_SIZE;
+        int count = Math.min(valueCount, SensorTrace.MAX_VALUES);
+        buffer.putInt(record + SensorTraceFile.TYPE_OFFSET, type);
+        buffer.putInt(record + SensorTraceFile.ACCURACY_OFFSET, accuracy);
+        buffer.putLong(record + SensorTraceFile.TIMESTAMP_OFFSET, timestampNanos);
+        buffer.putInt(record + SensorTraceFile.VALUE_COUNT_OFFSET, count);
+        for (int v = 0; v < count; v++) {
+            buffer.putFloat(record + SensorTraceFile.VALUES_OFFSET + v * 4, values[v]);
+        }
+        // Count last, so a reader (or a crash) never sees a half-written record
+        buffer.putLong(SensorTraceFile.EVENT_COUNT_OFFSET, index + 1);
+        eventCount = index + 1;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public int getEventCount() {
+        return eventCount;
+    }
+
+    public long getDroppedCount() {
+        return droppedCount;
+    }
+
+    public boolean isFull() {
+        return eventCount >= maxEvents;
+    }
+
+    /**
+     * Flushes the mapping to storage and closes the file. The file keeps its preallocated size;
+     * readers use the event count from the header. Waits for a write in progress; events arriving
+     * afterwards are ignored.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (lock) {
+            if (closed) return;
+            closed = true;
+            try {
+                buffer.force();
+            } finally {
+                raf.close();
+            }
+        }
+    }
+}
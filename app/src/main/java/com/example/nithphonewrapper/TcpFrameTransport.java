@@ -0,0 +1,206 @@
+package com.example.nithphonewrapper;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * TCP transport for wired links: one connection with TCP_NODELAY (no Nagle delay on small frames),
+ * each frame preceded by its length as a little-endian uint32, like the binary frame fields.
+ * Over USB, "adb reverse tcp:PORT tcp:PORT" lets the phone reach a PC server at 127.0.0.1:PORT.
+ *
+ * The connection is opened on the first send and reopened after a failure, at most once per
+ * reconnect interval; frames arriving while disconnected are skipped (counted, not thrown), so a
+ * missing server does not turn every sample into a send error.
+ *
+ * Writes never block: the socket has a small send buffer and is non-blocking once connected. A
+ * frame the buffer cannot take completely keeps its remainder pending, finished by the next sends;
+ * new frames arriving while it is pending are dropped (counted), so a slow reader loses frames
+ * instead of letting them queue up and arrive ever later. Called from the sender thread only,
+ * except {@link #close}.
+ */
+public class TcpFrameTransport implements FrameTransport, Closeable {
+
+    public static final String METRIC_WRITE = "latency.tcp_write";
+    public static final String METRIC_CONNECTS = "tcp.connects";
+    public static final String METRIC_SKIPPED = "tcp.skipped_frames";
+    public static final String METRIC_DROPPED = "tcp.dropped_frames";
+
+    public static final int LENGTH_PREFIX_BYTES = 4;
+    private static final int DEFAULT_BUFFER_SIZE = 2048;
+    private static final int CONNECT_TIMEOUT_MS = 1000;
+    // Bounds the queueing delay: tens of milliseconds of frames at the usual output rates
+    static final int SEND_BUFFER_SIZE = 8192;
+
+    private final InetSocketAddress server;
+    private final long reconnectIntervalNanos;
+    private final OutputClock.TimeSource timeSource;
+
+    // Guards channel and closed against a close() while connect() blocks on another thread
+    private final Object lock = new Object();
+    private volatile SocketChannel channel;
+    private boolean attempted = false;
+    private long lastAttemptNanos;
+    // Holds the unsent remainder of the last frame, empty (no remaining bytes) when none is pending
+    private ByteBuffer directBuffer = emptyBuffer(DEFAULT_BUFFER_SIZE);
+    private volatile boolean closed = false;
+
+    private final AtomicLong connects = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    // Optional, null until setMetrics()
+    private volatile LatencyHistogram writeLatency;
+
+    /**
+     * @param reconnectIntervalMs minimum time between connection attempts
+     */
+    public TcpFrameTransport(InetSocketAddress server, long reconnectIntervalMs, OutputClock.TimeSource timeSource) {
+        if (reconnectIntervalMs <= 0) {
+            throw new IllegalArgumentException("Reconnect interval must be positive: " + reconnectIntervalMs);
+        }
+        this.server = server;
+        this.reconnectIntervalNanos = TimeUnit.MILLISECONDS.toNanos(reconnectIntervalMs);
+        this.timeSource = timeSource;
+    }
+
+    /**
+     * Records the duration of each frame's write and exposes the connect, skipped and dropped
+     * counts as gauges.
+     */
+    public void setMetrics(MetricsRegistry registry) {
+        registry.gauge(METRIC_CONNECTS, this::getConnectCount);
+        registry.gauge(METRIC_SKIPPED, this::getSkippedCount);
+        registry.gauge(METRIC_DROPPED, this::getDroppedCount);
+        writeLatency = registry.histogram(METRIC_WRITE);
+    }
+
+    @Override
+    public void send(byte[] buffer, int length) throws IOException {
+        SocketChannel c = channel;
+        if (c == null) {
+            if (!connect()) {
+                skipped.incrementAndGet();
+                return;
+            }
+            c = channel;
+        }
+        LatencyHistogram histogram = writeLatency;
+        long start = histogram != null ? timeSource.nanoTime() : 0;
+        try {
+            // Finish the previous frame first; while the reader is behind, this frame is dropped
+            if (directBuffer.hasRemaining()) {
+                c.write(directBuffer);
+                if (directBuffer.hasRemaining()) {
+                    dropped.incrementAndGet();
+                    return;
+                }
+            }
+            if (length + LENGTH_PREFIX_BYTES > directBuffer.capacity()) {
+                directBuffer = emptyBuffer(Math.max(length + LENGTH_PREFIX_BYTES, directBuffer.capacity() * 2));
+            }
+            directBuffer.clear();
+            directBuffer.putInt(length);
+            directBuffer.put(buffer, 0, length);
+            directBuffer.flip();
+            c.write(directBuffer);
+        } catch (IOException e) {
+            // Peer gone: drop the connection, the next send reconnects after the interval
+            disconnect();
+            throw e;
+        }
+        if (histogram != null) {
+            histogram.record(timeSource.nanoTime() - start);
+        }
+    }
+
+    private static ByteBuffer emptyBuffer(int capacity) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(capacity).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.limit(0);
+        return buffer;
+    }
+
+    // Returns false while waiting for the next attempt; throws if an attempt fails
+    private boolean connect() throws IOException {
+        long now = timeSource.nanoTime();
+        if (closed || (attempted && now - lastAttemptNanos < reconnectIntervalNanos)) {
+            return false;
+        }
+        attempted = true;
+        lastAttemptNanos = now;
+        SocketChannel opened = SocketChannel.open();
+        try {
+            opened.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            opened.setOption(StandardSocketOptions.SO_SNDBUF, SEND_BUFFER_SIZE);
+            // The timed connect needs blocking mode; writes are non-blocking afterwards
+            opened.socket().connect(server, CONNECT_TIMEOUT_MS);
+            opened.configureBlocking(false);
+        } catch (IOException e) {
+            opened.close();
+            throw e;
+        }
+        synchronized (lock) {
+            if (closed) {
+                // close() ran during the connect: nobody would close this socket later
+                opened.close();
+                return false;
+            }
+            channel = opened;
+        }
+        directBuffer.clear().limit(0); // a remainder from the old connection is not sent on this one
+        connects.incrementAndGet();
+        return true;
+    }
+
+    private void disconnect() {
+        SocketChannel c;
+        synchronized (lock) {
+            c = channel;
+            channel = null;
+        }
+        if (c != null) {
+            try {
+                c.close();
+            } catch (IOException ignored) {
+                // Nothing left to release
+            }
+        }
+    }
+
+    public boolean isConnected() {
+        SocketChannel c = channel;
+        return c != null && c.isConnected();
+    }
+
+    /** Successful connections, including the first one. */
+    public long getConnectCount() {
+        return connects.get();
+    }
+
+    /** Frames not sent because there was no connection. */
+    public long getSkippedCount() {
+        return skipped.get();
+    }
+
+    /** Frames not sent because the reader had not yet taken the previous one. */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * Closes the connection. Safe while the sender thread is still connecting: a connection
+     * that completes afterwards is closed at once.
+     */
+    @Override
+    public void close() {
+        synchronized (lock) {
+            closed = true;
+        }
+        disconnect();
+    }
+}
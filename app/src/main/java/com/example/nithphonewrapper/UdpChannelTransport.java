@@ -0,0 +1,121 @@
+package com.example.nithphonewrapper;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.Inet4Address;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * UDP transport on a connected {@link DatagramChannel}, writing from a reused direct buffer.
+ * Connecting once means no DatagramPacket per send and no per-send address/permission checks.
+ *
+ * The channel is only touched by the sender thread: target changes (e.g. a discovery reply while
+ * tracking) are published with {@link #setTarget} and applied before the next send.
+ * If the receiver is unreachable, send() throws PortUnreachableException like DatagramSocket did.
+ *
+ * The multicast constructor sends to a group instead, so any number of listeners that joined it get
+ * each frame from a single transmission; the send path is otherwise the same.
+ */
+public class UdpChannelTransport implements FrameTransport, Closeable {
+
+    private static final int DEFAULT_BUFFER_SIZE = 2048;
+    public static final int MAX_MULTICAST_TTL = 255;
+
+    private final DatagramChannel channel;
+    private ByteBuffer directBuffer = ByteBuffer.allocateDirect(DEFAULT_BUFFER_SIZE);
+
+    private final AtomicReference<InetSocketAddress> pendingTarget = new AtomicReference<>();
+    private volatile InetSocketAddress target;
+
+    public UdpChannelTransport(InetSocketAddress target) throws IOException {
+        channel = DatagramChannel.open();
+        pendingTarget.set(target);
+    }
+
+    /**
+     * Sends to a multicast group.
+     * @param ttl hops the datagrams may cross: 1 stays on the local network, 0 on this host
+     * @param multicastInterface outgoing interface, or null for the system's default
+     */
+    public UdpChannelTransport(InetSocketAddress group, int ttl, NetworkInterface multicastInterface) throws IOException {
+        if (group.getAddress() == null || !group.getAddress().isMulticastAddress()) {
+            throw new IllegalArgumentException("Not a multicast group: " + group);
+        }
+        if (ttl < 0 || ttl > MAX_MULTICAST_TTL) {
+            throw new IllegalArgumentException("Multicast TTL must be 0-" + MAX_MULTICAST_TTL + ": " + ttl);
+        }
+        channel = DatagramChannel.open(group.getAddress() instanceof Inet4Address
+                ? StandardProtocolFamily.INET : StandardProtocolFamily.INET6);
+        try {
+            channel.setOption(StandardSocketOptions.IP_MULTICAST_TTL, ttl);
+            if (multicastInterface != null) {
+                channel.setOption(StandardSocketOptions.IP_MULTICAST_IF, multicastInterface);
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+        pendingTarget.set(group);
+    }
+
+    /** Changes the destination; takes effect on the next send. */
+    public void setTarget(InetSocketAddress target) {
+        pendingTarget.set(target);
+    }
+
+    public InetSocketAddress getTarget() {
+        InetSocketAddress pending = pendingTarget.get();
+        return pending != null ? pending : target;
+    }
+
+    @Override
+    public void send(byte[] buffer, int length) throws IOException {
+        InetSocketAddress pending = pendingTarget.get();
+        if (pending != null && pendingTarget.compareAndSet(pending, null)) {
+            connect(pending);
+        }
+        if (length > directBuffer.capacity()) {
+            directBuffer = ByteBuffer.allocateDirect(Math.max(length, directBuffer.capacity() * 2));
+        }
+        directBuffer.clear();
+        directBuffer.put(buffer, 0, length);
+        directBuffer.flip();
+        channel.write(directBuffer);
+    }
+
+    private void connect(InetSocketAddress newTarget) throws IOException {
+        if (newTarget.equals(target)) {
+            return;
+        }
+        try {
+            if (channel.isConnected()) {
+                channel.disconnect();
+            }
+            channel.connect(newTarget);
+            target = newTarget;
+        } catch (IOException e) {
+            // Retry on the next send unless a newer target was set meanwhile
+            pendingTarget.compareAndSet(null, newTarget);
+            throw e;
+        }
+    }
+
+    public boolean isOpen() {
+        return channel.isOpen();
+    }
+
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // Nothing left to release
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package com.example.nithphonewrapper;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * UDP transport to a set of receivers: each frame is copied once into a reused direct buffer and
+ * written to every receiver, so the sender encodes a sample once however many consumers listen.
+ *
+ * Like {@link UdpChannelTransport}, each receiver has its own connected {@link DatagramChannel},
+ * which also makes an unreachable receiver show up as a PortUnreachableException on its writes.
+ * Such errors only fail every other write (each ICMP reply is reported once), so a receiver is
+ * removed once it has kept failing for the error timeout, with no gap between errors that long.
+ * A pinned receiver (the one the user configured) is never removed for errors, and a receiver that
+ * goes silent without failing writes stays until {@link #remove} is called.
+ *
+ * Receivers are only touched by the sender thread: {@link #add} and {@link #remove} may be called
+ * from any thread and take effect on the next send.
+ */
+public class UdpFanOutTransport implements FrameTransport, Closeable {
+
+    /**
+     * Called on the sender thread when a receiver is dropped after failing for the error timeout,
+     * or could not be added because its channel failed to open.
+     */
+    public interface RemovalListener {
+        void onReceiverRemoved(InetSocketAddress address, IOException lastError);
+    }
+
+    /** One destination with its own counters; read them from any thread. */
+    public static final class Receiver {
+        public final InetSocketAddress address;
+        final DatagramChannel channel;
+        private volatile long sentCount;
+        private volatile long errorCount;
+        // Sender thread only: start of the current run of errors, or NOT_FAILING, and its last error
+        long failingSinceNanos = NOT_FAILING;
+        long lastErrorNanos;
+        boolean pinned;
+
+        Receiver(InetSocketAddress address, DatagramChannel channel) {
+            this.address = address;
+            this.channel = channel;
+        }
+
+        public long getSentCount() {
+            return sentCount;
+        }
+
+        public long getErrorCount() {
+            return errorCount;
+        }
+    }
+
+    public static final String METRIC_RECEIVERS = "transport.receivers";
+    public static final String METRIC_REMOVED = "transport.receivers_removed";
+    public static final String METRIC_NO_RECEIVERS = "transport.frames_without_receivers";
+
+    private static final long NOT_FAILING = Long.MIN_VALUE;
+    private static final int DEFAULT_BUFFER_SIZE = 2048;
+
+    private final long errorTimeoutNanos;
+    private final OutputClock.TimeSource timeSource;
+    private final RemovalListener removalListener;
+    private final ConcurrentLinkedQueue<InetSocketAddress> pendingAdds = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<InetSocketAddress> pendingPins = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<InetSocketAddress> pendingRemovals = new ConcurrentLinkedQueue<>();
+    private final AtomicLong removed = new AtomicLong();
+    private final AtomicLong framesWithoutReceivers = new AtomicLong();
+    // Thrown for every frame while the set is empty, so it is created once
+    private final IOException noReceivers = new IOException("No receivers");
+    private ByteBuffer directBuffer = ByteBuffer.allocateDirect(DEFAULT_BUFFER_SIZE);
+
+    // Replaced (not modified) by the sender thread, so other threads can read a consistent snapshot
+    private volatile Receiver[] receivers = new Receiver[0];
+    private volatile boolean closed = false;
+
+    /**
+     * @param errorTimeoutMs how long a receiver may keep failing before it is removed
+     * @param removalListener may be null
+     */
+    public UdpFanOutTransport(long errorTimeoutMs, OutputClock.TimeSource timeSource,
+                              RemovalListener removalListener) {
+        if (errorTimeoutMs <= 0) {
+            throw new IllegalArgumentException("Error timeout must be positive: " + errorTimeoutMs);
+        }
+        this.errorTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(errorTimeoutMs);
+        this.timeSource = timeSource;
+        this.removalListener = removalListener;
+    }
+
+    /** Adds a receiver; adding one that is already in the set keeps its counters. */
+    public void add(InetSocketAddress address) {
+        pendingAdds.add(address);
+    }
+
+    /**
+     * Adds a receiver that is kept however long its writes fail, e.g. the configured target;
+     * only {@link #remove} takes it out. Pins the receiver if it is already in the set.
+     */
+    public void addPinned(InetSocketAddress address) {
+        pendingAdds.add(address);
+        pendingPins.add(address);
+    }
+
+    public void remove(InetSocketAddress address) {
+        pendingRemovals.add(address);
+    }
+
+    /** Snapshot of the current receivers (changes made since the last send not included). */
+    public List<Receiver> getReceivers() {
+        return Collections.unmodifiableList(Arrays.asList(receivers));
+    }
+
+    public long getRemovedCount() {
+        return removed.get();
+    }
+
+    /** Frames not sent because the set was empty. */
+    public long getFramesWithoutReceivers() {
+        return framesWithoutReceivers.get();
+    }
+
+    /**
+     * Exposes the receiver count, the number of receivers removed after errors and the frames
+     * sent to an empty set as gauges.
+     */
+    public void setMetrics(MetricsRegistry registry) {
+        registry.gauge(METRIC_RECEIVERS, () -> receivers.length);
+        registry.gauge(METRIC_REMOVED, this::getRemovedCount);
+        registry.gauge(METRIC_NO_RECEIVERS, this::getFramesWithoutReceivers);
+    }
+
+    /**
+     * Writes the frame to every receiver. Throws the last error only if no receiver got the frame,
+     * so one dead consumer does not count as a send error while others are served. With no
+     * receivers at all the frame is counted and fails too, so it is not reported as sent.
+     */
+    @Override
+    public void send(byte[] buffer, int length) throws IOException {
+        if (!pendingAdds.isEmpty() || !pendingRemovals.isEmpty() || !pendingPins.isEmpty()) {
+            applyChanges();
+        }
+        Receiver[] targets = receivers;
+        if (targets.length == 0) {
+            framesWithoutReceivers.incrementAndGet();
+            throw noReceivers;
+        }
+
+        if (length > directBuffer.capacity()) {
+            directBuffer = ByteBuffer.allocateDirect(Math.max(length, directBuffer.capacity() * 2));
+        }
+        directBuffer.clear();
+        directBuffer.put(buffer, 0, length);
+        directBuffer.flip();
+
+        IOException lastError = null;
+        int delivered = 0;
+        for (Receiver receiver : targets) {
+            directBuffer.rewind();
+            try {
+                receiver.channel.write(directBuffer);
+                receiver.sentCount++;
+                delivered++;
+            } catch (IOException e) {
+                lastError = e;
+                receiver.errorCount++;
+                long now = timeSource.nanoTime();
+                if (receiver.failingSinceNanos == NOT_FAILING || now - receiver.lastErrorNanos > errorTimeoutNanos) {
+                    receiver.failingSinceNanos = now;
+                }
+                receiver.lastErrorNanos = now;
+                if (!receiver.pinned && now - receiver.failingSinceNanos >= errorTimeoutNanos) {
+                    drop(receiver, e);
+                }
+            }
+        }
+        if (delivered == 0 && lastError != null) {
+            throw lastError;
+        }
+    }
+
+    private void applyChanges() {
+        InetSocketAddress address;
+        while ((address = pendingRemovals.poll()) != null) {
+            Receiver receiver = find(address);
+            if (receiver != null) {
+                closeQuietly(receiver.channel);
+                receivers = without(receivers, receiver);
+            }
+        }
+        while ((address = pendingAdds.poll()) != null) {
+            if (find(address) != null || closed) continue;
+            DatagramChannel channel = null;
+            try {
+                channel = DatagramChannel.open();
+                channel.connect(address);
+                Receiver[] current = receivers;
+                Receiver[] grown = Arrays.copyOf(current, current.length + 1);
+                grown[current.length] = new Receiver(address, channel);
+                receivers = grown;
+            } catch (IOException e) {
+                if (channel != null) closeQuietly(channel);
+                removed.incrementAndGet();
+                if (removalListener != null) removalListener.onReceiverRemoved(address, e);
+            }
+        }
+        while ((address = pendingPins.poll()) != null) {
+            Receiver receiver = find(address);
+            if (receiver != null) receiver.pinned = true;
+        }
+    }
+
+    private void drop(Receiver receiver, IOException lastError) {
+        closeQuietly(receiver.channel);
+        receivers = without(receivers, receiver);
+        removed.incrementAndGet();
+        if (removalListener != null) {
+            removalListener.onReceiverRemoved(receiver.address, lastError);
+        }
+    }
+
+    private Receiver find(InetSocketAddress address) {
+        for (Receiver receiver : receivers) {
+            if (receiver.address.equals(address)) return receiver;
+        }
+        return null;
+    }
+
+    private static Receiver[] without(Receiver[] current, Receiver receiver) {
+        Receiver[] shrunk = new Receiver[current.length - 1];
+        int n = 0;
+        for (Receiver r : current) {
+            if (r != receiver) shrunk[n++] = r;
+        }
+        return shrunk;
+    }
+
+    /** Closes every receiver's channel; call after the sender thread has stopped. */
+    @Override
+    public void close() {
+        closed = true;
+        for (Receiver receiver : receivers) {
+            closeQuietly(receiver.channel);
+        }
+        receivers = new Receiver[0];
+    }
+
+    private static void closeQuietly(DatagramChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // Nothing left to release
+        }
+    }
+}
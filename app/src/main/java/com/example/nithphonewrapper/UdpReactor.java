@@ -0,0 +1,198 @@
+package com.example.nithphonewrapper;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Single-threaded event loop for the app's listening UDP sockets: one {@link Selector} over
+ * non-blocking {@link DatagramChannel}s, each with its own receive buffer reused for every datagram.
+ * A new channel (e.g. acks or clock sync) costs a registration, not a thread.
+ *
+ * Handlers and {@link #execute tasks} run on the reactor thread and must not block.
+ * {@link #stop()} closes every channel and waits for the thread, so nothing outlives onPause.
+ */
+public class UdpReactor {
+
+    /** Receives one datagram; called on the reactor thread. */
+    public interface DatagramHandler {
+        /**
+         * @param datagram the payload between position and limit, backed by an array (see
+         *                 ByteBuffer.array()); reused after the call returns
+         */
+        void onDatagram(ByteBuffer datagram, InetSocketAddress source);
+    }
+
+    // Datagrams read per channel and wakeup, so a flooded socket cannot starve the others
+    private static final int MAX_READS_PER_WAKEUP = 32;
+    private static final long STOP_TIMEOUT_MS = 1000;
+
+    private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final AtomicLong errors = new AtomicLong();
+
+    private final List<DatagramChannel> channels = new CopyOnWriteArrayList<>();
+
+    private volatile boolean running = false;
+    private volatile Selector selector;
+    private Thread thread;
+
+    private static final class Registration {
+        final DatagramHandler handler;
+        final ByteBuffer buffer;
+
+        Registration(DatagramHandler handler, int bufferSize) {
+            this.handler = handler;
+            this.buffer = ByteBuffer.allocate(bufferSize);
+        }
+    }
+
+    public synchronized void start() throws IOException {
+        if (running) return;
+        tasks.clear();
+        selector = Selector.open();
+        running = true;
+        thread = new Thread(this::run, "NITH-UdpReactor");
+        thread.start();
+    }
+
+    /**
+     * Closes all channels and the selector and waits for the reactor thread to finish.
+     * Tasks not yet run are dropped. Safe to call when not running.
+     */
+    public synchronized void stop() {
+        if (!running) return;
+        running = false;
+        Thread t = thread;
+        thread = null;
+        selector.wakeup();
+        try {
+            t.join(STOP_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        tasks.clear();
+        closeChannels();
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Opens a non-blocking channel bound to the port (0 = any free port) and delivers its datagrams
+     * to the handler. Binding happens on the calling thread without SO_REUSEADDR, so a port already
+     * in use (another app, or this one bound twice) fails here.
+     * @param bufferSize largest datagram accepted; longer ones are truncated
+     * @return the channel, e.g. to send from it in an {@link #execute} task or to read its local port
+     */
+    public DatagramChannel bind(int port, int bufferSize, DatagramHandler handler) throws IOException {
+        if (!running) {
+            throw new IllegalStateException("Reactor not started");
+        }
+        DatagramChannel channel = DatagramChannel.open();
+        try {
+            channel.bind(new InetSocketAddress(port));
+            channel.configureBlocking(false);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        channels.add(channel);
+        Registration registration = new Registration(handler, bufferSize);
+        execute(() -> {
+            try {
+                channel.register(selector, SelectionKey.OP_READ, registration);
+            } catch (IOException e) {
+                errors.incrementAndGet();
+                closeQuietly(channel);
+            }
+        });
+        return channel;
+    }
+
+    /** Runs the task on the reactor thread; dropped if the reactor is stopped first. */
+    public void execute(Runnable task) {
+        tasks.add(task);
+        Selector s = selector;
+        if (s != null) s.wakeup();
+    }
+
+    /** Receive, registration and handler failures so far. */
+    public long getErrorCount() {
+        return errors.get();
+    }
+
+    private void run() {
+        Selector s = selector;
+        try {
+            while (running) {
+                s.select();
+                Runnable task;
+                while (running && (task = tasks.poll()) != null) {
+                    task.run();
+                }
+                for (SelectionKey key : s.selectedKeys()) {
+                    if (key.isValid() && key.isReadable()) {
+                        drain((DatagramChannel) key.channel(), (Registration) key.attachment());
+                    }
+                }
+                s.selectedKeys().clear();
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            errors.incrementAndGet();
+        } finally {
+            // Closing the selector deregisters the channels; stop() closes them
+            try {
+                s.close();
+            } catch (IOException ignored) {
+                // Nothing left to release
+            }
+        }
+    }
+
+    private void drain(DatagramChannel channel, Registration registration) {
+        ByteBuffer buffer = registration.buffer;
+        for (int i = 0; i < MAX_READS_PER_WAKEUP; i++) {
+            buffer.clear();
+            SocketAddress source;
+            try {
+                source = channel.receive(buffer);
+            } catch (IOException e) {
+                errors.incrementAndGet();
+                return;
+            }
+            if (source == null) return;
+            buffer.flip();
+            try {
+                registration.handler.onDatagram(buffer, (InetSocketAddress) source);
+            } catch (RuntimeException e) {
+                // A bad datagram must not take the other sockets down
+                errors.incrementAndGet();
+            }
+        }
+    }
+
+    private void closeChannels() {
+        for (DatagramChannel channel : channels) {
+            closeQuietly(channel);
+        }
+        channels.clear();
+    }
+
+    private static void closeQuietly(DatagramChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // Nothing left to release
+        }
+    }
+}
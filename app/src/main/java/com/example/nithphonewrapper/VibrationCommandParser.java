@@ -0,0 +1,270 @@
+package com.example.nithphonewrapper;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Allocation-free parser for vibration commands, working directly on the received datagram bytes:
+ * $issuer_name-version|COM|vibration_intensity=VALUE&vibration_duration=VALUE^
+ *
+ * Field names and COM are case-insensitive and values trimmed; an intensity outside 1-255 falls
+ * back to the default, a missing duration to {@link #DEFAULT_DURATION_MS}. Failures are reported
+ * through {@link #getFailure()} instead of exceptions, and the issuer is kept as a range of the
+ * buffer.
+ *
+ * In addition, a vibration_waveform=DURATION:AMPLITUDE,DURATION:AMPLITUDE,... parameter turns the
+ * command into a waveform of up to {@link #MAX_WAVEFORM_STEPS} steps (1-10000 ms each, amplitude
+ * 0-255 where 0 is a pause), so one datagram can replace a burst of one-shot commands.
+ * Not thread-safe: one parser per listener thread; results are valid until the next parse.
+ */
+public final class VibrationCommandParser {
+
+    private static final byte[] COM = NithPayloadEncoder.ascii("COM");
+    private static final byte[] KEY_INTENSITY = NithPayloadEncoder.ascii("vibration_intensity");
+    private static final byte[] KEY_DURATION = NithPayloadEncoder.ascii("vibration_duration");
+    private static final byte[] KEY_WAVEFORM = NithPayloadEncoder.ascii("vibration_waveform");
+
+    public static final long DEFAULT_DURATION_MS = 100;
+    public static final int MIN_INTENSITY = 1;
+    public static final int MAX_INTENSITY = 255;
+    public static final long MAX_DURATION_MS = 10000;
+    public static final int MAX_WAVEFORM_STEPS = 32;
+    public static final int MAX_WAVEFORM_AMPLITUDE = 255;
+
+    // Failure reasons, constant so reporting them does not allocate
+    public static final String MISSING_DELIMITERS = "missing $ or ^";
+    public static final String MISSING_PARTS = "missing parts";
+    public static final String NOT_COM = "not a COM command";
+    public static final String INVALID_NUMBER = "invalid number";
+    public static final String INVALID_DURATION = "invalid duration";
+    public static final String INVALID_WAVEFORM = "invalid waveform";
+
+    private byte[] buffer;
+    private int issuerStart;
+    private int issuerEnd;
+    private int intensity;
+    private long durationMs;
+    private boolean intensityReplaced;
+    private long rejectedIntensity;
+    private String failure;
+    private final long[] waveformTimings = new long[MAX_WAVEFORM_STEPS];
+    private final int[] waveformAmplitudes = new int[MAX_WAVEFORM_STEPS];
+    private int waveformLength;
+
+    // Result of the last parseNumber() call
+    private long number;
+
+    /**
+     * Parses the command in buffer[offset, offset + length).
+     * @param defaultIntensity used when the command has no valid intensity
+     * @return true if it is a valid command; otherwise {@link #getFailure()} says why
+     */
+    public boolean parse(byte[] buffer, int offset, int length, int defaultIntensity) {
+        this.buffer = buffer;
+        failure = null;
+        waveformLength = 0;
+        intensityReplaced = false;
+        int end = offset + length;
+        if (length < 1 || buffer[offset] != '$' || buffer[end - 1] != '^') {
+            return fail(MISSING_DELIMITERS);
+        }
+        // Between '$' and '^': issuer|type|params[|...]
+        int start = offset + 1;
+        int last = end - 1;
+        int typeStart = indexOf(buffer, '|', start, last) + 1;
+        int paramsStart = typeStart == 0 ? -1 : indexOf(buffer, '|', typeStart, last) + 1;
+        if (paramsStart <= 0 || !hasPartAfter(buffer, paramsStart, last)) {
+            // Like String.split, which drops trailing empty parts
+            return fail(MISSING_PARTS);
+        }
+        if (!equalsIgnoreCase(buffer, typeStart, paramsStart - 1, COM)) {
+            return fail(NOT_COM);
+        }
+        issuerStart = start;
+        issuerEnd = typeStart - 1;
+
+        int paramsEnd = indexOf(buffer, '|', paramsStart, last);
+        if (paramsEnd < 0) paramsEnd = last;
+
+        long parsedIntensity = defaultIntensity;
+        long parsedDuration = DEFAULT_DURATION_MS;
+        for (int param = paramsStart; param <= paramsEnd; ) {
+            int paramEnd = indexOf(buffer, '&', param, paramsEnd);
+            if (paramEnd < 0) paramEnd = paramsEnd;
+            int equals = indexOf(buffer, '=', param, paramEnd);
+            if (equals >= 0) {
+                int keyStart = trimStart(buffer, param, equals);
+                int keyEnd = trimEnd(buffer, keyStart, equals);
+                int valueStart = trimStart(buffer, equals + 1, paramEnd);
+                int valueEnd = trimEnd(buffer, valueStart, paramEnd);
+                if (equalsIgnoreCase(buffer, keyStart, keyEnd, KEY_INTENSITY)) {
+                    if (!parseNumber(buffer, valueStart, valueEnd, Integer.MIN_VALUE, Integer.MAX_VALUE)) {
+                        return fail(INVALID_NUMBER);
+                    }
+                    parsedIntensity = number;
+                } else if (equalsIgnoreCase(buffer, keyStart, keyEnd, KEY_DURATION)) {
+                    if (!parseNumber(buffer, valueStart, valueEnd, Long.MIN_VALUE, Long.MAX_VALUE)) {
+                        return fail(INVALID_NUMBER);
+                    }
+                    parsedDuration = number;
+                } else if (equalsIgnoreCase(buffer, keyStart, keyEnd, KEY_WAVEFORM)) {
+                    if (!parseWaveform(buffer, valueStart, valueEnd)) {
+                        return fail(INVALID_WAVEFORM);
+                    }
+                }
+            }
+            param = paramEnd + 1;
+        }
+
+        if (parsedIntensity < MIN_INTENSITY || parsedIntensity > MAX_INTENSITY) {
+            intensityReplaced = true;
+            rejectedIntensity = parsedIntensity;
+            parsedIntensity = defaultIntensity;
+        }
+        if (parsedDuration < 1 || parsedDuration > MAX_DURATION_MS) {
+            return fail(INVALID_DURATION);
+        }
+        intensity = (int) parsedIntensity;
+        durationMs = parsedDuration;
+        return true;
+    }
+
+    /** Intensity of the last valid command: 1-255 or the default passed to {@link #parse}. */
+    public int getIntensity() {
+        return intensity;
+    }
+
+    public long getDurationMs() {
+        return durationMs;
+    }
+
+    /**
+     * True if the last valid command had an intensity outside 1-255, replaced by the default;
+     * the listener logs a warning for it, as it did before parsing moved here.
+     */
+    public boolean isIntensityReplaced() {
+        return intensityReplaced;
+    }
+
+    /** The out-of-range intensity of the last command, if {@link #isIntensityReplaced()}. */
+    public long getRejectedIntensity() {
+        return rejectedIntensity;
+    }
+
+    /** Number of waveform steps of the last valid command, 0 for a one-shot command. */
+    public int getWaveformLength() {
+        return waveformLength;
+    }
+
+    /** Step durations (ms); the first {@link #getWaveformLength()} entries are valid. Reused. */
+    public long[] getWaveformTimings() {
+        return waveformTimings;
+    }
+
+    /** Step amplitudes (0-255, 0 = pause); the first {@link #getWaveformLength()} entries are valid. Reused. */
+    public int[] getWaveformAmplitudes() {
+        return waveformAmplitudes;
+    }
+
+    /** Why the last parse failed (one of the constants above), or null after a valid command. */
+    public String getFailure() {
+        return failure;
+    }
+
+    /** Issuer of the last valid command; allocates, meant for logging and tests. */
+    public String issuer() {
+        return new String(buffer, issuerStart, issuerEnd - issuerStart, StandardCharsets.UTF_8);
+    }
+
+    private boolean fail(String reason) {
+        failure = reason;
+        return false;
+    }
+
+    // DURATION:AMPLITUDE pairs separated by ','; spaces around the numbers are ignored
+    private boolean parseWaveform(byte[] b, int from, int to) {
+        int steps = 0;
+        for (int step = from; step <= to; ) {
+            int stepEnd = indexOf(b, ',', step, to);
+            if (stepEnd < 0) stepEnd = to;
+            int colon = indexOf(b, ':', step, stepEnd);
+            if (colon < 0 || steps == MAX_WAVEFORM_STEPS) return false;
+            int durationStart = trimStart(b, step, colon);
+            if (!parseNumber(b, durationStart, trimEnd(b, durationStart, colon), 1, MAX_DURATION_MS)) {
+                return false;
+            }
+            waveformTimings[steps] = number;
+            int amplitudeStart = trimStart(b, colon + 1, stepEnd);
+            if (!parseNumber(b, amplitudeStart, trimEnd(b, amplitudeStart, stepEnd), 0, MAX_WAVEFORM_AMPLITUDE)) {
+                return false;
+            }
+            waveformAmplitudes[steps] = (int) number;
+            steps++;
+            step = stepEnd + 1;
+        }
+        waveformLength = steps;
+        return true;
+    }
+
+    private static int indexOf(byte[] b, char c, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (b[i] == c) return i;
+        }
+        return -1;
+    }
+
+    // True if some part from here on is non-empty, i.e. there is a byte other than '|'
+    private static boolean hasPartAfter(byte[] b, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (b[i] != '|') return true;
+        }
+        return false;
+    }
+
+    // String.trim: strips bytes up to ' ' (control characters and space)
+    private static int trimStart(byte[] b, int from, int to) {
+        while (from < to && (b[from] & 0xFF) <= ' ') from++;
+        return from;
+    }
+
+    private static int trimEnd(byte[] b, int from, int to) {
+        while (to > from && (b[to - 1] & 0xFF) <= ' ') to--;
+        return to;
+    }
+
+    private static boolean equalsIgnoreCase(byte[] b, int from, int to, byte[] expected) {
+        if (to - from != expected.length) return false;
+        for (int i = 0; i < expected.length; i++) {
+            if (toLowerAscii(b[from + i]) != toLowerAscii(expected[i])) return false;
+        }
+        return true;
+    }
+
+    private static int toLowerAscii(byte c) {
+        return c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c;
+    }
+
+    /**
+     * Integer.parseInt / Long.parseLong rules for ASCII decimal: optional sign, digits, and the
+     * value within [min, max].
+     */
+    private boolean parseNumber(byte[] b, int from, int to, long min, long max) {
+        if (from >= to) return false;
+        boolean negative = b[from] == '-';
+        if (negative || b[from] == '+') from++;
+        if (from >= to) return false;
+        // Accumulate negatively, so Long.MIN_VALUE fits
+        long limit = negative ? Math.min(0, min) : -Math.max(0, max);
+        long multiplyMin = limit / 10;
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            int digit = b[i] - '0';
+            if (digit < 0 || digit > 9) return false;
+            if (value < multiplyMin) return false;
+            value *= 10;
+            if (value < limit + digit) return false;
+            value -= digit;
+        }
+        number = negative ? value : -value;
+        return number >= min;
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.nithphonewrapper;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class DeadBandFilterTest {
+
+    private static final long MS = 1_000_000L;
+
+    private static NithSample sample(float pitch, float roll, float velYaw) {
+        NithSample s = new NithSample();
+        s.pitch = pitch;
+        s.roll = roll;
+        s.velYaw = velYaw;
+        return s;
+    }
+
+    @Test
+    public void suppressesSmallChangesUntilHeartbeat() {
+        DeadBandFilter filter = new DeadBandFilter(0.5f, 0.05f, 1000 * MS);
+
+        assertTrue(filter.accept(sample(10f, 0f, 0f), 0));        // first sample always passes
+        assertFalse(filter.accept(sample(10.4f, 0f, 0.04f), 10 * MS));
+        assertFalse(filter.accept(sample(9.6f, 0f, -0.04f), 20 * MS));
+        assertTrue(filter.accept(sample(10.6f, 0f, 0f), 30 * MS)); // beyond the pitch dead-band
+        assertFalse(filter.accept(sample(10.6f, 0f, 0f), 500 * MS));
+        assertTrue(filter.accept(sample(10.6f, 0f, 0f), 1030 * MS)); // heartbeat
+
+        assertEquals(3, filter.getPassedCount());
+        assertEquals(3, filter.getSuppressedCount());
+        assertEquals(1, filter.getHeartbeatCount());
+        assertEquals(0.5, filter.getSuppressionRatio(), 1e-9);
+    }
+
+    @Test
+    public void comparesWithLastSentSampleSoDriftGetsOut() {
+        DeadBandFilter filter = new DeadBandFilter(0.5f, 0.05f, 1000 * MS);
+        filter.accept(sample(0f, 0f, 0f), 0);
+        assertFalse(filter.accept(sample(0.3f, 0f, 0f), MS));
+        assertTrue(filter.accept(sample(0.6f, 0f, 0f), 2 * MS));
+    }
+
+    @Test
+    public void yawPositionUsesAngleDeadBand() {
+        DeadBandFilter filter = new DeadBandFilter(0.5f, 0.05f, 1000 * MS);
+        NithSample s = sample(0f, 0f, 0f);
+        s.hasYaw = true;
+        s.yaw = 179.8f;
+        filter.accept(s, 0);
+        s.yaw = -179.9f; // 0.3 degrees across the wrap
+        assertFalse(filter.accept(s, MS));
+        s.yaw = -179.0f;
+        assertTrue(filter.accept(s, 2 * MS));
+    }
+
+    @Test
+    public void quaternionPassesOnceRotatedBeyondAngleDeadBand() {
+        DeadBandFilter filter = new DeadBandFilter(0.5f, 0.05f, 1000 * MS);
+        NithSample s = sample(0f, 0f, 0f);
+        s.hasQuaternion = true;
+        s.quatW = 1f;
+        filter.accept(s, 0);
+        assertFalse(filter.accept(s, MS));
+        // Turning about z changes neither pitch nor roll
+        setRotationAboutZ(s, 0.3);
+        assertFalse(filter.accept(s, 2 * MS));
+        setRotationAboutZ(s, 0.6);
+        assertTrue(filter.accept(s, 3 * MS));
+    }
+
+    private static void setRotationAboutZ(NithSample s, double degrees) {
+        s.quatW = (float) Math.cos(Math.toRadians(degrees) / 2);
+        s.quatZ = (float) Math.sin(Math.toRadians(degrees) / 2);
+    }
+
+    @Test
+    public void rollDeadBandWrapsAround180() {
+        DeadBandFilter filter = new DeadBandFilter(0.5f, 0.05f, 1000 * MS);
+        filter.accept(sample(0f, 179.9f, 0f), 0);
+        assertFalse(filter.accept(sample(0f, -179.9f, 0f), MS));
+    }
+
+    @Test
+    public void buttonChangesBypassSuppression() {
+        DeadBandFilter filter = new DeadBandFilter(0.5f, 0.05f, 1000 * MS);
+        NithSample s = sample(0f, 0f, 0f);
+        s.hasButtons = true;
+        assertTrue(filter.accept(s, 0));
+        assertFalse(filter.accept(s, MS));
+        s.button1 = true;
+        assertTrue(filter.accept(s, 2 * MS));
+        s.button1 = false;
+        assertTrue(filter.accept(s, 3 * MS));
+    }
+
+    @Test
+    public void zeroThresholdsDisableTheFilter() {
+        assertNull(DeadBandFilter.createOrNull(0f, 0f));
+        assertNotNull(DeadBandFilter.createOrNull(0.1f, 0f));
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.nithphonewrapper;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class DiscoveryReplyTest {
+
+    @Test
+    public void parsesReply() {
+        DiscoveryReply reply = DiscoveryReply.parse("NITHreceiver|receiver_ip=192.168.1.50&expected_port=20103");
+        assertEquals("192.168.1.50", reply.receiverIp);
+        assertEquals(20103, reply.port);
+        assertEquals(FrameFormat.TEXT, reply.frameFormat);
+        assertNull(reply.get("binary_format"));
+
+        reply = DiscoveryReply.parse("NITHreceiver|expected_port= 20104\r\n&receiver_ip=10.0.0.2&binary_format=int16&x=y");
+        assertEquals("10.0.0.2", reply.receiverIp);
+        assertEquals(20104, reply.port);
+        assertEquals(FrameFormat.BINARY_INT16, reply.frameFormat);
+        assertEquals("y", reply.get("x"));
+    }
+
+    @Test
+    public void parsesAdvertisedMulticastGroup() {
+        DiscoveryReply reply = DiscoveryReply.parse("NITHreceiver|receiver_ip=192.168.1.50&expected_port=20103");
+        assertNull(reply.multicastGroup);
+        assertEquals(-1, reply.multicastTtl);
+
+        reply = DiscoveryReply.parse("NITHreceiver|receiver_ip=192.168.1.50&expected_port=20103"
+                + "&multicast_group=239.255.20.103&multicast_ttl=4");
+        assertEquals("239.255.20.103", reply.multicastGroup);
+        assertEquals(4, reply.multicastTtl);
+
+        // A bad TTL is ignored rather than rejecting the whole reply
+        reply = DiscoveryReply.parse("NITHreceiver|receiver_ip=192.168.1.50&expected_port=20103"
+                + "&multicast_group=&multicast_ttl=300");
+        assertNull(reply.multicastGroup);
+        assertEquals(-1, reply.multicastTtl);
+    }
+
+    @Test
+    public void rejectsIncompleteReplies() {
+        String[] invalid = {
+                "NITHsender|receiver_ip=192.168.1.50&expected_port=20103",
+                "NITHreceiver|receiver_ip=192.168.1.50",
+                "NITHreceiver|receiver_ip=192.168.1.50&expected_port=none",
+        };
+        for (String message : invalid) {
+            try {
+                DiscoveryReply.parse(message);
+                fail("Accepted " + message);
+            } catch (IllegalArgumentException expected) {
+                // ok
+            }
+        }
+    }
+}
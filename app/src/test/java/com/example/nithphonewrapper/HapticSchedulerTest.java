@@ -0,0 +1,184 @@
+package com.example.nithphonewrapper;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class HapticSchedulerTest {
+
+    private long nowNanos = 0;
+    // Delayed tasks of the fake timer, run by advance()
+    private final List<Runnable> tasks = new ArrayList<>();
+    private final List<Long> taskDue = new ArrayList<>();
+    private final List<String> played = new ArrayList<>();
+
+    private final HapticScheduler.Player player = new HapticScheduler.Player() {
+        @Override
+        public void playOneShot(long durationMs, int intensity) {
+            played.add(nowMs() + ": " + durationMs + "ms@" + intensity);
+        }
+
+        @Override
+        public void playWaveform(long[] timingsMs, int[] amplitudes, int length) {
+            StringBuilder sb = new StringBuilder(nowMs() + ": wave");
+            for (int i = 0; i < length; i++) sb.append(' ').append(timingsMs[i]).append(':').append(amplitudes[i]);
+            played.add(sb.toString());
+        }
+    };
+
+    private HapticScheduler scheduler(int windowMs, int maxRateHz) {
+        return new HapticScheduler(windowMs, maxRateHz, () -> nowNanos, (task, delayMs) -> {
+            tasks.add(task);
+            taskDue.add(nowNanos + TimeUnit.MILLISECONDS.toNanos(delayMs));
+        }, player);
+    }
+
+    private long nowMs() {
+        return TimeUnit.NANOSECONDS.toMillis(nowNanos);
+    }
+
+    private void advance(long ms) {
+        long end = nowNanos + TimeUnit.MILLISECONDS.toNanos(ms);
+        while (true) {
+            int next = -1;
+            for (int i = 0; i < tasks.size(); i++) {
+                if (taskDue.get(i) <= end && (next < 0 || taskDue.get(i) < taskDue.get(next))) next = i;
+            }
+            if (next < 0) break;
+            nowNanos = Math.max(nowNanos, taskDue.remove(next));
+            tasks.remove(next).run();
+        }
+        nowNanos = end;
+    }
+
+    @Test
+    public void mergesOneShotsWithinWindow() {
+        HapticScheduler scheduler = scheduler(10, 100);
+        scheduler.submit(50, 100);
+        advance(3);
+        scheduler.submit(30, 200);
+        scheduler.submit(80, 10);
+        advance(20);
+        assertEquals(1, played.size());
+        assertEquals("10: 80ms@200", played.get(0));
+        assertEquals(3, scheduler.getSubmittedCount());
+        assertEquals(1, scheduler.getPlayedCount());
+        assertEquals(2, scheduler.getCoalescedCount());
+    }
+
+    @Test
+    public void limitsRate() {
+        HapticScheduler scheduler = scheduler(0, 10); // at most every 100 ms
+        for (int i = 0; i < 50; i++) {
+            scheduler.submit(20, 100 + i);
+            advance(10);
+        }
+        advance(200);
+        // 500 ms of commands every 10 ms: one play per 100 ms, each merging the commands since the last
+        assertEquals(played.toString(), 6, played.size());
+        assertEquals("0: 20ms@100", played.get(0));
+        assertEquals("100: 20ms@109", played.get(1));
+        assertEquals("500: 20ms@149", played.get(5));
+        assertEquals(50, scheduler.getSubmittedCount());
+        assertEquals(44, scheduler.getCoalescedCount());
+    }
+
+    @Test
+    public void latestWaveformWins() {
+        HapticScheduler scheduler = scheduler(10, 100);
+        scheduler.submit(50, 100);
+        long[] timings = {40, 20, 40};
+        int[] amplitudes = {255, 0, 128};
+        scheduler.submitWaveform(timings, amplitudes, 3);
+        timings[0] = 999; // copied on submit
+        advance(20);
+        assertEquals("[10: wave 40:255 20:0 40:128]", played.toString());
+
+        played.clear();
+        scheduler.submitWaveform(new long[]{10}, new int[]{1}, 1);
+        scheduler.submit(30, 7);
+        advance(20);
+        assertEquals("[30: 30ms@7]", played.toString());
+    }
+
+    @Test
+    public void clearDropsPendingCommand() {
+        HapticScheduler scheduler = scheduler(10, 100);
+        scheduler.submit(50, 100);
+        scheduler.clear();
+        advance(20);
+        assertTrue(played.isEmpty());
+        scheduler.submit(50, 100);
+        advance(20);
+        assertEquals("[30: 50ms@100]", played.toString());
+    }
+
+    @Test
+    public void rejectsInvalidParameters() {
+        int[][] invalid = {{-1, 10}, {10, 0}, {0, -5}};
+        for (int[] p : invalid) {
+            try {
+                scheduler(p[0], p[1]);
+                fail("Accepted window " + p[0] + ", rate " + p[1]);
+            } catch (IllegalArgumentException expected) {
+                // ok
+            }
+        }
+        HapticScheduler scheduler = scheduler(10, 10);
+        for (int[] p : invalid) {
+            try {
+                scheduler.setLimits(p[0], p[1]);
+                fail("Accepted window " + p[0] + ", rate " + p[1]);
+            } catch (IllegalArgumentException expected) {
+                // ok
+            }
+        }
+        try {
+            scheduler.submitWaveform(new long[40], new int[40], 40);
+            fail("Accepted 40 waveform steps");
+        } catch (IllegalArgumentException expected) {
+            // ok
+        }
+    }
+
+    @Test
+    public void appliesNewLimits() {
+        HapticScheduler scheduler = scheduler(0, 10); // at most every 100 ms
+        scheduler.submit(20, 100);
+        advance(1);
+        scheduler.setLimits(5, 50); // window 5 ms, at most every 20 ms
+        scheduler.submit(20, 100);
+        advance(100);
+        assertEquals(2, played.size());
+        assertEquals("0: 20ms@100", played.get(0));
+        assertEquals("20: 20ms@100", played.get(1));
+    }
+
+    @Test
+    public void effectCacheEvictsLeastRecentlyUsed() {
+        int[] created = {0};
+        EffectCache<String> cache = new EffectCache<>(2, (durationMs, intensity) -> {
+            created[0]++;
+            return durationMs + "@" + intensity;
+        });
+        String a = cache.get(100, 255);
+        assertSame(a, cache.get(100, 255));
+        cache.get(50, 10);
+        cache.get(100, 255); // a is now the most recent
+        cache.get(20, 1);    // evicts 50@10
+        assertEquals(2, cache.size());
+        assertSame(a, cache.get(100, 255));
+        assertEquals("50@10", cache.get(50, 10));
+        assertEquals(4, created[0]);
+        assertEquals(4, cache.getMissCount());
+        assertEquals(3, cache.getHitCount());
+    }
+}
@@ -0,0 +1,300 @@
+package com.example.nithphonewrapper;
+
+import org.junit.Test;
+
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Replays synthetic traces through the whole pipeline (pipeline -> sender -> UDP channel) to a
+ * loopback receiver, without Android.
+ */
+public class HeadTrackingPipelineTest {
+
+    private static final long ONE_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    /** Counts datagrams on a loopback socket and checks every one is a NITH text frame. */
+    private static class LoopbackReceiver implements AutoCloseable {
+        final DatagramSocket socket;
+        final AtomicLong frames = new AtomicLong();
+        final AtomicLong malformed = new AtomicLong();
+        volatile float maxAbsPitch;
+        volatile float lastYaw = Float.NaN;
+        volatile String lastFrame;
+        private final Thread thread;
+
+        LoopbackReceiver() throws Exception {
+            socket = new DatagramSocket(0, InetAddress.getLoopbackAddress());
+            socket.setReceiveBufferSize(4 * 1024 * 1024);
+            socket.setSoTimeout(100);
+            thread = new Thread(this::run, "LoopbackReceiver");
+            thread.start();
+        }
+
+        InetSocketAddress address() {
+            return new InetSocketAddress(InetAddress.getLoopbackAddress(), socket.getLocalPort());
+        }
+
+        private void run() {
+            byte[] buffer = new byte[2048];
+            DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+            while (!socket.isClosed()) {
+                try {
+                    packet.setLength(buffer.length);
+                    socket.receive(packet);
+                } catch (SocketTimeoutException e) {
+                    continue;
+                } catch (Exception e) {
+                    return;
+                }
+                String frame = new String(buffer, 0, packet.getLength(), StandardCharsets.US_ASCII);
+                int pitchAt = frame.indexOf("head_pos_pitch=");
+                if (!frame.startsWith(NithPayloadEncoder.HEADER) || pitchAt < 0) {
+                    malformed.incrementAndGet();
+                    continue;
+                }
+                int start = pitchAt + "head_pos_pitch=".length();
+                float pitch = Float.parseFloat(frame.substring(start, frame.indexOf('&', start)));
+                maxAbsPitch = Math.max(maxAbsPitch, Math.abs(pitch));
+                int yawAt = frame.indexOf("head_pos_yaw=");
+                if (yawAt >= 0) {
+                    int yawStart = yawAt + "head_pos_yaw=".length();
+                    lastYaw = Float.parseFloat(frame.substring(yawStart, frame.indexOf('^', yawStart)));
+                }
+                lastFrame = frame;
+                frames.incrementAndGet();
+            }
+        }
+
+        /** Waits until expected frames arrived or the socket stayed quiet for a while. */
+        long awaitFrames(long expected) throws InterruptedException {
+            long last = -1;
+            for (int quiet = 0; quiet < 5 && frames.get() < expected; ) {
+                Thread.sleep(50);
+                long now = frames.get();
+                quiet = now == last ? quiet + 1 : 0;
+                last = now;
+            }
+            return frames.get();
+        }
+
+        @Override
+        public void close() {
+            socket.close();
+            try {
+                thread.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static SampleSender loopbackSender(UdpChannelTransport transport) {
+        SampleSender sender = new SampleSender(
+                new SampleRingBuffer(1024, SampleRingBuffer.OverflowPolicy.DROP_OLDEST), transport, null);
+        sender.setExtra("test", "127.0.0.1");
+        return sender;
+    }
+
+    private static int count(SensorTrace trace, int type) {
+        int n = 0;
+        for (int i = 0; i < trace.size(); i++) {
+            if (trace.type(i) == type) n++;
+        }
+        return n;
+    }
+
+    /** Replays the trace into a pipeline in the given mode and returns the frames received. */
+    private static long replay(SensorTrace trace, double speed, HeadTrackingPipeline.Mode mode,
+                               int clockRateHz, long expectedFrames) throws Exception {
+        try (LoopbackReceiver receiver = new LoopbackReceiver()) {
+            UdpChannelTransport transport = new UdpChannelTransport(receiver.address());
+            SampleSender sender = loopbackSender(transport);
+            MetricsRegistry metrics = new MetricsRegistry();
+            sender.setMetrics(metrics);
+            HeadTrackingPipeline pipeline = new HeadTrackingPipeline(
+                    sender, mode, 0, OutputClock.SYSTEM_NANO_TIME);
+            pipeline.setMetrics(metrics);
+            ReplaySensorSource source = new ReplaySensorSource(trace, speed, OutputClock.SYSTEM_NANO_TIME);
+            OutputClock clock = clockRateHz > 0 ? new OutputClock(clockRateHz, OutputClock.SYSTEM_NANO_TIME, pipeline) : null;
+            try {
+                sender.start();
+                source.start(pipeline);
+                if (clock != null) clock.start();
+                assertTrue(source.awaitFinished(30, TimeUnit.SECONDS));
+                if (clock != null) clock.stop();
+                long received = receiver.awaitFrames(expectedFrames);
+
+                assertEquals(trace.size(), source.getDeliveredCount());
+                assertEquals(count(trace, SensorSource.TYPE_GYROSCOPE),
+                        metrics.value(HeadTrackingPipeline.METRIC_GYROSCOPE_EVENTS));
+                assertEquals(count(trace, SensorSource.TYPE_ROTATION_VECTOR),
+                        metrics.value(HeadTrackingPipeline.METRIC_ROTATION_VECTOR_EVENTS));
+                assertEquals(0, sender.getSendErrorCount());
+                assertEquals(0, receiver.malformed.get());
+                // Synthetic pitch stays within +-20 degrees
+                assertTrue(receiver.maxAbsPitch > 5f && receiver.maxAbsPitch <= 20.01f);
+                // UDP may drop under load, but not on an idle loopback at these rates
+                assertTrue(received + " of " + sender.getDatagramCount(),
+                        received >= sender.getDatagramCount() * 9 / 10);
+                return received;
+            } finally {
+                source.stop();
+                if (clock != null) clock.stop();
+                sender.stop();
+                transport.close();
+            }
+        }
+    }
+
+    @Test
+    public void replayStopWaitsForTheListener() throws Exception {
+        SensorTrace trace = SensorTrace.synthetic(100, 200, ONE_SECOND);
+        ReplaySensorSource source = new ReplaySensorSource(
+                trace, ReplaySensorSource.AS_FAST_AS_POSSIBLE, OutputClock.SYSTEM_NANO_TIME);
+        CountDownLatch inListener = new CountDownLatch(1);
+        AtomicLong events = new AtomicLong();
+        source.start((type, timestampNanos, values, valueCount, accuracy) -> {
+            inListener.countDown();
+            try {
+                Thread.sleep(700); // longer than the old bounded join
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            events.incrementAndGet();
+        });
+        assertTrue(inListener.await(2, TimeUnit.SECONDS));
+        source.stop();
+        long atStop = events.get();
+        assertEquals(1, atStop);
+        Thread.sleep(100);
+        assertEquals(atStop, events.get());
+    }
+
+    @Test
+    public void syntheticTraceHasExpectedOrientation() {
+        SensorTrace trace = SensorTrace.synthetic(100, 200, ONE_SECOND);
+        assertEquals(300, trace.size());
+        HeadTrackingPipeline pipeline = new HeadTrackingPipeline(
+                loopbackSender(null), HeadTrackingPipeline.Mode.CLOCK, 0, OutputClock.SYSTEM_NANO_TIME);
+        float[] last = new float[2];
+        pipeline.setReadout((pitch, roll, velYaw, velPitch, velRoll) -> {
+            last[0] = pitch;
+            last[1] = roll;
+        });
+        float[] values = new float[SensorTrace.MAX_VALUES];
+        for (int i = 0; i < trace.size(); i++) {
+            if (trace.type(i) == SensorSource.TYPE_ROTATION_VECTOR && trace.timestampNanos(i) == ONE_SECOND / 2) {
+                int n = trace.copyValues(i, values);
+                pipeline.onSensorEvent(trace.type(i), trace.timestampNanos(i), values, n, trace.accuracy(i));
+            }
+        }
+        // t = 0.5 s: pitch at its +20 degree peak, roll 10 * sin(0.3 * pi)
+        assertEquals(20f, last[0], 0.01f);
+        assertEquals(10f * (float) Math.sin(0.3 * Math.PI), last[1], 0.01f);
+    }
+
+    @Test
+    public void fusedYawReachesTheFrame() throws Exception {
+        try (LoopbackReceiver receiver = new LoopbackReceiver()) {
+            UdpChannelTransport transport = new UdpChannelTransport(receiver.address());
+            SampleSender sender = loopbackSender(transport);
+            HeadTrackingPipeline pipeline = new HeadTrackingPipeline(
+                    sender, HeadTrackingPipeline.Mode.GYRO_DRIVEN, 0, OutputClock.SYSTEM_NANO_TIME);
+            pipeline.setYawFusion(new MadgwickFilter());
+            sender.start();
+            try {
+                float[] accel = {0f, 0f, 9.81f};
+                float[] magnetic = {0f, -20f, -40f}; // device x points west: 90 degrees counterclockwise
+                float[] gyro = {0f, 0f, 0f};
+                long t = 1;
+                for (int i = 0; i < 400; i++, t += 5_000_000L) {
+                    pipeline.onSensorEvent(SensorSource.TYPE_ACCELEROMETER, t, accel, 3, 3);
+                    pipeline.onSensorEvent(SensorSource.TYPE_MAGNETIC_FIELD, t, magnetic, 3, 3);
+                    pipeline.onSensorEvent(SensorSource.TYPE_GYROSCOPE, t, gyro, 3, 3);
+                }
+                receiver.awaitFrames(399);
+                assertTrue(receiver.frames.get() > 0);
+                assertEquals(0, receiver.malformed.get());
+                assertEquals(90f, receiver.lastYaw, 0.5f);
+            } finally {
+                sender.stop();
+                transport.close();
+            }
+        }
+    }
+
+    @Test
+    public void predictionFollowsInvertedPitch() throws Exception {
+        try (LoopbackReceiver receiver = new LoopbackReceiver()) {
+            UdpChannelTransport transport = new UdpChannelTransport(receiver.address());
+            SampleSender sender = loopbackSender(transport);
+            HeadTrackingPipeline pipeline = new HeadTrackingPipeline(
+                    sender, HeadTrackingPipeline.Mode.GYRO_DRIVEN, 0, OutputClock.SYSTEM_NANO_TIME);
+            pipeline.setInvertPitch(true);
+            pipeline.setPredictor(new MotionPredictor(TimeUnit.MILLISECONDS.toNanos(50)));
+            sender.start();
+            try {
+                // Level phone, nodding at -1 rad/s about x: sensor pitch rises, inverted pitch falls
+                pipeline.onSensorEvent(SensorSource.TYPE_ROTATION_VECTOR, 1, new float[]{0f, 0f, 0f, 1f}, 4, 3);
+                pipeline.onSensorEvent(SensorSource.TYPE_GYROSCOPE, 2, new float[]{-1f, 0f, 0f}, 3, 3);
+                receiver.awaitFrames(1);
+                String frame = receiver.lastFrame;
+                assertTrue(frame, frame.contains("head_pos_pitch=0.00&"));
+                assertTrue(frame, frame.contains("&head_pred_pitch=-2.86&head_pred_roll=0.00^"));
+            } finally {
+                sender.stop();
+                transport.close();
+            }
+        }
+    }
+
+    @Test
+    public void gyroDrivenAtFourKilohertzInRealTime() throws Exception {
+        // 2 kHz gyroscope replayed at twice real time: 4000 samples per second for half a second
+        SensorTrace trace = SensorTrace.synthetic(100, 2000, ONE_SECOND);
+        long gyroEvents = count(trace, SensorSource.TYPE_GYROSCOPE);
+        long received = replay(trace, 2.0, HeadTrackingPipeline.Mode.GYRO_DRIVEN, 0, gyroEvents);
+        assertTrue(received > 0);
+    }
+
+    @Test
+    public void eventDrivenAsFastAsPossible() throws Exception {
+        SensorTrace trace = SensorTrace.synthetic(1000, 1000, ONE_SECOND);
+        long rotationEvents = count(trace, SensorSource.TYPE_ROTATION_VECTOR);
+        long received = replay(trace, ReplaySensorSource.AS_FAST_AS_POSSIBLE,
+                HeadTrackingPipeline.Mode.EVENT_DRIVEN, 0, rotationEvents);
+        assertTrue(received > 0);
+    }
+
+    @Test
+    public void clockModeAtOneKilohertz() throws Exception {
+        SensorTrace trace = SensorTrace.synthetic(200, 400, ONE_SECOND / 2);
+        long received = replay(trace, 1.0, HeadTrackingPipeline.Mode.CLOCK, 1000, 500);
+        // About one frame per tick over the half-second replay
+        assertTrue(String.valueOf(received), received >= 300);
+    }
+
+    @Test
+    public void exposesInterpolationDelayInClockModeOnly() {
+        SampleSender sender = new SampleSender(
+                new SampleRingBuffer(4, SampleRingBuffer.OverflowPolicy.KEEP_LATEST), (buffer, length) -> { }, null);
+        long delay = TimeUnit.MILLISECONDS.toNanos(20);
+        for (HeadTrackingPipeline.Mode mode : HeadTrackingPipeline.Mode.values()) {
+            MetricsRegistry metrics = new MetricsRegistry();
+            new HeadTrackingPipeline(sender, mode, delay, OutputClock.SYSTEM_NANO_TIME).setMetrics(metrics);
+            assertEquals(mode == HeadTrackingPipeline.Mode.CLOCK ? delay : 0,
+                    metrics.value(HeadTrackingPipeline.METRIC_INTERPOLATION_DELAY));
+        }
+    }
+}
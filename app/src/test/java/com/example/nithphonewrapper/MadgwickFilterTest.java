@@ -0,0 +1,87 @@
+package com.example.nithphonewrapper;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class MadgwickFilterTest {
+
+    private static final float DT = 0.005f; // 200 Hz gyroscope
+    private static final float G = 9.81f;
+
+    /**
+     * Phone lying flat, its x axis turned by headingDeg counterclockwise from magnetic north:
+     * the field's horizontal part points along (cos h, -sin h) in the device frame and dips down.
+     */
+    private static void step(MadgwickFilter filter, float gz, double headingDeg) {
+        double h = Math.toRadians(headingDeg);
+        filter.update(0f, 0f, gz, 0f, 0f, G,
+                (float) (20 * Math.cos(h)), (float) (-20 * Math.sin(h)), -40f, DT);
+    }
+
+    @Test
+    public void convergesToMagneticHeading() {
+        MadgwickFilter filter = new MadgwickFilter();
+        for (int i = 0; i < 400; i++) step(filter, 0f, 30);
+        assertEquals(30f, filter.yawDegrees(), 0.5f);
+
+        MadgwickFilter south = new MadgwickFilter();
+        for (int i = 0; i < 400; i++) step(south, 0f, -150);
+        assertEquals(-150f, south.yawDegrees(), 0.5f);
+    }
+
+    @Test
+    public void followsGyroscopeCounterclockwise() {
+        MadgwickFilter filter = new MadgwickFilter();
+        for (int i = 0; i < 400; i++) step(filter, 0f, 0);
+        double heading = 0;
+        for (int i = 0; i < 200; i++) {
+            heading += Math.toDegrees(0.5 * DT);
+            step(filter, 0.5f, heading);
+        }
+        assertEquals(heading, filter.yawDegrees(), 1.0);
+        float norm = filter.getW() * filter.getW() + filter.getX() * filter.getX()
+                + filter.getY() * filter.getY() + filter.getZ() * filter.getZ();
+        assertEquals(1f, norm, 1e-5f);
+    }
+
+    @Test
+    public void magnetometerBoundsGyroBiasDrift() {
+        float bias = 0.02f; // rad/s, ~69 degrees per minute if integrated
+        MadgwickFilter fused = new MadgwickFilter();
+        MadgwickFilter imuOnly = new MadgwickFilter();
+        for (int i = 0; i < 12_000; i++) { // one minute, head still
+            step(fused, bias, 10);
+            imuOnly.updateImu(0f, 0f, bias, 0f, 0f, G, DT);
+        }
+        assertEquals(10f, fused.yawDegrees(), 5f);
+        assertTrue(imuOnly.yawDegrees() > 60f);
+    }
+
+    @Test
+    public void levelsPitchWithAccelerometerOnly() {
+        MadgwickFilter filter = new MadgwickFilter();
+        // Tilted 30 degrees about x: gravity reaction rotates into +y
+        double tilt = Math.toRadians(30);
+        for (int i = 0; i < 400; i++) {
+            filter.updateImu(0f, 0f, 0f, 0f, (float) (G * Math.sin(tilt)), (float) (G * Math.cos(tilt)), DT);
+        }
+        // Quaternion of a rotation about x by the tilt angle, yaw untouched
+        assertEquals(Math.sin(tilt / 2), Math.abs(filter.getX()), 1e-3);
+        assertEquals(0f, filter.yawDegrees(), 0.5f);
+    }
+
+    @Test
+    public void rejectsNonPositiveGain() {
+        for (float gain : new float[] {0f, -0.1f, Float.NaN}) {
+            try {
+                new MadgwickFilter(gain);
+                fail("Accepted gain " + gain);
+            } catch (IllegalArgumentException expected) {
+                // ok
+            }
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.nithphonewrapper;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class MetricsRegistryTest {
+
+    private static final long US = 1_000L;
+    private static final long MS = 1_000_000L;
+
+    @Test
+    public void bucketsAreContiguousAndBounded() {
+        long previousUpper = -1;
+        for (int i = 0; i < LatencyHistogram.BUCKET_COUNT; i++) {
+            long upper = LatencyHistogram.bucketUpperBoundMicros(i);
+            assertTrue(upper > previousUpper);
+            assertEquals(i, LatencyHistogram.bucketIndex(previousUpper + 1));
+            assertEquals(i, LatencyHistogram.bucketIndex(upper));
+            // Relative bucket width stays within 12.5%
+            assertTrue(upper - previousUpper - 1 <= Math.max(0, (previousUpper + 1) / 8));
+            previousUpper = upper;
+        }
+        assertEquals(LatencyHistogram.BUCKET_COUNT - 1, LatencyHistogram.bucketIndex(Long.MAX_VALUE / 1000));
+    }
+
+    @Test
+    public void percentilesWithinBucketResolution() {
+        LatencyHistogram h = new LatencyHistogram();
+        assertEquals(0, h.getPercentileNanos(0.5));
+        for (int i = 1; i <= 1000; i++) {
+            h.record(i * 10 * US); // 10 us .. 10 ms
+        }
+        h.record(-5); // clock skew counts as 0
+
+        assertEquals(1001, h.getCount());
+        assertEquals(10 * MS, h.getMaxNanos());
+        assertEquals(5 * MS, h.getPercentileNanos(0.5), 5 * MS / 8);
+        assertEquals(9.9 * MS, h.getPercentileNanos(0.99), 9.9 * MS / 8);
+        assertEquals(10 * MS, h.getPercentileNanos(1.0));
+
+        h.reset();
+        assertEquals(0, h.getCount());
+        assertEquals(0, h.getMaxNanos());
+    }
+
+    @Test
+    public void registryReportsCountersGaugesAndHistograms() {
+        MetricsRegistry registry = new MetricsRegistry();
+        AtomicLong events = registry.counter("sensor.events");
+        assertSame(events, registry.counter("sensor.events"));
+        events.addAndGet(3);
+        registry.gauge("sender.sent", () -> 42);
+        registry.histogram("latency").record(2 * MS);
+
+        assertEquals(3, registry.value("sensor.events"));
+        assertEquals(42, registry.value("sender.sent"));
+        assertEquals(0, registry.value("unknown"));
+
+        String report = registry.report();
+        assertTrue(report, report.contains("sensor.events 3\n"));
+        assertTrue(report, report.contains("sender.sent 42\n"));
+        assertTrue(report, report.contains("latency count=1 "));
+        assertTrue(report, report.contains("max=2.000ms"));
+
+        registry.reset();
+        assertEquals(0, registry.value("sensor.events"));
+        assertEquals(42, registry.value("sender.sent"));
+    }
+}
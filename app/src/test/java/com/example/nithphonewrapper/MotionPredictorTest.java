@@ -0,0 +1,74 @@
+package com.example.nithphonewrapper;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class MotionPredictorTest {
+
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    public void levelHeadFollowsGyroscopeAxes() {
+        MotionPredictor predictor = new MotionPredictor(50 * MS);
+        // 1 rad/s about x for 50 ms: pitch goes down by ~2.86 degrees (rotation about x is -pitch)
+        predictor.predict(0f, 0f, 1f, 0f, 0f);
+        assertEquals(-Math.toDegrees(0.05), predictor.getPitch(), 1e-3);
+        assertEquals(0f, predictor.getRoll(), 1e-3f);
+        assertEquals(0f, predictor.getYawDelta(), 1e-3f);
+
+        predictor.predict(0f, 10f, 0f, 1f, 0f);
+        assertEquals(10 + Math.toDegrees(0.05), predictor.getRoll(), 1e-3);
+
+        predictor.predict(0f, 0f, 0f, 0f, -2f);
+        assertEquals(-Math.toDegrees(0.1), predictor.getYawDelta(), 1e-3);
+    }
+
+    @Test
+    public void tiltedHeadTurnsAboutTheVertical() {
+        // Rolled 90 degrees: the phone's x axis points down, so turning about the vertical
+        // shows up on the gyroscope's x axis and must not change pitch or roll
+        MotionPredictor predictor = new MotionPredictor(50 * MS);
+        predictor.predict(0f, 90f, -1f, 0f, 0f);
+        assertEquals(0f, predictor.getPitch(), 1e-3f);
+        assertEquals(90f, predictor.getRoll(), 1e-3f);
+        assertEquals(Math.toDegrees(0.05), predictor.getYawDelta(), 1e-3);
+    }
+
+    @Test
+    public void horizonAndRotationAreClamped() {
+        MotionPredictor predictor = new MotionPredictor(TimeUnit.SECONDS.toNanos(1));
+        assertEquals(MotionPredictor.MAX_HORIZON_NANOS, predictor.getHorizonNanos());
+
+        // 20 rad/s over 100 ms would be 115 degrees
+        predictor.predict(0f, 0f, 0f, 20f, 0f);
+        assertEquals(MotionPredictor.MAX_ROTATION_DEG, predictor.getRoll(), 1e-3f);
+    }
+
+    @Test
+    public void stillHeadPredictsItself() {
+        MotionPredictor predictor = new MotionPredictor(40 * MS);
+        predictor.predict(12.5f, -170f, 0f, 0f, 0f);
+        assertEquals(12.5f, predictor.getPitch(), 0f);
+        assertEquals(-170f, predictor.getRoll(), 0f);
+        assertEquals(0f, predictor.getYawDelta(), 0f);
+    }
+
+    @Test
+    public void zeroHorizonMeansOff() {
+        assertNull(MotionPredictor.createOrNull(0f));
+        assertNull(MotionPredictor.createOrNull(Float.NaN));
+        assertEquals(40 * MS, MotionPredictor.createOrNull(40f).getHorizonNanos());
+        assertEquals(MotionPredictor.MAX_HORIZON_NANOS, MotionPredictor.createOrNull(1e30f).getHorizonNanos());
+        try {
+            new MotionPredictor(-1);
+            fail("Accepted negative horizon");
+        } catch (IllegalArgumentException expected) {
+            // ok
+        }
+    }
+}
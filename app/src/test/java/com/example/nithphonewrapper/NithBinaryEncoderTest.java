@@ -0,0 +1,140 @@
+package com.example.nithphonewrapper;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.Assert.assertEquals;
+
+public class NithBinaryEncoderTest {
+
+    private static NithSample sample() {
+        NithSample s = new NithSample();
+        s.pitch = -12.346f;
+        s.roll = 179.99f;
+        s.velYaw = 0.1234f;
+        s.velPitch = -40f; // beyond int16 range once scaled: saturates
+        s.velRoll = 0f;
+        s.timestampNanos = 123456789012345L;
+        s.sensorTimestampNanos = 123456789012345L;
+        s.hasButtons = true;
+        s.button2 = true;
+        return s;
+    }
+
+    @Test
+    public void encodesFloatFrame() {
+        NithBinaryEncoder encoder = new NithBinaryEncoder();
+        int length = encoder.encode(sample(), 0x1_0000_0007L, false);
+        assertEquals(36, length);
+
+        ByteBuffer frame = ByteBuffer.wrap(encoder.buffer(), 0, length).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals('N', frame.get());
+        assertEquals('B', frame.get());
+        assertEquals(NithBinaryEncoder.VERSION, frame.get());
+        assertEquals(NithBinaryEncoder.FLAG_BUTTONS | NithBinaryEncoder.FLAG_BUTTON2, frame.get());
+        assertEquals(7, frame.getInt()); // uint32 wrap
+        assertEquals(123456789012345L, frame.getLong());
+        assertEquals(-12.346f, frame.getFloat(), 0f);
+        assertEquals(179.99f, frame.getFloat(), 0f);
+        assertEquals(0.1234f, frame.getFloat(), 0f);
+        assertEquals(-40f, frame.getFloat(), 0f);
+        assertEquals(0f, frame.getFloat(), 0f);
+    }
+
+    @Test
+    public void appendsYawWhenPresent() {
+        NithBinaryEncoder encoder = new NithBinaryEncoder();
+        NithSample s = sample();
+        s.hasYaw = true;
+        s.yaw = -91.234f;
+
+        int length = encoder.encode(s, 1, false);
+        assertEquals(40, length);
+        ByteBuffer frame = ByteBuffer.wrap(encoder.buffer(), 0, length).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(NithBinaryEncoder.FLAG_YAW, frame.get(3) & NithBinaryEncoder.FLAG_YAW);
+        assertEquals(-91.234f, frame.getFloat(36), 0f);
+
+        length = encoder.encode(s, 1, true);
+        assertEquals(28, length);
+        frame = ByteBuffer.wrap(encoder.buffer(), 0, length).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(-9123, frame.getShort(26));
+    }
+
+    @Test
+    public void appendsQuaternionAfterYaw() {
+        NithBinaryEncoder encoder = new NithBinaryEncoder();
+        NithSample s = sample();
+        s.hasYaw = true;
+        s.hasQuaternion = true;
+        s.quatW = 0.9430f;
+        s.quatX = -0.1563f;
+        s.quatY = 0.2901f;
+        s.quatZ = 1f;
+
+        int length = encoder.encode(s, 1, false);
+        assertEquals(56, length);
+        ByteBuffer frame = ByteBuffer.wrap(encoder.buffer(), 0, length).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(NithBinaryEncoder.FLAG_QUATERNION, frame.get(3) & NithBinaryEncoder.FLAG_QUATERNION);
+        assertEquals(0.9430f, frame.getFloat(40), 0f);
+        assertEquals(1f, frame.getFloat(52), 0f);
+
+        length = encoder.encode(s, 1, true);
+        assertEquals(36, length);
+        frame = ByteBuffer.wrap(encoder.buffer(), 0, length).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(9430, frame.getShort(28));
+        assertEquals(-1563, frame.getShort(30));
+        assertEquals(10000, frame.getShort(34));
+    }
+
+    @Test
+    public void appendsPredictionLast() {
+        NithBinaryEncoder encoder = new NithBinaryEncoder();
+        NithSample s = sample();
+        s.hasPrediction = true;
+        s.predPitch = 21.5f;
+        s.predRoll = -3.25f;
+
+        int length = encoder.encode(s, 1, false);
+        assertEquals(44, length);
+        ByteBuffer frame = ByteBuffer.wrap(encoder.buffer(), 0, length).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(NithBinaryEncoder.FLAG_PREDICTION, frame.get(3) & NithBinaryEncoder.FLAG_PREDICTION);
+        assertEquals(21.5f, frame.getFloat(36), 0f);
+        assertEquals(-3.25f, frame.getFloat(40), 0f);
+
+        // Everything present: 16 + 20 + 4 + 16 + 12 bytes
+        s.hasYaw = true;
+        s.hasQuaternion = true;
+        s.predYaw = 45f;
+        assertEquals(68, encoder.encode(s, 1, false));
+        frame = ByteBuffer.wrap(encoder.buffer(), 0, 68).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(45f, frame.getFloat(64), 0f);
+        assertEquals(42, encoder.encode(s, 1, true));
+    }
+
+    @Test
+    public void encodesQuantizedFrame() {
+        NithBinaryEncoder encoder = new NithBinaryEncoder();
+        int length = encoder.encode(sample(), 1, true);
+        assertEquals(26, length);
+
+        ByteBuffer frame = ByteBuffer.wrap(encoder.buffer(), 0, length).order(ByteOrder.LITTLE_ENDIAN);
+        frame.position(3);
+        assertEquals(NithBinaryEncoder.FLAG_INT16 | NithBinaryEncoder.FLAG_BUTTONS | NithBinaryEncoder.FLAG_BUTTON2, frame.get());
+        frame.position(NithBinaryEncoder.HEADER_SIZE);
+        assertEquals(-1235, frame.getShort());
+        assertEquals(17999, frame.getShort());
+        assertEquals(123, frame.getShort());
+        assertEquals(Short.MIN_VALUE, frame.getShort());
+        assertEquals(0, frame.getShort());
+    }
+
+    @Test
+    public void discoveryValueSelectsFormat() {
+        assertEquals(FrameFormat.BINARY_FLOAT, FrameFormat.fromDiscoveryValue("float"));
+        assertEquals(FrameFormat.BINARY_INT16, FrameFormat.fromDiscoveryValue(" INT16 "));
+        assertEquals(FrameFormat.TEXT, FrameFormat.fromDiscoveryValue(null));
+        assertEquals(FrameFormat.TEXT, FrameFormat.fromDiscoveryValue("protobuf"));
+    }
+}
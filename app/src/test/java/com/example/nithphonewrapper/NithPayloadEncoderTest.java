@@ -0,0 +1,151 @@
+package com.example.nithphonewrapper;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that {@link NithPayloadEncoder} is byte-identical to the String.format based payload.
+ */
+public class NithPayloadEncoderTest {
+
+    private static final String FORMAT =
+            "$NITHphoneWrapper-v0.2.0|OPR|head_pos_pitch=%.2f&head_pos_roll=%.2f&head_vel_yaw=%.4f&head_vel_pitch=%.4f&head_vel_roll=%.4f^dev=%s&phone_ip=%s";
+
+    private static byte[] expected(float p, float r, float vy, float vp, float vr, String dev, String ip) {
+        return String.format(Locale.US, FORMAT, p, r, vy, vp, vr, dev, ip).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] encoded(NithPayloadEncoder encoder) {
+        return Arrays.copyOf(encoder.buffer(), encoder.length());
+    }
+
+    @Test
+    public void matchesFormatterOnRandomSamples() {
+        NithPayloadEncoder encoder = new NithPayloadEncoder();
+        encoder.setExtra("Google_Pixel 7", "192.168.1.23");
+        Random random = new Random(42);
+        for (int i = 0; i < 200_000; i++) {
+            float p = (random.nextFloat() - 0.5f) * 180f;
+            float r = (random.nextFloat() - 0.5f) * 360f;
+            float vy = (random.nextFloat() - 0.5f) * 12.56f;
+            float vp = (float) (random.nextGaussian() * 1e-3);
+            float vr = Float.intBitsToFloat(random.nextInt());
+            encoder.encode(p, r, vy, vp, vr);
+            assertArrayEquals(expected(p, r, vy, vp, vr, "Google_Pixel 7", "192.168.1.23"), encoded(encoder));
+        }
+    }
+
+    @Test
+    public void matchesFormatterOnEdgeValues() {
+        float[] values = {0f, -0f, 0.125f, -0.125f, 0.005f, -0.005f, 0.00005f, 1.005f, 0.995f, 9.995f,
+                -0.004f, 179.99999f, Float.MIN_VALUE, 999999.99f, 1e9f, -3e12f,
+                Float.MAX_VALUE, Float.NaN, Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY};
+        NithPayloadEncoder encoder = new NithPayloadEncoder();
+        encoder.setExtra("dev", "Not Available");
+        for (float v : values) {
+            encoder.encode(v, v, v, v, v);
+            assertArrayEquals("value " + v, expected(v, v, v, v, v, "dev", "Not Available"), encoded(encoder));
+        }
+    }
+
+    @Test
+    public void appendsButtonFlags() {
+        NithPayloadEncoder encoder = new NithPayloadEncoder();
+        encoder.setExtra(null, "10.0.0.2");
+        encoder.encode(1f, 2f, 3f, 4f, 5f);
+        encoder.appendFlag(NithPayloadEncoder.ascii("button1"), true);
+        encoder.appendFlag(NithPayloadEncoder.ascii("button2"), false);
+        String expected = String.format(Locale.US, FORMAT + "&button1=%s&button2=%s",
+                1f, 2f, 3f, 4f, 5f, null, "10.0.0.2", "true", "false");
+        assertEquals(expected, new String(encoded(encoder), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void putsFusedYawBeforeExtraSection() {
+        NithPayloadEncoder encoder = new NithPayloadEncoder();
+        encoder.setExtra("dev", "10.0.0.2");
+        NithSample sample = new NithSample();
+        sample.pitch = 1f;
+        sample.hasYaw = true;
+        sample.yaw = -123.456f;
+        sample.hasButtons = true;
+        encoder.encode(sample);
+        String frame = new String(encoded(encoder), StandardCharsets.UTF_8);
+        assertTrue(frame, frame.contains("&head_vel_roll=0.0000&head_pos_yaw=-123.46^dev=dev&phone_ip=10.0.0.2&button1=false"));
+
+        sample.hasYaw = false;
+        encoder.encode(sample);
+        assertFalse(new String(encoded(encoder), StandardCharsets.UTF_8).contains("head_pos_yaw"));
+    }
+
+    @Test
+    public void putsQuaternionAfterYaw() {
+        NithPayloadEncoder encoder = new NithPayloadEncoder();
+        encoder.setExtra("dev", "10.0.0.2");
+        NithSample sample = new NithSample();
+        sample.hasYaw = true;
+        sample.yaw = 12f;
+        sample.hasQuaternion = true;
+        sample.quatW = 0.70711f;
+        sample.quatX = -0.70711f;
+        encoder.encode(sample);
+        String frame = new String(encoded(encoder), StandardCharsets.UTF_8);
+        assertTrue(frame, frame.contains("&head_pos_yaw=12.00&head_quat_w=0.7071&head_quat_x=-0.7071"
+                + "&head_quat_y=0.0000&head_quat_z=0.0000^dev=dev"));
+
+        sample.hasQuaternion = false;
+        encoder.encode(sample);
+        assertFalse(new String(encoded(encoder), StandardCharsets.UTF_8).contains("head_quat"));
+    }
+
+    @Test
+    public void putsPredictionNextToMeasuredValues() {
+        NithPayloadEncoder encoder = new NithPayloadEncoder();
+        encoder.setExtra("dev", "10.0.0.2");
+        NithSample sample = new NithSample();
+        sample.pitch = 10f;
+        sample.hasPrediction = true;
+        sample.predPitch = 12.345f;
+        sample.predRoll = -0.5f;
+        sample.predYaw = 99f;
+        encoder.encode(sample);
+        String frame = new String(encoded(encoder), StandardCharsets.UTF_8);
+        assertTrue(frame, frame.startsWith(NithPayloadEncoder.HEADER + "head_pos_pitch=10.00&"));
+        assertTrue(frame, frame.contains("&head_vel_roll=0.0000&head_pred_pitch=12.35&head_pred_roll=-0.50^dev="));
+
+        sample.hasYaw = true;
+        encoder.encode(sample);
+        frame = new String(encoded(encoder), StandardCharsets.UTF_8);
+        assertTrue(frame, frame.contains("&head_pred_roll=-0.50&head_pred_yaw=99.00^dev="));
+    }
+
+    @Test
+    public void appendsLongFields() {
+        NithPayloadEncoder encoder = new NithPayloadEncoder();
+        long[] values = {0L, 7L, -42L, 123456789012345L, Long.MAX_VALUE, Long.MIN_VALUE};
+        for (long value : values) {
+            encoder.encode(1f, 2f, 3f, 4f, 5f);
+            encoder.appendLong(NithPayloadEncoder.ascii("ts"), value);
+            String frame = new String(encoded(encoder), StandardCharsets.UTF_8);
+            assertEquals("&ts=" + value, frame.substring(frame.lastIndexOf('&')));
+        }
+    }
+
+    @Test
+    public void growsForLongExtraFields() {
+        NithPayloadEncoder encoder = new NithPayloadEncoder(16);
+        encoder.setExtra("Manufacturer_with_a_very_long_model_name_ü", "fe80::1");
+        encoder.encode(-12.5f, 0.01f, 0.5f, -0.25f, 1f);
+        assertArrayEquals(expected(-12.5f, 0.01f, 0.5f, -0.25f, 1f, "Manufacturer_with_a_very_long_model_name_ü", "fe80::1"),
+                encoded(encoder));
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.nithphonewrapper;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class OneEuroFilterTest {
+
+    private static final long STEP = 5_000_000L; // 200 Hz
+
+    @Test
+    public void removesJitterFromStillSignal() {
+        OneEuroFilter filter = new OneEuroFilter(1f, 0.01f, false);
+        Random random = new Random(19);
+        double rawError = 0, filteredError = 0;
+        for (int i = 0; i < 2000; i++) {
+            float noise = (float) random.nextGaussian() * 0.2f;
+            float out = filter.filter(10f + noise, i * STEP);
+            if (i >= 1000) {
+                rawError += noise * noise;
+                filteredError += (out - 10f) * (out - 10f);
+            }
+        }
+        assertTrue(filteredError + " vs " + rawError, filteredError < rawError / 10);
+    }
+
+    @Test
+    public void betaReducesLagWhileMoving() {
+        // 60 degrees per second ramp
+        OneEuroFilter slow = new OneEuroFilter(1f, 0f, false);
+        OneEuroFilter adaptive = new OneEuroFilter(1f, 0.1f, false);
+        float value = 0f, slowOut = 0f, adaptiveOut = 0f;
+        for (int i = 0; i < 200; i++) {
+            value = 60f * i * STEP * 1e-9f;
+            slowOut = slow.filter(value, i * STEP);
+            adaptiveOut = adaptive.filter(value, i * STEP);
+        }
+        float slowLag = value - slowOut;
+        float adaptiveLag = value - adaptiveOut;
+        assertTrue(slowLag > 5f);
+        assertTrue(adaptiveLag + " vs " + slowLag, adaptiveLag < slowLag / 4);
+    }
+
+    @Test
+    public void wrappingAngleTakesTheShortWay() {
+        OneEuroFilter filter = new OneEuroFilter(1f, 0f, true);
+        filter.filter(179f, 0);
+        float out = filter.filter(-179f, STEP);
+        // Moves a little from 179 towards 181 (-179), never through 0
+        assertTrue(String.valueOf(out), out > 179f || out < -179f);
+        for (int i = 2; i < 1000; i++) out = filter.filter(-179f, i * STEP);
+        assertEquals(-179f, out, 1e-3f);
+    }
+
+    @Test
+    public void firstValueAndRepeatedTimestampsPassThrough() {
+        OneEuroFilter filter = new OneEuroFilter(1f, 0f, false);
+        assertEquals(5f, filter.filter(5f, 100), 0f);
+        assertEquals(5f, filter.filter(50f, 100), 0f);
+        filter.reset();
+        assertEquals(50f, filter.filter(50f, 200), 0f);
+    }
+
+    @Test
+    public void rejectsInvalidParameters() {
+        float[][] invalid = {{0f, 0f}, {-1f, 0f}, {Float.NaN, 0f}, {1f, -0.1f}, {1f, Float.NaN}};
+        for (float[] p : invalid) {
+            try {
+                new OneEuroFilter(p[0], p[1], false);
+                fail("Accepted min-cutoff " + p[0] + ", beta " + p[1]);
+            } catch (IllegalArgumentException expected) {
+                // ok
+            }
+        }
+    }
+
+    @Test
+    public void smootherFiltersConfiguredFieldsOnly() {
+        assertNull(SampleSmoother.createOrNull(0f, 1f, 0f, 1f));
+        SampleSmoother smoother = SampleSmoother.createOrNull(1f, 0f, 0f, 0f);
+        assertTrue(smoother.isFiltered(SampleSmoother.Field.ROLL));
+        assertFalse(smoother.isFiltered(SampleSmoother.Field.VEL_YAW));
+
+        NithSample s = new NithSample();
+        smoother.apply(s);
+        s.timestampNanos = STEP;
+        s.pitch = 10f;
+        s.velYaw = 3f;
+        s.yaw = 90f; // hasYaw false: yaw filter untouched
+        smoother.apply(s);
+        assertTrue(s.pitch > 0f && s.pitch < 1f);
+        assertEquals(3f, s.velYaw, 0f);
+        assertEquals(90f, s.yaw, 0f);
+
+        s.timestampNanos = 2 * STEP;
+        s.hasYaw = true;
+        smoother.apply(s);
+        assertEquals(90f, s.yaw, 0f); // first yaw value passes unchanged
+    }
+}
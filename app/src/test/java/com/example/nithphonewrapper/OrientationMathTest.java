@@ -0,0 +1,82 @@
+package com.example.nithphonewrapper;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class OrientationMathTest {
+
+    private static final float EPS = 1e-5f;
+
+    private static float[] euler(float... rotationVector) {
+        float[] angles = new float[3];
+        OrientationMath.rotationVectorToEuler(rotationVector, new float[9], angles);
+        return angles;
+    }
+
+    @Test
+    public void identityIsLevel() {
+        float[] angles = euler(0f, 0f, 0f, 1f);
+        assertEquals(0f, angles[0], EPS);
+        assertEquals(0f, angles[1], EPS);
+        assertEquals(0f, angles[2], EPS);
+    }
+
+    @Test
+    public void rotationAboutXIsNegativePitch() {
+        double theta = Math.toRadians(30);
+        float[] angles = euler((float) Math.sin(theta / 2), 0f, 0f, (float) Math.cos(theta / 2), 0f);
+        assertEquals(0f, angles[0], EPS);
+        assertEquals(-theta, angles[1], EPS);
+        assertEquals(0f, angles[2], EPS);
+    }
+
+    @Test
+    public void rotationAboutYIsRoll() {
+        double theta = Math.toRadians(-120);
+        float[] angles = euler(0f, (float) Math.sin(theta / 2), 0f, (float) Math.cos(theta / 2));
+        assertEquals(0f, angles[1], EPS);
+        assertEquals(theta, angles[2], EPS);
+    }
+
+    @Test
+    public void derivesScalarPartFromThreeComponents() {
+        double theta = Math.toRadians(45);
+        float[] angles = euler(0f, 0f, (float) Math.sin(theta / 2));
+        assertEquals(-theta, angles[0], EPS); // azimuth is atan2(R[1], R[4])
+    }
+
+    @Test
+    public void directQuaternionMatchesMatrixPath() {
+        Random random = new Random(17);
+        for (int i = 0; i < 1000; i++) {
+            float x = random.nextFloat() * 2 - 1, y = random.nextFloat() * 2 - 1;
+            float z = random.nextFloat() * 2 - 1, w = random.nextFloat() * 2 - 1;
+            float norm = (float) Math.sqrt(x * x + y * y + z * z + w * w);
+            x /= norm;
+            y /= norm;
+            z /= norm;
+            w /= norm;
+            float[] angles = euler(x, y, z, w);
+            assertEquals(angles[1], OrientationMath.pitch(x, y, z, w), 1e-4f);
+            assertEquals(angles[2], OrientationMath.roll(x, y, z, w), 1e-4f);
+        }
+    }
+
+    @Test
+    public void pitchIsClampedAtNinetyDegrees() {
+        // Slightly over-long rotation vector straight up: asin would see an argument beyond -1
+        float h = (float) Math.sqrt(0.5) * 1.0001f;
+        float pitch = OrientationMath.pitch(h, 0f, 0f, h);
+        assertEquals(-Math.PI / 2, pitch, EPS);
+    }
+
+    @Test
+    public void scalarPartIsDerivedOnlyWhenMissing() {
+        float[] rotationVector = {0.6f, 0f, 0f, 0.5f, 0f};
+        assertEquals(0.5f, OrientationMath.scalarPart(rotationVector, 5), 0f);
+        assertEquals(0.8f, OrientationMath.scalarPart(rotationVector, 3), EPS);
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.nithphonewrapper;
+
+import org.junit.Test;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class OutputClockTest {
+
+    @Test
+    public void ticksOnEvenlySpacedDeadlines() throws Exception {
+        final int rate = 200;
+        final int ticks = 40;
+        long[] deadlines = new long[ticks];
+        int[] count = {0};
+        CountDownLatch done = new CountDownLatch(1);
+        OutputClock clock = new OutputClock(rate, OutputClock.SYSTEM_NANO_TIME, deadline -> {
+            if (count[0] < ticks) {
+                deadlines[count[0]++] = deadline;
+                if (count[0] == ticks) done.countDown();
+            }
+        });
+        clock.start();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        clock.stop();
+
+        // Deadlines stay on the start + k * period grid, whatever the time spent in each tick
+        for (int i = 1; i < ticks; i++) {
+            long spacing = deadlines[i] - deadlines[i - 1];
+            assertTrue(spacing > 0);
+            assertEquals(0, spacing % clock.getPeriodNanos());
+        }
+    }
+
+    @Test
+    public void followsFakeTimeAndSkipsMissedTicks() throws Exception {
+        AtomicLong now = new AtomicLong(0);
+        BlockingQueue<Long> deadlines = new LinkedBlockingQueue<>();
+        OutputClock clock = new OutputClock(100, now::get, deadlines::add);
+        long period = clock.getPeriodNanos();
+        clock.start();
+        try {
+            // No tick before the first deadline
+            assertNull(deadlines.poll(30, TimeUnit.MILLISECONDS));
+
+            now.set(period);
+            assertEquals(period, (long) deadlines.poll(2, TimeUnit.SECONDS));
+            assertNull(deadlines.poll(30, TimeUnit.MILLISECONDS));
+
+            // 5.5 periods late: the due tick runs, the ones in between are skipped, the phase is kept
+            now.set(period * 15 / 2);
+            assertEquals(2 * period, (long) deadlines.poll(2, TimeUnit.SECONDS));
+            assertEquals(7 * period, (long) deadlines.poll(2, TimeUnit.SECONDS));
+            assertNull(deadlines.poll(30, TimeUnit.MILLISECONDS));
+            assertEquals(4, clock.getSkippedTickCount());
+
+            now.set(8 * period);
+            assertEquals(8 * period, (long) deadlines.poll(2, TimeUnit.SECONDS));
+        } finally {
+            clock.stop();
+        }
+        assertEquals(4, clock.getTickCount());
+    }
+}
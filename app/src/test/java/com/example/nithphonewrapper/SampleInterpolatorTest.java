@@ -0,0 +1,89 @@
+package com.example.nithphonewrapper;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SampleInterpolatorTest {
+
+    private static final long MS = 1_000_000L;
+
+    @Test
+    public void interpolatesBetweenBracketingReadings() {
+        SampleInterpolator interpolator = new SampleInterpolator();
+        NithSample out = new NithSample();
+        assertFalse(interpolator.sampleAt(0, out));
+
+        interpolator.addOrientation(10 * MS, 0f, 10f);
+        interpolator.addOrientation(30 * MS, 20f, 30f);
+        interpolator.addAngularVelocity(15 * MS, 1f, 2f, 3f);
+        interpolator.addAngularVelocity(25 * MS, 3f, 4f, 5f);
+
+        assertTrue(interpolator.sampleAt(20 * MS, out));
+        assertEquals(10f, out.pitch, 1e-4f);
+        assertEquals(20f, out.roll, 1e-4f);
+        assertEquals(2f, out.velYaw, 1e-4f);
+        assertEquals(3f, out.velPitch, 1e-4f);
+        assertEquals(4f, out.velRoll, 1e-4f);
+        assertEquals(20 * MS, out.timestampNanos);
+        // sensor_ts refers to a real reading: the newest one used (the orientation reading at 30 ms)
+        assertEquals(30 * MS, out.sensorTimestampNanos);
+
+        // Outside the history the nearest reading is held
+        assertTrue(interpolator.sampleAt(100 * MS, out));
+        assertEquals(20f, out.pitch, 1e-4f);
+        assertEquals(3f, out.velYaw, 1e-4f);
+        assertEquals(30 * MS, out.sensorTimestampNanos);
+        assertTrue(interpolator.sampleAt(0, out));
+        assertEquals(0f, out.pitch, 1e-4f);
+    }
+
+    @Test
+    public void rollTakesShortestPathAcross180() {
+        SampleInterpolator interpolator = new SampleInterpolator();
+        interpolator.addOrientation(0, 0f, 170f);
+        interpolator.addOrientation(10 * MS, 0f, -170f);
+        NithSample out = new NithSample();
+        interpolator.sampleAt(5 * MS, out);
+        assertEquals(180f, Math.abs(out.roll), 1e-3f);
+    }
+
+    @Test
+    public void yawOnlyOnceFusedYawWasAdded() {
+        SampleInterpolator interpolator = new SampleInterpolator();
+        interpolator.addOrientation(0, 0f, 0f);
+        NithSample out = new NithSample();
+        interpolator.sampleAt(0, out);
+        assertFalse(out.hasYaw);
+
+        interpolator.addYaw(0, 175f);
+        interpolator.addYaw(10 * MS, -165f);
+        interpolator.sampleAt(5 * MS, out);
+        assertTrue(out.hasYaw);
+        assertEquals(-175f, out.yaw, 1e-3f);
+    }
+
+    @Test
+    public void quaternionStaysInOneHemisphereAndIsNormalized() {
+        SampleInterpolator interpolator = new SampleInterpolator();
+        interpolator.addOrientation(0, 0f, 0f);
+        NithSample out = new NithSample();
+        interpolator.sampleAt(0, out);
+        assertFalse(out.hasQuaternion);
+
+        // 80 and 100 degrees about z; the second reading arrives with the opposite sign
+        float c80 = (float) Math.cos(Math.toRadians(40)), s80 = (float) Math.sin(Math.toRadians(40));
+        float c100 = (float) Math.cos(Math.toRadians(50)), s100 = (float) Math.sin(Math.toRadians(50));
+        interpolator.addQuaternion(0, c80, 0f, 0f, s80);
+        interpolator.addQuaternion(10 * MS, -c100, 0f, 0f, -s100);
+        interpolator.sampleAt(5 * MS, out);
+        assertTrue(out.hasQuaternion);
+        // Halfway: 90 degrees about z
+        assertEquals(Math.cos(Math.toRadians(45)), out.quatW, 1e-3);
+        assertEquals(Math.sin(Math.toRadians(45)), out.quatZ, 1e-3);
+        float norm = out.quatW * out.quatW + out.quatX * out.quatX + out.quatY * out.quatY + out.quatZ * out.quatZ;
+        assertEquals(1f, norm, 1e-5f);
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.nithphonewrapper;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SampleRingBufferTest {
+
+    private static NithSample sample(long timestamp) {
+        NithSample s = new NithSample();
+        s.timestampNanos = timestamp;
+        return s;
+    }
+
+    @Test
+    public void dropOldestKeepsMostRecentWindow() {
+        SampleRingBuffer ring = new SampleRingBuffer(4, SampleRingBuffer.OverflowPolicy.DROP_OLDEST);
+        for (int i = 0; i < 6; i++) {
+            ring.offer(sample(i));
+        }
+        NithSample out = new NithSample();
+        for (int i = 2; i < 6; i++) {
+            assertTrue(ring.poll(out));
+            assertEquals(i, out.timestampNanos);
+        }
+        assertFalse(ring.poll(out));
+        assertEquals(6, ring.getEnqueuedCount());
+        assertEquals(2, ring.getDroppedCount());
+    }
+
+    @Test
+    public void keepLatestSkipsToNewest() {
+        SampleRingBuffer ring = new SampleRingBuffer(8, SampleRingBuffer.OverflowPolicy.KEEP_LATEST);
+        for (int i = 0; i < 5; i++) {
+            ring.offer(sample(i));
+        }
+        NithSample out = new NithSample();
+        assertTrue(ring.poll(out));
+        assertEquals(4, out.timestampNanos);
+        assertFalse(ring.poll(out));
+        assertEquals(4, ring.getDroppedCount());
+    }
+
+    @Test
+    public void concurrentConsumerSeesIncreasingSamples() throws Exception {
+        final int count = 1_000_000;
+        SampleRingBuffer ring = new SampleRingBuffer(64, SampleRingBuffer.OverflowPolicy.DROP_OLDEST);
+        long[] received = new long[1];
+        long[] last = {-1};
+        boolean[] ordered = {true};
+        Thread consumer = new Thread(() -> {
+            NithSample out = new NithSample();
+            while (last[0] < count - 1) {
+                if (ring.poll(out)) {
+                    if (out.timestampNanos <= last[0]) ordered[0] = false;
+                    last[0] = out.timestampNanos;
+                    received[0]++;
+                }
+            }
+        });
+        consumer.start();
+        NithSample in = new NithSample();
+        for (int i = 0; i < count; i++) {
+            in.timestampNanos = i;
+            ring.offer(in);
+        }
+        consumer.join(10_000);
+        assertTrue("samples out of order", ordered[0]);
+        assertEquals(count, received[0] + ring.getDroppedCount());
+    }
+}
@@ -0,0 +1,227 @@
+package com.example.nithphonewrapper;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.PortUnreachableException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SampleSenderTest {
+
+    /** Keeps a copy of every datagram handed to the transport. */
+    private static class RecordingTransport implements FrameTransport {
+        final BlockingQueue<byte[]> datagrams = new LinkedBlockingQueue<>();
+
+        @Override
+        public void send(byte[] buffer, int length) {
+            datagrams.add(Arrays.copyOf(buffer, length));
+        }
+
+        byte[] next() throws InterruptedException {
+            return datagrams.poll(2, TimeUnit.SECONDS);
+        }
+    }
+
+    private static SampleSender sender(RecordingTransport transport) {
+        return new SampleSender(
+                new SampleRingBuffer(256, SampleRingBuffer.OverflowPolicy.DROP_OLDEST), transport, null);
+    }
+
+    private static NithSample sample(long timestampNanos) {
+        NithSample s = new NithSample();
+        s.pitch = 1.5f;
+        s.timestampNanos = timestampNanos;
+        s.sensorTimestampNanos = timestampNanos;
+        return s;
+    }
+
+    @Test
+    public void packsTextFramesWithTimestamps() throws Exception {
+        RecordingTransport transport = new RecordingTransport();
+        SampleSender sender = sender(transport);
+        sender.setBatching(3, TimeUnit.SECONDS.toNanos(10));
+        sender.start();
+        try {
+            for (int i = 1; i <= 3; i++) sender.submit(sample(i * 1000L));
+
+            String[] frames = new String(transport.next(), StandardCharsets.UTF_8).split("\n");
+            assertEquals(3, frames.length);
+            for (int i = 0; i < 3; i++) {
+                assertTrue(frames[i].startsWith(NithPayloadEncoder.HEADER));
+                assertTrue(frames[i], frames[i].endsWith("&sensor_ts=" + (i + 1) * 1000L));
+            }
+            sender.stop(); // counters are updated after the send returns
+            assertEquals(3, sender.getSentCount());
+            assertEquals(1, sender.getDatagramCount());
+        } finally {
+            sender.stop();
+        }
+    }
+
+    @Test
+    public void flushesPartialBatchAfterHoldTime() throws Exception {
+        RecordingTransport transport = new RecordingTransport();
+        SampleSender sender = sender(transport);
+        sender.setFrameFormat(FrameFormat.BINARY_FLOAT);
+        sender.setBatching(10, TimeUnit.MILLISECONDS.toNanos(20));
+        sender.start();
+        try {
+            sender.submit(sample(1));
+            sender.submit(sample(2));
+
+            byte[] datagram = transport.next();
+            assertNotNull(datagram);
+            assertEquals(2 * 36, datagram.length); // two back-to-back binary frames
+            assertEquals('N', datagram[36]);
+            assertNull(transport.datagrams.poll(50, TimeUnit.MILLISECONDS));
+        } finally {
+            sender.stop();
+        }
+    }
+
+    @Test
+    public void splitsBatchesThatWouldExceedTheDatagramLimit() throws Exception {
+        RecordingTransport transport = new RecordingTransport();
+        SampleSender sender = sender(transport);
+        sender.setBatching(100, TimeUnit.MILLISECONDS.toNanos(50));
+        sender.start();
+        try {
+            for (int i = 0; i < 40; i++) sender.submit(sample(i));
+
+            int samples = 0;
+            while (samples < 40) {
+                byte[] datagram = transport.next();
+                assertNotNull(datagram);
+                assertTrue(datagram.length <= SampleSender.MAX_DATAGRAM_BYTES);
+                samples += new String(datagram, StandardCharsets.UTF_8).split("\n").length;
+            }
+            assertEquals(40, samples);
+            assertTrue(sender.getDatagramCount() > 1);
+        } finally {
+            sender.stop();
+        }
+    }
+
+    @Test
+    public void enforcesHoldTimeWhileQueueIsNotEmpty() throws Exception {
+        RecordingTransport transport = new RecordingTransport();
+        SampleSender sender = sender(transport);
+        sender.setFrameFormat(FrameFormat.BINARY_FLOAT);
+        sender.setBatching(100, 0);
+        // Queued before the thread starts, so the queue is never empty while they are batched
+        for (int i = 0; i < 5; i++) sender.submit(sample(i));
+        sender.start();
+        try {
+            for (int i = 0; i < 5; i++) {
+                byte[] datagram = transport.next();
+                assertNotNull(datagram);
+                assertEquals(36, datagram.length); // each sample was already past its hold time
+            }
+        } finally {
+            sender.stop();
+        }
+    }
+
+    @Test
+    public void countsStaleBatchedSamples() throws Exception {
+        RecordingTransport transport = new RecordingTransport();
+        SampleSender sender = sender(transport);
+        long now = TimeUnit.SECONDS.toNanos(1);
+        sender.setTimeSource(() -> now);
+        sender.setBatching(2, TimeUnit.MILLISECONDS.toNanos(10));
+        sender.start();
+        try {
+            sender.submit(sample(now - TimeUnit.MILLISECONDS.toNanos(5)));
+            sender.submit(sample(now - TimeUnit.MILLISECONDS.toNanos(100)));
+            assertNotNull(transport.next());
+            sender.stop(); // counters are updated on the sender thread
+            assertEquals(1, sender.getStaleSampleCount());
+        } finally {
+            sender.stop();
+        }
+    }
+
+    @Test
+    public void addsSequenceAndTimestampsToTextFrames() throws Exception {
+        RecordingTransport transport = new RecordingTransport();
+        SampleSender sender = sender(transport);
+        sender.setFrameMetadata(true);
+        sender.setTimeSource(() -> 5000L);
+        sender.start();
+        try {
+            sender.submit(sample(1000L));
+            sender.submit(sample(2000L));
+
+            String first = new String(transport.next(), StandardCharsets.UTF_8);
+            String second = new String(transport.next(), StandardCharsets.UTF_8);
+            assertTrue(first, first.endsWith("^dev=null&phone_ip=null&seq=0&sensor_ts=1000&send_ts=5000"));
+            assertTrue(second, second.endsWith("&seq=1&sensor_ts=2000&send_ts=5000"));
+        } finally {
+            sender.stop();
+        }
+    }
+
+    @Test
+    public void reportsSendErrorsOnChangeAndThenPeriodically() throws Exception {
+        AtomicLong now = new AtomicLong();
+        BlockingQueue<Boolean> attempts = new LinkedBlockingQueue<>();
+        AtomicBoolean failing = new AtomicBoolean(true);
+        FrameTransport transport = (buffer, length) -> {
+            boolean fail = failing.get();
+            attempts.add(fail);
+            if (fail) throw new PortUnreachableException();
+        };
+        BlockingQueue<String> reports = new LinkedBlockingQueue<>();
+        SampleSender sender = new SampleSender(
+                new SampleRingBuffer(256, SampleRingBuffer.OverflowPolicy.DROP_OLDEST), transport,
+                new SampleSender.Listener() {
+                    @Override
+                    public void onSendError(IOException e) {
+                        reports.add("error");
+                    }
+
+                    @Override
+                    public void onSendRecovered(long failedSends) {
+                        reports.add("recovered " + failedSends);
+                    }
+                });
+        sender.setTimeSource(now::get);
+        sender.start();
+        try {
+            // One sample at a time, so each send sees the clock set before it
+            for (int i = 0; i < 100; i++) {
+                now.addAndGet(TimeUnit.MILLISECONDS.toNanos(10));
+                sender.submit(sample(i));
+                assertNotNull(attempts.poll(2, TimeUnit.SECONDS));
+            }
+            now.addAndGet(TimeUnit.MILLISECONDS.toNanos(SampleSender.ERROR_REPORT_INTERVAL_MS));
+            sender.submit(sample(100));
+            assertNotNull(attempts.poll(2, TimeUnit.SECONDS));
+            failing.set(false);
+            sender.submit(sample(101));
+            assertNotNull(attempts.poll(2, TimeUnit.SECONDS));
+            sender.submit(sample(102));
+            assertNotNull(attempts.poll(2, TimeUnit.SECONDS));
+            sender.stop();
+
+            assertEquals("error", reports.poll());
+            assertEquals("error", reports.poll()); // the reminder after the interval
+            assertEquals("recovered 101", reports.poll());
+            assertNull(reports.poll());
+            assertEquals(101, sender.getSendErrorCount());
+        } finally {
+            sender.stop();
+        }
+    }
+}
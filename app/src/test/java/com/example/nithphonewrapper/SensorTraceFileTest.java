@@ -0,0 +1,163 @@
+package com.example.nithphonewrapper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SensorTraceFileTest {
+
+    private File file;
+
+    @Before
+    public void createFile() throws IOException {
+        file = File.createTempFile("nith-trace", ".bin");
+    }
+
+    @After
+    public void deleteFile() {
+        file.delete();
+    }
+
+    private static void assertSameEvents(SensorTrace expected, SensorTrace actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.type(i), actual.type(i));
+            assertEquals(expected.timestampNanos(i), actual.timestampNanos(i));
+            assertEquals(expected.accuracy(i), actual.accuracy(i));
+            assertEquals(expected.valueCount(i), actual.valueCount(i));
+            for (int c = 0; c < expected.valueCount(i); c++) {
+                assertEquals(expected.value(i, c), actual.value(i, c), 0f);
+            }
+        }
+    }
+
+    @Test
+    public void roundTripsSyntheticTrace() throws Exception {
+        SensorTrace trace = SensorTrace.synthetic(100, 200, TimeUnit.SECONDS.toNanos(1));
+        SensorTraceFile.write(trace, file);
+
+        assertEquals(SensorTraceFile.fileSize(trace.size()), file.length());
+        assertSameEvents(trace, SensorTraceFile.read(file));
+        assertTrue(SensorTraceFile.readCreatedMillis(file) > 0);
+    }
+
+    @Test
+    public void headerFollowsDocumentedLayout() throws Exception {
+        try (SensorTraceRecorder recorder = new SensorTraceRecorder(file, 10)) {
+            recorder.onSensorEvent(SensorSource.TYPE_GYROSCOPE, 123456789L, new float[] {1f, 2f, 3f}, 3, 2);
+        }
+
+        ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(file.toPath())).order(ByteOrder.LITTLE_ENDIAN);
+        byte[] magic = new byte[8];
+        bytes.get(magic);
+        assertArrayEquals("NITHTRC1".getBytes("US-ASCII"), magic);
+        assertEquals(1, bytes.getInt(8));
+        assertEquals(40, bytes.getInt(12));
+        assertEquals(1, bytes.getLong(16));
+        assertEquals(SensorSource.TYPE_GYROSCOPE, bytes.getInt(32));
+        assertEquals(2, bytes.getInt(36));
+        assertEquals(123456789L, bytes.getLong(40));
+        assertEquals(3, bytes.getInt(48));
+        assertEquals(1f, bytes.getFloat(52), 0f);
+        assertEquals(3f, bytes.getFloat(60), 0f);
+        assertEquals(0f, bytes.getFloat(64), 0f);
+    }
+
+    @Test
+    public void countsEventsAfterTheFileIsFull() throws Exception {
+        SensorTraceRecorder recorder = new SensorTraceRecorder(file, 2);
+        float[] values = {0.1f, 0.2f, 0.3f, 0.9f, 0f};
+        for (int i = 0; i < 5; i++) {
+            recorder.onSensorEvent(SensorSource.TYPE_ROTATION_VECTOR, i, values, 5, 3);
+        }
+        assertTrue(recorder.isFull());
+        assertEquals(2, recorder.getEventCount());
+        assertEquals(3, recorder.getDroppedCount());
+        recorder.close();
+
+        SensorTrace read = SensorTraceFile.read(file);
+        assertEquals(2, read.size());
+        assertEquals(1L, read.timestampNanos(1));
+    }
+
+    @Test
+    public void readsPartialRecordingBeforeClose() throws Exception {
+        try (SensorTraceRecorder recorder = new SensorTraceRecorder(file, 100)) {
+            recorder.onSensorEvent(SensorSource.TYPE_GYROSCOPE, 42L, new float[] {1f, 2f, 3f}, 3, 3);
+            // Still open: the header already holds the count
+            SensorTrace read = SensorTraceFile.read(file);
+            assertEquals(1, read.size());
+            assertEquals(42L, read.timestampNanos(0));
+        }
+    }
+
+    @Test
+    public void closeWhileWritingLeavesConsistentTrace() throws Exception {
+        SensorTraceRecorder recorder = new SensorTraceRecorder(file, 1_000_000);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        AtomicBoolean stop = new AtomicBoolean();
+        Thread writer = new Thread(() -> {
+            float[] values = {0.1f, 0.2f, 0.3f, 0.9f, 0f};
+            try {
+                for (long t = 0; !stop.get(); t++) {
+                    recorder.onSensorEvent(SensorSource.TYPE_ROTATION_VECTOR, t, values, 5, 3);
+                }
+            } catch (Throwable e) {
+                failure.set(e);
+            }
+        }, "trace-writer");
+        writer.start();
+        while (recorder.getEventCount() < 1000) {
+            Thread.yield();
+        }
+        recorder.close();
+        int countAtClose = recorder.getEventCount();
+        Thread.sleep(20);
+        stop.set(true);
+        writer.join(2000);
+
+        assertNull(failure.get());
+        assertEquals(countAtClose, recorder.getEventCount());
+        SensorTrace read = SensorTraceFile.read(file);
+        assertEquals(countAtClose, read.size());
+        for (int i = 0; i < read.size(); i++) {
+            assertEquals(i, read.timestampNanos(i));
+            assertEquals(5, read.valueCount(i));
+        }
+    }
+
+    @Test
+    public void rejectsOtherFiles() throws Exception {
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(new byte[64]);
+        }
+        try {
+            SensorTraceFile.read(file);
+            fail("Accepted a file of zeros");
+        } catch (IOException expected) {
+            // ok
+        }
+    }
+
+    @Test
+    public void emptyRecordingReadsAsEmptyTrace() throws Exception {
+        new SensorTraceRecorder(file, 1).close();
+        assertEquals(0, SensorTraceFile.read(file).size());
+    }
+}
@@ -0,0 +1,233 @@
+package com.example.nithphonewrapper;
+
+import org.junit.Test;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TcpFrameTransportTest {
+
+    private long nowNanos = 0;
+
+    private static String readFrame(DataInputStream in) throws IOException {
+        int length = Integer.reverseBytes(in.readInt()); // little-endian prefix
+        byte[] frame = new byte[length];
+        in.readFully(frame);
+        return new String(frame, StandardCharsets.US_ASCII);
+    }
+
+    private static ServerSocket localServer() throws IOException {
+        ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        server.setSoTimeout(2000);
+        return server;
+    }
+
+    @Test
+    public void sendsLengthPrefixedFrames() throws Exception {
+        try (ServerSocket server = localServer()) {
+            TcpFrameTransport transport = new TcpFrameTransport(
+                    new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getLocalPort()), 1000, () -> nowNanos);
+            try {
+                byte[] frame = "frame-one-with-garbage".getBytes(StandardCharsets.US_ASCII);
+                transport.send(frame, 9);
+                try (Socket accepted = server.accept()) {
+                    accepted.setSoTimeout(2000);
+                    DataInputStream in = new DataInputStream(accepted.getInputStream());
+                    transport.send(frame, 5);
+                    byte[] large = new byte[5000]; // larger than the initial buffer
+                    transport.send(large, large.length);
+                    assertEquals("frame-one", readFrame(in));
+                    assertEquals("frame", readFrame(in));
+                    assertEquals(large.length, readFrame(in).length());
+                }
+                assertEquals(1, transport.getConnectCount());
+                assertEquals(0, transport.getSkippedCount());
+            } finally {
+                transport.close();
+            }
+        }
+    }
+
+    @Test
+    public void reconnectsAfterServerClosesConnection() throws Exception {
+        try (ServerSocket server = localServer()) {
+            TcpFrameTransport transport = new TcpFrameTransport(
+                    new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getLocalPort()), 1000, () -> nowNanos);
+            try {
+                byte[] frame = "x".getBytes(StandardCharsets.US_ASCII);
+                transport.send(frame, 1);
+                server.accept().close();
+
+                // The first writes may still succeed until the peer's reset arrives
+                boolean failed = false;
+                for (int i = 0; i < 100 && !failed; i++) {
+                    try {
+                        transport.send(frame, 1);
+                        Thread.sleep(10);
+                    } catch (IOException expected) {
+                        failed = true;
+                    }
+                }
+                assertTrue("Write to a closed connection never failed", failed);
+                assertFalse(transport.isConnected());
+
+                // Within the reconnect interval frames are skipped, not thrown
+                nowNanos += TimeUnit.MILLISECONDS.toNanos(500);
+                transport.send(frame, 1);
+                assertEquals(1, transport.getSkippedCount());
+
+                nowNanos += TimeUnit.MILLISECONDS.toNanos(600);
+                transport.send("again".getBytes(StandardCharsets.US_ASCII), 5);
+                try (Socket accepted = server.accept()) {
+                    accepted.setSoTimeout(2000);
+                    assertEquals("again", readFrame(new DataInputStream(accepted.getInputStream())));
+                }
+                assertEquals(2, transport.getConnectCount());
+            } finally {
+                transport.close();
+            }
+        }
+    }
+
+    @Test
+    public void failedConnectWaitsForInterval() throws Exception {
+        InetSocketAddress closed;
+        try (ServerSocket server = localServer()) {
+            closed = new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getLocalPort());
+        }
+        TcpFrameTransport transport = new TcpFrameTransport(closed, 1000, () -> nowNanos);
+        try {
+            byte[] frame = "x".getBytes(StandardCharsets.US_ASCII);
+            try {
+                transport.send(frame, 1);
+                fail("Connected to a closed port");
+            } catch (IOException expected) {
+                // ok
+            }
+            transport.send(frame, 1);
+            transport.send(frame, 1);
+            assertEquals(2, transport.getSkippedCount());
+            assertEquals(0, transport.getConnectCount());
+
+            nowNanos += TimeUnit.SECONDS.toNanos(1);
+            try {
+                transport.send(frame, 1);
+                fail("Connected to a closed port");
+            } catch (IOException expected) {
+                // ok
+            }
+        } finally {
+            transport.close();
+        }
+    }
+
+    @Test
+    public void recordsWriteLatency() throws Exception {
+        try (ServerSocket server = localServer()) {
+            TcpFrameTransport transport = new TcpFrameTransport(
+                    new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getLocalPort()), 1000,
+                    () -> nowNanos += 2000);
+            MetricsRegistry metrics = new MetricsRegistry();
+            transport.setMetrics(metrics);
+            try {
+                byte[] frame = "abc".getBytes(StandardCharsets.US_ASCII);
+                for (int i = 0; i < 3; i++) {
+                    transport.send(frame, frame.length);
+                }
+                try (Socket accepted = server.accept()) {
+                    accepted.setSoTimeout(2000);
+                    DataInputStream in = new DataInputStream(accepted.getInputStream());
+                    for (int i = 0; i < 3; i++) {
+                        assertEquals("abc", readFrame(in));
+                    }
+                }
+                LatencyHistogram writes = metrics.histogram(TcpFrameTransport.METRIC_WRITE);
+                assertEquals(3, writes.getCount());
+                assertEquals(2000, writes.getMaxNanos());
+                assertEquals(1, metrics.value(TcpFrameTransport.METRIC_CONNECTS));
+            } finally {
+                transport.close();
+            }
+        }
+    }
+
+    @Test
+    public void dropsFramesWhileReaderIsBehind() throws Exception {
+        try (ServerSocket server = localServer()) {
+            TcpFrameTransport transport = new TcpFrameTransport(
+                    new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getLocalPort()), 1000, () -> nowNanos);
+            try {
+                byte[] frame = new byte[1000];
+                ByteBuffer id = ByteBuffer.wrap(frame);
+                transport.send(frame, 0);
+                try (Socket accepted = server.accept()) {
+                    accepted.setSoTimeout(2000);
+                    DataInputStream in = new DataInputStream(accepted.getInputStream());
+                    assertEquals("", readFrame(in));
+
+                    // Nobody reads: the socket buffers fill up, sends must keep returning
+                    int total = 5000;
+                    for (int i = 0; i < total; i++) {
+                        id.putInt(0, i);
+                        transport.send(frame, frame.length);
+                    }
+                    long dropped = transport.getDroppedCount();
+                    assertTrue("No frame dropped", dropped > 0);
+
+                    // What was written is whole frames in order; the last one may still be pending
+                    int previous = -1;
+                    for (long i = 0; i < total - dropped - 1; i++) {
+                        int length = Integer.reverseBytes(in.readInt());
+                        assertEquals(frame.length, length);
+                        byte[] received = new byte[length];
+                        in.readFully(received);
+                        int current = ByteBuffer.wrap(received).getInt();
+                        assertTrue(current + " after " + previous, current > previous);
+                        previous = current;
+                    }
+                }
+                assertEquals(1, transport.getConnectCount());
+            } finally {
+                transport.close();
+            }
+        }
+    }
+
+    @Test
+    public void closedTransportDoesNotConnect() throws Exception {
+        try (ServerSocket server = localServer()) {
+            TcpFrameTransport transport = new TcpFrameTransport(
+                    new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getLocalPort()), 1000, () -> nowNanos);
+            transport.close();
+            transport.send(new byte[1], 1);
+            assertEquals(0, transport.getConnectCount());
+            assertEquals(1, transport.getSkippedCount());
+            assertFalse(transport.isConnected());
+        }
+    }
+
+    @Test
+    public void rejectsInvalidInterval() {
+        InetSocketAddress server = new InetSocketAddress(InetAddress.getLoopbackAddress(), 20103);
+        for (long interval : new long[] {0, -1}) {
+            try {
+                new TcpFrameTransport(server, interval, () -> nowNanos);
+                fail("Accepted " + interval);
+            } catch (IllegalArgumentException expected) {
+                // ok
+            }
+        }
+    }
+}
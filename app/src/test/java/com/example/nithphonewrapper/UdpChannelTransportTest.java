@@ -0,0 +1,92 @@
+package com.example.nithphonewrapper;
+
+import org.junit.Test;
+
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.MulticastSocket;
+import java.net.NetworkInterface;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class UdpChannelTransportTest {
+
+    private static String receive(DatagramSocket socket) throws Exception {
+        byte[] buffer = new byte[256];
+        DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+        socket.receive(packet);
+        return new String(packet.getData(), 0, packet.getLength(), StandardCharsets.US_ASCII);
+    }
+
+    @Test
+    public void sendsToTargetAndFollowsRetarget() throws Exception {
+        InetAddress loopback = InetAddress.getLoopbackAddress();
+        try (DatagramSocket first = new DatagramSocket(0, loopback);
+             DatagramSocket second = new DatagramSocket(0, loopback)) {
+            first.setSoTimeout(2000);
+            second.setSoTimeout(2000);
+
+            UdpChannelTransport transport = new UdpChannelTransport(new InetSocketAddress(loopback, first.getLocalPort()));
+            try {
+                byte[] frame = "hello-frame-with-trailing-garbage".getBytes(StandardCharsets.US_ASCII);
+                transport.send(frame, 11);
+                assertEquals("hello-frame", receive(first));
+
+                transport.setTarget(new InetSocketAddress(loopback, second.getLocalPort()));
+                transport.send(frame, 5);
+                assertEquals("hello", receive(second));
+            } finally {
+                transport.close();
+            }
+        }
+    }
+
+    @Test
+    public void multicastsToLoopbackListeners() throws Exception {
+        NetworkInterface loopback = NetworkInterface.getByInetAddress(InetAddress.getLoopbackAddress());
+        InetAddress group = InetAddress.getByName("239.255.20.103");
+        try (MulticastSocket first = new MulticastSocket(0)) {
+            first.setSoTimeout(2000);
+            first.joinGroup(new InetSocketAddress(group, 0), loopback);
+            try (MulticastSocket second = new MulticastSocket(first.getLocalPort())) {
+                second.setSoTimeout(2000);
+                second.joinGroup(new InetSocketAddress(group, 0), loopback);
+
+                // TTL 0 keeps the frames on this host
+                UdpChannelTransport transport = new UdpChannelTransport(
+                        new InetSocketAddress(group, first.getLocalPort()), 0, loopback);
+                try {
+                    byte[] frame = "group-frame".getBytes(StandardCharsets.US_ASCII);
+                    transport.send(frame, frame.length);
+                    // One transmission, every member gets it
+                    assertEquals("group-frame", receive(first));
+                    assertEquals("group-frame", receive(second));
+                } finally {
+                    transport.close();
+                }
+            }
+        }
+    }
+
+    @Test
+    public void rejectsInvalidMulticastSettings() throws Exception {
+        InetSocketAddress group = new InetSocketAddress(InetAddress.getByName("239.255.20.103"), 20103);
+        Object[][] invalid = {
+                {new InetSocketAddress(InetAddress.getLoopbackAddress(), 20103), 1},
+                {group, -1},
+                {group, 256},
+        };
+        for (Object[] p : invalid) {
+            try {
+                new UdpChannelTransport((InetSocketAddress) p[0], (Integer) p[1], null).close();
+                fail("Accepted " + p[0] + ", TTL " + p[1]);
+            } catch (IllegalArgumentException expected) {
+                // ok
+            }
+        }
+    }
+}
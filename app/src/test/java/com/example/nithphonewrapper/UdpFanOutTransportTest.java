@@ -0,0 +1,172 @@
+package com.example.nithphonewrapper;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class UdpFanOutTransportTest {
+
+    private long nowNanos = 0;
+
+    private static String receive(DatagramSocket socket) throws Exception {
+        byte[] buffer = new byte[256];
+        DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+        socket.receive(packet);
+        return new String(packet.getData(), 0, packet.getLength(), StandardCharsets.US_ASCII);
+    }
+
+    @Test
+    public void sendsEachFrameToEveryReceiver() throws Exception {
+        InetAddress loopback = InetAddress.getLoopbackAddress();
+        try (DatagramSocket first = new DatagramSocket(0, loopback);
+             DatagramSocket second = new DatagramSocket(0, loopback)) {
+            first.setSoTimeout(2000);
+            second.setSoTimeout(2000);
+
+            UdpFanOutTransport transport = new UdpFanOutTransport(1000, () -> nowNanos, null);
+            try {
+                transport.add(new InetSocketAddress(loopback, first.getLocalPort()));
+                transport.add(new InetSocketAddress(loopback, second.getLocalPort()));
+                transport.add(new InetSocketAddress(loopback, first.getLocalPort())); // duplicate
+                byte[] frame = "frame-one-with-garbage".getBytes(StandardCharsets.US_ASCII);
+                transport.send(frame, 9);
+                assertEquals("frame-one", receive(first));
+                assertEquals("frame-one", receive(second));
+                assertEquals(2, transport.getReceivers().size());
+
+                transport.remove(new InetSocketAddress(loopback, first.getLocalPort()));
+                transport.send(frame, 5);
+                assertEquals("frame", receive(second));
+                assertEquals(1, transport.getReceivers().size());
+                assertEquals(2, transport.getReceivers().get(0).getSentCount());
+            } finally {
+                transport.close();
+            }
+        }
+    }
+
+    @Test
+    public void removesReceiverThatKeepsFailing() throws Exception {
+        InetAddress loopback = InetAddress.getLoopbackAddress();
+        List<InetSocketAddress> removed = new ArrayList<>();
+        try (DatagramSocket live = new DatagramSocket(0, loopback)) {
+            live.setSoTimeout(2000);
+            InetSocketAddress dead;
+            try (DatagramSocket closed = new DatagramSocket(0, loopback)) {
+                dead = new InetSocketAddress(loopback, closed.getLocalPort());
+            }
+            UdpFanOutTransport transport = new UdpFanOutTransport(1000, () -> nowNanos,
+                    (address, lastError) -> removed.add(address));
+            try {
+                transport.add(dead);
+                transport.add(new InetSocketAddress(loopback, live.getLocalPort()));
+                byte[] frame = "x".getBytes(StandardCharsets.US_ASCII);
+                // The dead receiver's ICMP port-unreachable fails its following writes
+                for (int i = 0; i < 100 && removed.isEmpty(); i++) {
+                    transport.send(frame, 1); // never throws: the live receiver gets every frame
+                    assertEquals("x", receive(live));
+                    nowNanos += TimeUnit.MILLISECONDS.toNanos(300);
+                    Thread.sleep(5);
+                }
+                assertEquals(1, removed.size());
+                assertEquals(dead, removed.get(0));
+                assertEquals(1, transport.getReceivers().size());
+                assertEquals(1, transport.getRemovedCount());
+            } finally {
+                transport.close();
+            }
+        }
+    }
+
+    @Test
+    public void keepsPinnedReceiverThatKeepsFailing() throws Exception {
+        InetAddress loopback = InetAddress.getLoopbackAddress();
+        List<InetSocketAddress> removed = new ArrayList<>();
+        try (DatagramSocket live = new DatagramSocket(0, loopback)) {
+            live.setSoTimeout(2000);
+            InetSocketAddress dead;
+            try (DatagramSocket closed = new DatagramSocket(0, loopback)) {
+                dead = new InetSocketAddress(loopback, closed.getLocalPort());
+            }
+            UdpFanOutTransport transport = new UdpFanOutTransport(1000, () -> nowNanos,
+                    (address, lastError) -> removed.add(address));
+            try {
+                transport.add(dead);
+                transport.addPinned(dead); // already in the set: pins it
+                transport.add(new InetSocketAddress(loopback, live.getLocalPort()));
+                byte[] frame = "x".getBytes(StandardCharsets.US_ASCII);
+                for (int i = 0; i < 50; i++) {
+                    transport.send(frame, 1);
+                    assertEquals("x", receive(live));
+                    nowNanos += TimeUnit.MILLISECONDS.toNanos(300);
+                    Thread.sleep(2);
+                }
+                assertTrue(removed.isEmpty());
+                assertEquals(2, transport.getReceivers().size());
+                assertTrue(transport.getReceivers().get(0).getErrorCount() > 0);
+
+                transport.remove(dead);
+                transport.send(frame, 1);
+                assertEquals(1, transport.getReceivers().size());
+            } finally {
+                transport.close();
+            }
+        }
+    }
+
+    @Test
+    public void failsOnlyWhenNoReceiverGotTheFrame() throws Exception {
+        InetAddress loopback = InetAddress.getLoopbackAddress();
+        InetSocketAddress dead;
+        try (DatagramSocket closed = new DatagramSocket(0, loopback)) {
+            dead = new InetSocketAddress(loopback, closed.getLocalPort());
+        }
+        UdpFanOutTransport transport = new UdpFanOutTransport(60_000, () -> nowNanos, null);
+        try {
+            try {
+                transport.send(new byte[1], 1);
+                fail("Sent without receivers");
+            } catch (IOException expected) {
+                // ok
+            }
+            assertEquals(1, transport.getFramesWithoutReceivers());
+            transport.add(dead);
+            byte[] frame = new byte[1];
+            int errors = 0;
+            for (int i = 0; i < 100 && errors == 0; i++) {
+                try {
+                    transport.send(frame, 1);
+                    Thread.sleep(5);
+                } catch (IOException expected) {
+                    errors++;
+                }
+            }
+            assertEquals(1, errors);
+            assertTrue(transport.getReceivers().get(0).getErrorCount() > 0);
+        } finally {
+            transport.close();
+        }
+    }
+
+    @Test
+    public void rejectsInvalidTimeout() {
+        try {
+            new UdpFanOutTransport(0, () -> 0, null);
+            fail("Accepted timeout 0");
+        } catch (IllegalArgumentException expected) {
+            // ok
+        }
+    }
+}
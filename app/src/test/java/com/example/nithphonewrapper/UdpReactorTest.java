@@ -0,0 +1,126 @@
+package com.example.nithphonewrapper;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.DatagramChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class UdpReactorTest {
+
+    private static void send(DatagramSocket socket, String message, int port) throws Exception {
+        byte[] data = message.getBytes(StandardCharsets.US_ASCII);
+        socket.send(new DatagramPacket(data, data.length, InetAddress.getLoopbackAddress(), port));
+    }
+
+    private static int port(DatagramChannel channel) throws Exception {
+        return ((InetSocketAddress) channel.getLocalAddress()).getPort();
+    }
+
+    @Test
+    public void dispatchesEachChannelToItsHandlerOnOneThread() throws Exception {
+        UdpReactor reactor = new UdpReactor();
+        BlockingQueue<String> received = new LinkedBlockingQueue<>();
+        BlockingQueue<String> threads = new LinkedBlockingQueue<>();
+        reactor.start();
+        try (DatagramSocket client = new DatagramSocket(0, InetAddress.getLoopbackAddress())) {
+            DatagramChannel first = reactor.bind(0, 8, (datagram, source) -> {
+                received.add("first:" + new String(datagram.array(), datagram.position(), datagram.remaining(),
+                        StandardCharsets.US_ASCII) + ":" + (source.getPort() == client.getLocalPort()));
+                threads.add(Thread.currentThread().getName());
+            });
+            DatagramChannel second = reactor.bind(0, 64, (datagram, source) -> {
+                received.add("second:" + datagram.remaining());
+                threads.add(Thread.currentThread().getName());
+            });
+
+            send(client, "hello", port(first));
+            assertEquals("first:hello:true", received.poll(2, TimeUnit.SECONDS));
+            send(client, "0123456789abcdef", port(second));
+            assertEquals("second:16", received.poll(2, TimeUnit.SECONDS));
+            // Truncated to the channel's buffer size; the buffer is reused
+            send(client, "0123456789abcdef", port(first));
+            assertEquals("first:01234567:true", received.poll(2, TimeUnit.SECONDS));
+            send(client, "hi", port(first));
+            assertEquals("first:hi:true", received.poll(2, TimeUnit.SECONDS));
+
+            assertEquals(1, threads.stream().distinct().count());
+            assertEquals("NITH-UdpReactor", threads.peek());
+        } finally {
+            reactor.stop();
+        }
+    }
+
+    @Test
+    public void survivesHandlerFailures() throws Exception {
+        UdpReactor reactor = new UdpReactor();
+        BlockingQueue<String> received = new LinkedBlockingQueue<>();
+        reactor.start();
+        try (DatagramSocket client = new DatagramSocket(0, InetAddress.getLoopbackAddress())) {
+            DatagramChannel channel = reactor.bind(0, 64, (datagram, source) -> {
+                if (datagram.remaining() == 0) throw new IllegalStateException("empty");
+                received.add(String.valueOf(datagram.remaining()));
+            });
+            send(client, "", port(channel));
+            send(client, "abc", port(channel));
+            assertEquals("3", received.poll(2, TimeUnit.SECONDS));
+            assertEquals(1, reactor.getErrorCount());
+        } finally {
+            reactor.stop();
+        }
+    }
+
+    @Test
+    public void stopClosesChannelsAndAllowsRestart() throws Exception {
+        UdpReactor reactor = new UdpReactor();
+        try {
+            reactor.bind(0, 64, (datagram, source) -> { });
+            fail("Bound before start");
+        } catch (IllegalStateException expected) {
+            // ok
+        }
+
+        reactor.start();
+        DatagramChannel channel = reactor.bind(0, 64, (datagram, source) -> { });
+        int port = port(channel);
+        CountDownLatch ran = new CountDownLatch(1);
+        reactor.execute(ran::countDown);
+        assertTrue(ran.await(2, TimeUnit.SECONDS));
+        reactor.stop();
+        assertFalse(reactor.isRunning());
+        assertFalse(channel.isOpen());
+
+        // The port is free again, e.g. for the next onResume
+        reactor.start();
+        try {
+            BlockingQueue<String> received = new LinkedBlockingQueue<>();
+            reactor.bind(port, 64, (datagram, source) -> received.add("again"));
+            try {
+                reactor.bind(port, 64, (datagram, source) -> received.add("twice"));
+                fail("Bound a port in use");
+            } catch (IOException expected) {
+                // ok
+            }
+            try (DatagramSocket client = new DatagramSocket(0, InetAddress.getLoopbackAddress())) {
+                send(client, "x", port);
+                assertEquals("again", received.poll(2, TimeUnit.SECONDS));
+            }
+        } finally {
+            reactor.stop();
+        }
+        reactor.stop(); // idempotent
+    }
+}
@@ -0,0 +1,156 @@
+package com.example.nithphonewrapper;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class VibrationCommandParserTest {
+
+    private static final int DEFAULT = -1;
+
+    private final VibrationCommandParser parser = new VibrationCommandParser();
+
+    /**
+     * The String.split parser the listener used before the in-place one, kept as the reference for
+     * {@link #agreesWithStringParser}: {issuer, intensity, duration}, or null if rejected.
+     */
+    private static Object[] referenceParse(String command) {
+        if (!command.startsWith("$") || !command.endsWith("^")) return null;
+        String[] mainParts = command.substring(1, command.length() - 1).split("\\|");
+        if (mainParts.length < 3 || !"COM".equalsIgnoreCase(mainParts[1])) return null;
+        int intensity = DEFAULT;
+        long duration = VibrationCommandParser.DEFAULT_DURATION_MS;
+        try {
+            for (String param : mainParts[2].split("&")) {
+                String[] keyValue = param.split("=", 2);
+                if (keyValue.length != 2) continue;
+                String key = keyValue[0].trim();
+                if ("vibration_intensity".equalsIgnoreCase(key)) {
+                    intensity = Integer.parseInt(keyValue[1].trim());
+                } else if ("vibration_duration".equalsIgnoreCase(key)) {
+                    duration = Long.parseLong(keyValue[1].trim());
+                }
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        if (intensity < VibrationCommandParser.MIN_INTENSITY || intensity > VibrationCommandParser.MAX_INTENSITY) {
+            intensity = DEFAULT;
+        }
+        if (duration < 1 || duration > VibrationCommandParser.MAX_DURATION_MS) return null;
+        return new Object[] {mainParts[0], intensity, duration};
+    }
+
+    private boolean parse(String command) {
+        byte[] bytes = command.getBytes(StandardCharsets.US_ASCII);
+        // Leave some junk around the command, as in a reused receive buffer
+        byte[] buffer = new byte[bytes.length + 8];
+        buffer[0] = '|';
+        buffer[buffer.length - 1] = '^';
+        System.arraycopy(bytes, 0, buffer, 3, bytes.length);
+        return parser.parse(buffer, 3, bytes.length, DEFAULT);
+    }
+
+    @Test
+    public void parsesInPlace() {
+        assertTrue(parse("$HeadBower-1.0|COM|vibration_intensity=200&vibration_duration=100^"));
+        assertEquals("HeadBower-1.0", parser.issuer());
+        assertEquals(200, parser.getIntensity());
+        assertEquals(100, parser.getDurationMs());
+        assertNull(parser.getFailure());
+        assertFalse(parser.isIntensityReplaced());
+
+        assertTrue(parse("$App-2|com|VIBRATION_DURATION= 50 &vibration_intensity=999^"));
+        assertEquals(DEFAULT, parser.getIntensity());
+        assertEquals(50, parser.getDurationMs());
+        assertTrue(parser.isIntensityReplaced());
+        assertEquals(999, parser.getRejectedIntensity());
+
+        assertTrue(parse("$App-2|COM|vibration_intensity=10^"));
+        assertEquals(VibrationCommandParser.DEFAULT_DURATION_MS, parser.getDurationMs());
+    }
+
+    @Test
+    public void reportsWhyCommandsAreRejected() {
+        assertFalse(parse("HeadBower-1.0|COM|vibration_duration=100^"));
+        assertEquals(VibrationCommandParser.MISSING_DELIMITERS, parser.getFailure());
+        assertFalse(parse("$HeadBower-1.0|COM|vibration_duration=100"));
+        assertEquals(VibrationCommandParser.MISSING_DELIMITERS, parser.getFailure());
+        assertFalse(parse("$HeadBower-1.0|COM|^"));
+        assertEquals(VibrationCommandParser.MISSING_PARTS, parser.getFailure());
+        assertFalse(parse("$HeadBower-1.0|OPR|vibration_duration=100^"));
+        assertEquals(VibrationCommandParser.NOT_COM, parser.getFailure());
+        assertFalse(parse("$HeadBower-1.0|COM|vibration_intensity=99999999999^"));
+        assertEquals(VibrationCommandParser.INVALID_NUMBER, parser.getFailure());
+        assertFalse(parse("$HeadBower-1.0|COM|vibration_duration=abc^"));
+        assertEquals(VibrationCommandParser.INVALID_NUMBER, parser.getFailure());
+        assertFalse(parse("$HeadBower-1.0|COM|vibration_duration=0^"));
+        assertEquals(VibrationCommandParser.INVALID_DURATION, parser.getFailure());
+        assertFalse(parse("$HeadBower-1.0|COM|vibration_duration=10001^"));
+        assertEquals(VibrationCommandParser.INVALID_DURATION, parser.getFailure());
+        assertFalse(parser.parse(new byte[4], 0, 0, DEFAULT));
+    }
+
+    @Test
+    public void parsesWaveform() {
+        assertTrue(parse("$HeadBower-1.0|COM|vibration_waveform=40:255, 20:0 ,40 : 128^"));
+        assertEquals(3, parser.getWaveformLength());
+        assertEquals(40, parser.getWaveformTimings()[0]);
+        assertEquals(0, parser.getWaveformAmplitudes()[1]);
+        assertEquals(128, parser.getWaveformAmplitudes()[2]);
+
+        // A plain command after a waveform is a one-shot again
+        assertTrue(parse("$HeadBower-1.0|COM|vibration_duration=100^"));
+        assertEquals(0, parser.getWaveformLength());
+
+        StringBuilder longest = new StringBuilder("$A|COM|vibration_waveform=1:1");
+        for (int i = 1; i < VibrationCommandParser.MAX_WAVEFORM_STEPS; i++) longest.append(",10000:255");
+        assertTrue(parse(longest + "^"));
+        assertEquals(VibrationCommandParser.MAX_WAVEFORM_STEPS, parser.getWaveformLength());
+
+        String[] invalid = {"", "40", "40:", ":40", "40:256", "0:10", "10001:10", "-5:10", "10:-1",
+                "40:255,", "40:255,,20:0", "a:1", longest.substring(26) + ",1:1"};
+        for (String waveform : invalid) {
+            assertFalse(waveform, parse("$A|COM|vibration_waveform=" + waveform + "^"));
+            assertEquals(waveform, VibrationCommandParser.INVALID_WAVEFORM, parser.getFailure());
+            assertEquals(0, parser.getWaveformLength());
+        }
+    }
+
+    /** Random commands built from the grammar's pieces: same verdict and values as the String parser. */
+    @Test
+    public void agreesWithStringParser() {
+        String[] pieces = {"$", "^", "|", "&", "=", " ", "COM", "com", "OPR", "HeadBower-1.0", "",
+                "vibration_intensity", "VIBRATION_Duration", "vibration_duration", "x",
+                "0", "1", "100", "255", "256", "-5", "+7", "10000", "10001", "abc",
+                "2147483647", "2147483648", "-2147483648", "9223372036854775807", "9223372036854775808"};
+        Random random = new Random(20);
+        int valid = 0;
+        for (int i = 0; i < 50_000; i++) {
+            StringBuilder sb = new StringBuilder();
+            boolean wellFormed = random.nextInt(4) != 0;
+            if (wellFormed) sb.append("$HeadBower-1.0|").append(random.nextBoolean() ? "COM" : "cOm").append('|');
+            int n = random.nextInt(10);
+            for (int k = 0; k < n; k++) sb.append(pieces[random.nextInt(pieces.length)]);
+            if (wellFormed) sb.append('^');
+            String command = sb.toString();
+
+            Object[] expected = referenceParse(command);
+            boolean accepted = parse(command);
+            assertEquals(command, expected != null, accepted);
+            if (expected != null) {
+                valid++;
+                assertEquals(command, expected[0], parser.issuer());
+                assertEquals(command, expected[1], parser.getIntensity());
+                assertEquals(command, expected[2], parser.getDurationMs());
+            }
+        }
+        assertTrue(String.valueOf(valid), valid > 1000);
+    }
+}
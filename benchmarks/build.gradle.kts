@@ -0,0 +1,73 @@
+plugins {
+    java
+    alias(libs.plugins.jmh)
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+// The app sources contain non-ASCII characters in comments; don't depend on the host's charset
+tasks.withType<JavaCompile>().configureEach {
+    options.encoding = "UTF-8"
+}
+
+// :app is an Android application module and can't be a JVM dependency. The pure-Java pipeline
+// classes it contains (no android.* imports) are compiled here straight from its source tree.
+sourceSets {
+    create("pipeline") {
+        java {
+            setSrcDirs(listOf("../app/src/main/java"))
+            include(
+                "com/example/nithphonewrapper/DeadBandFilter.java",
+                "com/example/nithphonewrapper/DiscoveryReply.java",
+                "com/example/nithphonewrapper/FixedPoint.java",
+                "com/example/nithphonewrapper/FrameFormat.java",
+                "com/example/nithphonewrapper/FrameTransport.java",
+                "com/example/nithphonewrapper/HeadTrackingPipeline.java",
+                "com/example/nithphonewrapper/LatencyHistogram.java",
+                "com/example/nithphonewrapper/MadgwickFilter.java",
+                "com/example/nithphonewrapper/MetricsRegistry.java",
+                "com/example/nithphonewrapper/MotionPredictor.java",
+                "com/example/nithphonewrapper/NithBinaryEncoder.java",
+                "com/example/nithphonewrapper/NithPayloadEncoder.java",
+                "com/example/nithphonewrapper/NithSample.java",
+                "com/example/nithphonewrapper/OneEuroFilter.java",
+                "com/example/nithphonewrapper/OrientationMath.java",
+                "com/example/nithphonewrapper/OutputClock.java",
+                "com/example/nithphonewrapper/SampleInterpolator.java",
+                "com/example/nithphonewrapper/SampleRingBuffer.java",
+                "com/example/nithphonewrapper/SampleSmoother.java",
+                "com/example/nithphonewrapper/SampleSender.java",
+                "com/example/nithphonewrapper/SensorSource.java",
+                "com/example/nithphonewrapper/SensorTrace.java",
+                "com/example/nithphonewrapper/SensorTraceFile.java",
+                "com/example/nithphonewrapper/SensorTraceRecorder.java",
+                "com/example/nithphonewrapper/UdpChannelTransport.java",
+                "com/example/nithphonewrapper/VibrationCommandParser.java",
+            )
+        }
+    }
+}
+
+dependencies {
+    jmhImplementation(sourceSets["pipeline"].output)
+}
+
+// ./gradlew :benchmarks:jmh  (results in benchmarks/build/results/jmh/results.json)
+jmh {
+    jmhVersion.set(libs.versions.jmh)
+    // The gc profiler reports gc.alloc.rate.norm, i.e. bytes allocated per operation
+    profilers.add("gc")
+    benchmarkMode.add("thrpt")
+    timeUnit.set("us")
+    fork.set(1)
+    warmupIterations.set(3)
+    iterations.set(5)
+    resultFormat.set("JSON")
+    // ./gradlew :benchmarks:jmh -PtraceFile=/path/to/nith-trace-<ms>.bin replays a recorded trace
+    findProperty("traceFile")?.let { trace ->
+        benchmarkParameters.put("traceFile", objects.listProperty<String>().value(listOf(trace.toString())))
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.nithphonewrapper.benchmarks;
+
+import com.example.nithphonewrapper.DiscoveryReply;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/** Discovery reply parsing as in handleDiscoveryResponse. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DiscoveryReplyBenchmark {
+
+    private String reply = "NITHreceiver|receiver_ip=192.168.1.50&expected_port=20103";
+    private String binaryReply = "NITHreceiver|receiver_ip=192.168.1.50&expected_port=20103&binary_format=int16";
+
+    @Benchmark
+    public DiscoveryReply parse() {
+        return DiscoveryReply.parse(reply);
+    }
+
+    @Benchmark
+    public DiscoveryReply parseWithBinaryFormat() {
+        return DiscoveryReply.parse(binaryReply);
+    }
+}
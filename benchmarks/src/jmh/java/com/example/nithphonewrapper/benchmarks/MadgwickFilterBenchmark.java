@@ -0,0 +1,52 @@
+package com.example.nithphonewrapper.benchmarks;
+
+import com.example.nithphonewrapper.MadgwickFilter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one yaw fusion step, which runs for every gyroscope event (several hundred Hz).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MadgwickFilterBenchmark {
+
+    private static final float DT = 0.005f;
+
+    private final MadgwickFilter filter = new MadgwickFilter();
+
+    // Slightly tilted, slowly turning head; magnetometer in microtesla
+    private float gx = 0.01f, gy = -0.02f, gz = 0.3f;
+    private float ax = 0.4f, ay = 1.2f, az = 9.7f;
+    private float mx = 18.5f, my = -7.2f, mz = -41.0f;
+
+    @Setup
+    public void converge() {
+        for (int i = 0; i < 1000; i++) {
+            filter.update(gx, gy, gz, ax, ay, az, mx, my, mz, DT);
+        }
+    }
+
+    /** Gyroscope + accelerometer + magnetometer, the path used when the phone has a magnetometer. */
+    @Benchmark
+    public float update() {
+        filter.update(gx, gy, gz, ax, ay, az, mx, my, mz, DT);
+        return filter.yawDegrees();
+    }
+
+    /** Gyroscope + accelerometer only. */
+    @Benchmark
+    public float updateImu() {
+        filter.updateImu(gx, gy, gz, ax, ay, az, DT);
+        return filter.yawDegrees();
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.nithphonewrapper.benchmarks;
+
+import com.example.nithphonewrapper.NithSample;
+import com.example.nithphonewrapper.OneEuroFilter;
+import com.example.nithphonewrapper.SampleSmoother;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the One Euro smoothing stage, which runs once per sample sent (up to the gyroscope rate).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class OneEuroFilterBenchmark {
+
+    private static final long STEP_NANOS = 2_000_000L; // 500 Hz
+
+    private final OneEuroFilter filter = new OneEuroFilter(1f, 0.05f, true);
+    private final SampleSmoother smoother = SampleSmoother.createOrNull(1f, 0.05f, 2f, 0.1f);
+    private final NithSample sample = new NithSample();
+    private long timestamp;
+    private int step;
+
+    /** One field. */
+    @Benchmark
+    public float filterOneValue() {
+        timestamp += STEP_NANOS;
+        return filter.filter(175f + (step++ & 15) * 0.5f, timestamp);
+    }
+
+    /** All six fields of a sample with fused yaw, as the pipeline does per sample. */
+    @Benchmark
+    public float smoothSample() {
+        timestamp += STEP_NANOS;
+        float wobble = (step++ & 15) * 0.1f;
+        sample.timestampNanos = timestamp;
+        sample.pitch = 12f + wobble;
+        sample.roll = -3f - wobble;
+        sample.hasYaw = true;
+        sample.yaw = 179f + wobble;
+        sample.velYaw = wobble;
+        sample.velPitch = -wobble;
+        sample.velRoll = 0.5f * wobble;
+        smoother.apply(sample);
+        return sample.pitch + sample.yaw + sample.velRoll;
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.nithphonewrapper.benchmarks;
+
+import com.example.nithphonewrapper.MotionPredictor;
+import com.example.nithphonewrapper.OrientationMath;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rotation vector to pitch/roll, as in onSensorChanged: getRotationMatrixFromVector followed by
+ * getOrientation (JVM port in {@link OrientationMath}), versus the direct quaternion formulas the
+ * pipeline uses, plus the optional motion prediction step that runs once per sample.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class OrientationBenchmark {
+
+    // ~20 degrees of pitch and ~35 of roll, unit quaternion plus heading accuracy
+    private final float[] rotationVector = {0.1563f, 0.2901f, 0.0432f, 0.9430f, 0f};
+    private final float[] rotationMatrix = new float[9];
+    private final float[] orientationAngles = new float[3];
+    private final MotionPredictor predictor = new MotionPredictor(TimeUnit.MILLISECONDS.toNanos(40));
+
+    /** As onSensorChanged does it: a new matrix per event. */
+    @Benchmark
+    public float[] allocatingMatrix() {
+        float[] matrix = new float[9];
+        OrientationMath.rotationVectorToEuler(rotationVector, matrix, orientationAngles);
+        return orientationAngles;
+    }
+
+    @Benchmark
+    public float[] preallocatedMatrix() {
+        OrientationMath.rotationVectorToEuler(rotationVector, rotationMatrix, orientationAngles);
+        return orientationAngles;
+    }
+
+    /** As HeadTrackingPipeline does it: only the matrix elements getOrientation needs. */
+    @Benchmark
+    public float[] directQuaternion() {
+        float x = rotationVector[0], y = rotationVector[1], z = rotationVector[2];
+        float w = OrientationMath.scalarPart(rotationVector, rotationVector.length);
+        orientationAngles[1] = OrientationMath.pitch(x, y, z, w);
+        orientationAngles[2] = OrientationMath.roll(x, y, z, w);
+        return orientationAngles;
+    }
+
+    @Benchmark
+    public float predict() {
+        predictor.predict(20f, 35f, 0.8f, -0.3f, 1.2f);
+        return predictor.getPitch() + predictor.getRoll() + predictor.getYawDelta();
+    }
+}
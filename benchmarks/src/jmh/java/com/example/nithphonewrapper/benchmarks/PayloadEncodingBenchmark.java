@@ -0,0 +1,71 @@
+package com.example.nithphonewrapper.benchmarks;
+
+import com.example.nithphonewrapper.NithBinaryEncoder;
+import com.example.nithphonewrapper.NithPayloadEncoder;
+import com.example.nithphonewrapper.NithSample;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One outgoing frame per operation: the original String.format payload versus the
+ * allocation-free text and binary encoders used by the sender thread.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PayloadEncodingBenchmark {
+
+    private static final String FORMAT =
+            "$NITHphoneWrapper-v0.2.0|OPR|head_pos_pitch=%.2f&head_pos_roll=%.2f&head_vel_yaw=%.4f&head_vel_pitch=%.4f&head_vel_roll=%.4f^dev=%s&phone_ip=%s";
+
+    private final NithPayloadEncoder encoder = new NithPayloadEncoder();
+    private final NithBinaryEncoder binaryEncoder = new NithBinaryEncoder();
+    private final NithSample sample = new NithSample();
+    private String deviceInfo = "Google_Pixel 7";
+    private String phoneIp = "192.168.1.23";
+    private long sequence;
+
+    @Setup
+    public void setUp() {
+        encoder.setExtra(deviceInfo, phoneIp);
+        sample.pitch = -12.345678f;
+        sample.roll = 179.98765f;
+        sample.velYaw = 0.0123456f;
+        sample.velPitch = -1.2345678f;
+        sample.velRoll = 3.1415927f;
+        sample.timestampNanos = 123456789012345L;
+        sample.sensorTimestampNanos = 123456789012345L;
+    }
+
+    /** The payload as onSensorChanged used to build it. */
+    @Benchmark
+    public byte[] stringFormat() {
+        return String.format(Locale.US, FORMAT, sample.pitch, sample.roll,
+                sample.velYaw, sample.velPitch, sample.velRoll, deviceInfo, phoneIp).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public int textEncoder() {
+        return encoder.encode(sample);
+    }
+
+    @Benchmark
+    public int binaryFloat() {
+        return binaryEncoder.encode(sample, sequence++, false);
+    }
+
+    @Benchmark
+    public int binaryInt16() {
+        return binaryEncoder.encode(sample, sequence++, true);
+    }
+}
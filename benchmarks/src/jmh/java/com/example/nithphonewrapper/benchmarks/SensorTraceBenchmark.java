@@ -0,0 +1,72 @@
+package com.example.nithphonewrapper.benchmarks;
+
+import com.example.nithphonewrapper.HeadTrackingPipeline;
+import com.example.nithphonewrapper.OutputClock;
+import com.example.nithphonewrapper.SampleRingBuffer;
+import com.example.nithphonewrapper.SampleSender;
+import com.example.nithphonewrapper.SensorTrace;
+import com.example.nithphonewrapper.SensorTraceFile;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-event cost of the tracking pipeline's sensor-thread work (orientation math, interpolator
+ * history), replaying a trace recorded on a phone or, by default, a synthetic one.
+ * Pass a recording with ./gradlew :benchmarks:jmh -PtraceFile=/path/to/nith-trace-&lt;ms&gt;.bin
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SensorTraceBenchmark {
+
+    /** Trace file pulled from the phone (adb pull .../files/nith-trace-*.bin); empty for synthetic. */
+    @Param("")
+    public String traceFile;
+
+    private SensorTrace trace;
+    private HeadTrackingPipeline pipeline;
+    private final float[] values = new float[SensorTrace.MAX_VALUES];
+    private int cursor;
+    private long lapOffsetNanos;
+    private long traceSpanNanos;
+
+    @Setup
+    public void setUp() throws IOException {
+        trace = traceFile.isEmpty()
+                ? SensorTrace.synthetic(100, 200, TimeUnit.SECONDS.toNanos(10))
+                : SensorTraceFile.read(new File(traceFile));
+        if (trace.size() == 0) {
+            throw new IOException("Empty trace: " + traceFile);
+        }
+        traceSpanNanos = trace.timestampNanos(trace.size() - 1) - trace.timestampNanos(0) + 1;
+        // CLOCK mode only submits on output ticks, so sensor events never reach the (unstarted) sender
+        SampleSender sender = new SampleSender(
+                new SampleRingBuffer(16, SampleRingBuffer.OverflowPolicy.KEEP_LATEST), null, null);
+        pipeline = new HeadTrackingPipeline(sender, HeadTrackingPipeline.Mode.CLOCK, 0, OutputClock.SYSTEM_NANO_TIME);
+    }
+
+    /** One sensor event per operation; timestamps keep increasing when the trace wraps around. */
+    @Benchmark
+    public int onSensorEvent() {
+        int i = cursor;
+        int count = trace.copyValues(i, values);
+        pipeline.onSensorEvent(trace.type(i), trace.timestampNanos(i) + lapOffsetNanos, values, count, trace.accuracy(i));
+        if (++i == trace.size()) {
+            i = 0;
+            lapOffsetNanos += traceSpanNanos;
+        }
+        cursor = i;
+        return count;
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.nithphonewrapper.benchmarks;
+
+import com.example.nithphonewrapper.VibrationCommandParser;
+
+/**
+ * Baseline for {@link VibrationCommandBenchmark}: the String.split parser the vibration listener
+ * used before {@link VibrationCommandParser}, for commands like
+ * $HeadBower-1.0|COM|vibration_intensity=200&vibration_duration=100^
+ */
+public final class StringVibrationCommand {
+
+    /** issuer_name-version, as sent. */
+    public final String issuer;
+    /** 1-255, or the default amplitude passed to {@link #parse}. */
+    public final int intensity;
+    public final long durationMs;
+
+    public StringVibrationCommand(String issuer, int intensity, long durationMs) {
+        this.issuer = issuer;
+        this.intensity = intensity;
+        this.durationMs = durationMs;
+    }
+
+    /**
+     * Parses a command. Field names are case-insensitive; an intensity outside 1-255 falls back to
+     * defaultIntensity, a missing duration to {@link VibrationCommandParser#DEFAULT_DURATION_MS}.
+     * @throws IllegalArgumentException if the command is malformed, not a COM command,
+     *         has a non-numeric value or a duration outside 1-10000 ms
+     */
+    public static StringVibrationCommand parse(String command, int defaultIntensity) {
+        // Validate format: must start with '$' and end with '^'
+        if (!command.startsWith("$") || !command.endsWith("^")) {
+            throw new IllegalArgumentException("missing $ or ^");
+        }
+
+        // Remove leading '$' and trailing '^', then split into header and payload
+        String trimmed = command.substring(1, command.length() - 1);
+        String[] mainParts = trimmed.split("\\|");
+        if (mainParts.length < 3) {
+            throw new IllegalArgumentException("missing parts");
+        }
+
+        String issuer = mainParts[0];
+        String commandType = mainParts[1];
+        if (!"COM".equalsIgnoreCase(commandType)) {
+            throw new IllegalArgumentException("not a COM command: " + commandType);
+        }
+
+        // Parse parameters: vibration_intensity=VALUE&vibration_duration=VALUE
+        int intensity = defaultIntensity;
+        long duration = VibrationCommandParser.DEFAULT_DURATION_MS;
+        for (String param : mainParts[2].split("&")) {
+            String[] keyValue = param.split("=", 2);
+            if (keyValue.length == 2) {
+                String key = keyValue[0].trim();
+                String value = keyValue[1].trim();
+                if ("vibration_intensity".equalsIgnoreCase(key)) {
+                    intensity = Integer.parseInt(value);
+                } else if ("vibration_duration".equalsIgnoreCase(key)) {
+                    duration = Long.parseLong(value);
+                }
+            }
+        }
+
+        if (intensity < VibrationCommandParser.MIN_INTENSITY || intensity > VibrationCommandParser.MAX_INTENSITY) {
+            intensity = defaultIntensity;
+        }
+        if (duration < 1 || duration > VibrationCommandParser.MAX_DURATION_MS) {
+            throw new IllegalArgumentException("invalid duration: " + duration + "ms");
+        }
+        return new StringVibrationCommand(issuer, intensity, duration);
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.nithphonewrapper.benchmarks;
+
+import com.example.nithphonewrapper.VibrationCommandParser;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Vibration command handling: decoding the datagram into a String and parsing it with
+ * {@link StringVibrationCommand#parse}, versus parsing the datagram bytes in place as the listener does.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class VibrationCommandBenchmark {
+
+    private String command = "$HeadBower-1.0|COM|vibration_intensity=200&vibration_duration=100^";
+    private byte[] datagram = command.getBytes(StandardCharsets.UTF_8);
+    private final VibrationCommandParser parser = new VibrationCommandParser();
+
+    @Benchmark
+    public StringVibrationCommand parse() {
+        return StringVibrationCommand.parse(command, -1);
+    }
+
+    @Benchmark
+    public StringVibrationCommand decodeAndParse() {
+        return StringVibrationCommand.parse(new String(datagram, 0, datagram.length), -1);
+    }
+
+    @Benchmark
+    public long parseInPlace() {
+        parser.parse(datagram, 0, datagram.length, -1);
+        return parser.getDurationMs() + parser.getIntensity();
+    }
+}
@@ -21,4 +21,5 @@ dependencyResolutionManagement {
 
 rootProject.name = "NITHphoneWrapper"
 include(":app")
+include(":benchmarks")
  
\ No newline at end of file